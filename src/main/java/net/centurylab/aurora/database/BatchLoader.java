@@ -0,0 +1,344 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.AsyncSubject;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collects single key lookups on the same column and loads them with one {@code WHERE column IN (?, ...)} query.
+ * A batch is sent when the window of the first key elapsed or when it reached the maximum batch size.
+ * Keys which are requested multiple times within the same window are only loaded once.
+ * <p>
+ * The rows are matched to the keys by comparing the string value of the key column with the string value of the key,
+ * so the key column has to be selected. Only integral numbers and strings can be used as keys, other types like
+ * {@code byte[]} or {@link java.util.UUID} don't have a string value which matches the value MySQL returns.
+ * Strings are matched case-insensitively and without trailing spaces like MySQL's default collations compare them,
+ * columns with a binary or case-sensitive collation need {@link #setCaseSensitive(boolean)}.
+ * <p>
+ * The IN condition is combined with the conditions of the query by AND, so these may only be combined by AND as well.
+ *
+ * @param <K> Type of the keys
+ */
+public class BatchLoader<K>
+{
+    private static final long DEFAULT_WINDOW_MILLIS  = 2;
+    private static final int  DEFAULT_MAX_BATCH_SIZE = 128;
+
+    private final Database                                        database;
+    private final Supplier<? extends StatementBuilder<?>>         query;
+    private final String                                          keyColumn;
+    private final LongAdder                                       loads        = new LongAdder();
+    private final LongAdder                                       keys         = new LongAdder();
+    private final LongAdder                                       batches      = new LongAdder();
+    private       Map<K, AsyncSubject<List<Map<String, String>>>> pending      = new LinkedHashMap<>();
+    private       long                                            windowNanos  = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+    private       int                                             maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private       boolean                                         caseSensitive;
+
+    /**
+     * @param database  The {@link Database} which executes the batches
+     * @param query     Creates the SELECT for a batch, the IN condition on the key column is added to it
+     * @param keyColumn The column which is looked up
+     */
+    public BatchLoader(Database database, Supplier<? extends StatementBuilder<?>> query, String keyColumn)
+    {
+        Preconditions.checkNotNull(database, "database can't be null");
+        Preconditions.checkNotNull(query, "query can't be null");
+        Preconditions.checkNotNull(keyColumn, "keyColumn can't be null");
+
+        this.database = database;
+        this.query = query;
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * Queues the key for the next batch
+     *
+     * @param key The key which is looked up
+     * @return An {@link Observable} which pushes every row with the key and completes when the batch was loaded
+     */
+    public Observable<Map<String, String>> load(K key)
+    {
+        Preconditions.checkNotNull(key, "key can't be null");
+        Preconditions.checkArgument(isSupportedKey(key), "Keys of type %s can't be matched to the rows", key.getClass().getName());
+
+        return Observable.defer(() ->
+        {
+            AsyncSubject<List<Map<String, String>>> subject;
+            Map<K, AsyncSubject<List<Map<String, String>>>> batch = null;
+
+            synchronized (this)
+            {
+                this.loads.increment();
+                subject = this.pending.get(key);
+
+                if (subject == null)
+                {
+                    subject = AsyncSubject.create();
+                    this.pending.put(key, subject);
+
+                    if (this.pending.size() >= this.maxBatchSize)
+                    {
+                        batch = this.takePending();
+                    }
+                    else if (this.pending.size() == 1)
+                    {
+                        Map<K, AsyncSubject<List<Map<String, String>>>> window = this.pending;
+                        Schedulers.computation().scheduleDirect(() -> this.flush(window), this.windowNanos, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+
+            if (batch != null)
+            {
+                this.dispatch(batch);
+            }
+
+            return subject.flatMapIterable(rows -> rows);
+        });
+    }
+
+    /**
+     * Sends the pending keys right away
+     */
+    public void flush()
+    {
+        Map<K, AsyncSubject<List<Map<String, String>>>> batch;
+
+        synchronized (this)
+        {
+            batch = this.takePending();
+        }
+
+        this.dispatch(batch);
+    }
+
+    private void flush(Map<K, AsyncSubject<List<Map<String, String>>>> window)
+    {
+        Map<K, AsyncSubject<List<Map<String, String>>>> batch = null;
+
+        synchronized (this)
+        {
+            if (this.pending == window)
+            {
+                batch = this.takePending();
+            }
+        }
+
+        if (batch != null)
+        {
+            this.dispatch(batch);
+        }
+    }
+
+    private Map<K, AsyncSubject<List<Map<String, String>>>> takePending()
+    {
+        Map<K, AsyncSubject<List<Map<String, String>>>> batch = this.pending;
+        this.pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void dispatch(Map<K, AsyncSubject<List<Map<String, String>>>> batch)
+    {
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        this.batches.increment();
+        this.keys.add(batch.size());
+
+        boolean caseSensitive = this.isCaseSensitive();
+        StatementBuilder<?> statementBuilder;
+
+        try
+        {
+            statementBuilder = this.query.get();
+
+            for (Condition condition : statementBuilder.conditions)
+            {
+                Preconditions.checkArgument(condition.isFirstCondition() || "AND".equalsIgnoreCase(condition.getClause()),
+                        "The conditions of a batch query can only be combined by AND");
+            }
+        }
+        catch (Exception e)
+        {
+            batch.values().forEach(subject -> subject.onError(e));
+            return;
+        }
+
+        List<Object> values = new ArrayList<>(batch.keySet());
+
+        // Pads the key list to the next power of two, so only a few distinct statements end up in the statement cache
+        int bucketSize = Math.min(Integer.highestOneBit(values.size() - 1) << 1, Math.max(this.maxBatchSize, values.size()));
+
+        while (values.size() < bucketSize)
+        {
+            values.add(values.get(values.size() - 1));
+        }
+
+        Condition condition = statementBuilder.conditions.isEmpty()
+                ? new Condition(this.keyColumn, "IN", values)
+                : new Condition("AND", this.keyColumn, "IN", values);
+        statementBuilder.addCondition(condition);
+
+        this.database.execute(statementBuilder).subscribe(result ->
+        {
+            Map<String, List<Map<String, String>>> rowsByKey = new HashMap<>();
+            // the rows are keyed by the column label, a qualified key column like users.id is found as id
+            String keyLabel = result.getRowCount() == 0 ? this.keyColumn : Database.findColumn(result.getRows().get(0), this.keyColumn);
+
+            for (Map<String, String> row : result.getRows())
+            {
+                rowsByKey.computeIfAbsent(normalize(row.get(keyLabel), caseSensitive), key -> new ArrayList<>(1)).add(row);
+            }
+
+            for (Map.Entry<K, AsyncSubject<List<Map<String, String>>>> entry : batch.entrySet())
+            {
+                entry.getValue().onNext(rowsByKey.getOrDefault(normalize(entry.getKey().toString(), caseSensitive), Collections.emptyList()));
+                entry.getValue().onComplete();
+            }
+        }, throwable -> batch.values().forEach(subject -> subject.onError(throwable)));
+    }
+
+    private static boolean isSupportedKey(Object key)
+    {
+        return key instanceof String || key instanceof Long || key instanceof Integer || key instanceof Short
+                || key instanceof Byte || key instanceof BigInteger;
+    }
+
+    /**
+     * @return The value like the collation of the key column compares it
+     */
+    private static String normalize(String value, boolean caseSensitive)
+    {
+        if (value == null || caseSensitive)
+        {
+            return value;
+        }
+
+        int end = value.length();
+
+        while (end > 0 && value.charAt(end - 1) == ' ')
+        {
+            end--;
+        }
+
+        return value.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Sets whether string keys are matched exactly, which is needed if the key column has a binary or case-sensitive collation
+     *
+     * @param caseSensitive True to match string keys exactly
+     * @return Current {@link BatchLoader} instance
+     */
+    public synchronized BatchLoader<K> setCaseSensitive(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+        return this;
+    }
+
+    public synchronized boolean isCaseSensitive()
+    {
+        return caseSensitive;
+    }
+
+    /**
+     * Sets how long the first key of a batch waits for more keys
+     *
+     * @param window The window
+     * @param unit   The unit of the window
+     * @return Current {@link BatchLoader} instance
+     */
+    public synchronized BatchLoader<K> setWindow(long window, TimeUnit unit)
+    {
+        Preconditions.checkArgument(window > -1, "window can't be negative");
+
+        this.windowNanos = unit.toNanos(window);
+        return this;
+    }
+
+    public synchronized long getWindowNanos()
+    {
+        return windowNanos;
+    }
+
+    /**
+     * Sets the count of distinct keys after which a batch is sent without waiting for the window
+     *
+     * @param maxBatchSize New maximum batch size
+     * @return Current {@link BatchLoader} instance
+     */
+    public synchronized BatchLoader<K> setMaxBatchSize(int maxBatchSize)
+    {
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize can't be negative or equals zero");
+
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public synchronized int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return Count of requested keys, including keys which were requested multiple times
+     */
+    public long getLoadCount()
+    {
+        return this.loads.sum();
+    }
+
+    /**
+     * @return Count of queries which were sent
+     */
+    public long getBatchCount()
+    {
+        return this.batches.sum();
+    }
+
+    /**
+     * @return The average count of distinct keys per query
+     */
+    public double getAverageBatchSize()
+    {
+        long batches = this.batches.sum();
+
+        return batches == 0 ? 0 : (double) this.keys.sum() / batches;
+    }
+
+    /**
+     * @return The average count of requested keys which were answered by a single query
+     */
+    public double getBatchingEfficiency()
+    {
+        long batches = this.batches.sum();
+
+        return batches == 0 ? 0 : (double) this.loads.sum() / batches;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BatchLoader{keyColumn=" + keyColumn +
+                ", loads=" + getLoadCount() +
+                ", batches=" + getBatchCount() +
+                ", averageBatchSize=" + getAverageBatchSize() +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package net.centurylab.aurora.database;
+
+import java.util.Arrays;
+
+/**
+ * The result of a JDBC batch execution
+ */
+public class BatchResult
+{
+    private final int[]  updateCounts;
+    private final long[] generatedKeys;
+
+    public BatchResult(int[] updateCounts, long[] generatedKeys)
+    {
+        this.updateCounts = updateCounts;
+        this.generatedKeys = generatedKeys;
+    }
+
+    /**
+     * Appends the results of two batches
+     *
+     * @param first  The first {@link BatchResult}
+     * @param second The second {@link BatchResult}
+     * @return A new {@link BatchResult} with the update counts and keys of both batches
+     */
+    public static BatchResult merge(BatchResult first, BatchResult second)
+    {
+        int[] updateCounts = Arrays.copyOf(first.updateCounts, first.updateCounts.length + second.updateCounts.length);
+        System.arraycopy(second.updateCounts, 0, updateCounts, first.updateCounts.length, second.updateCounts.length);
+
+        long[] generatedKeys = Arrays.copyOf(first.generatedKeys, first.generatedKeys.length + second.generatedKeys.length);
+        System.arraycopy(second.generatedKeys, 0, generatedKeys, first.generatedKeys.length, second.generatedKeys.length);
+
+        return new BatchResult(updateCounts, generatedKeys);
+    }
+
+    /**
+     * Returns the update count of every row in the order the rows were added.
+     * The driver may report {@link java.sql.Statement#SUCCESS_NO_INFO} for rows of a rewritten multi-row INSERT.
+     *
+     * @return The update count of every row
+     */
+    public int[] getUpdateCounts()
+    {
+        return updateCounts;
+    }
+
+    /**
+     * @return The total count of affected rows, rows without information are not counted
+     */
+    public long getTotalUpdateCount()
+    {
+        long total = 0;
+
+        for (int updateCount : this.updateCounts)
+        {
+            if (updateCount > 0)
+            {
+                total += updateCount;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * @return All generated keys, empty if the keys weren't requested
+     */
+    public long[] getGeneratedKeys()
+    {
+        return generatedKeys;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BatchResult{rows=" + updateCounts.length +
+                ", generatedKeys=" + generatedKeys.length +
+                '}';
+    }
+}
@@ -0,0 +1,102 @@
+package net.centurylab.aurora.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * A {@link Query} template together with the parameter values for one execution
+ */
+public final class BoundQuery
+{
+    private final Query    query;
+    private final Object[] parameters;
+
+    BoundQuery(Query query, Object[] parameters)
+    {
+        this.query = query;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Prepares the statement on the given connection and binds all parameters
+     *
+     * @param connection The {@link Connection}
+     * @return The {@link PreparedStatement} which can be executed
+     * @throws SQLException If a database access error occurs
+     */
+    public PreparedStatement prepare(Connection connection) throws SQLException
+    {
+        PreparedStatement preparedStatement = this.query.prepare(connection);
+
+        try
+        {
+            this.bind(preparedStatement);
+        }
+        catch (SQLException e)
+        {
+            preparedStatement.close();
+            throw e;
+        }
+
+        return preparedStatement;
+    }
+
+    /**
+     * Binds all parameters to an already prepared statement of the same template
+     * with the {@link ParameterBinder}s of the template
+     *
+     * @param preparedStatement The {@link PreparedStatement}
+     * @throws SQLException If a database access error occurs
+     */
+    public void bind(PreparedStatement preparedStatement) throws SQLException
+    {
+        this.query.bindParameters(preparedStatement, this.parameters);
+    }
+
+    public Query getQuery()
+    {
+        return query;
+    }
+
+    /**
+     * @return A copy of the bound parameter values
+     */
+    public Object[] getParameters()
+    {
+        return parameters.clone();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+
+        BoundQuery that = (BoundQuery) o;
+
+        return query.getSql().equals(that.query.getSql()) && Arrays.equals(parameters, that.parameters);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * query.getSql().hashCode() + Arrays.hashCode(parameters);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BoundQuery{sql='" + query.getSql() + '\'' +
+                ", parameters=" + Arrays.toString(parameters) +
+                '}';
+    }
+}
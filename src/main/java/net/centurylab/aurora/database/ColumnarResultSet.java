@@ -0,0 +1,427 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A materialized SELECT result which stores the values column by column in typed arrays.
+ * The column metadata is read only once and numeric values are neither boxed nor parsed.
+ * <p>
+ * Column indexes start at 1 like in JDBC, row indexes start at 0.
+ */
+public class ColumnarResultSet
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String[]             columnNames;
+    private final ColumnType[]         columnTypes;
+    private final Map<String, Integer> columnIndexes;
+    private final Object[]             columns;
+    private final long[][]             nullBits;
+    private       int                  rowCount;
+    private       int                  capacity;
+
+    public ColumnarResultSet(ResultSet resultSet) throws SQLException
+    {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        this.columnNames = new String[columnCount];
+        this.columnTypes = new ColumnType[columnCount];
+        this.columnIndexes = new HashMap<>(columnCount * 2);
+        this.columns = new Object[columnCount];
+        this.nullBits = new long[columnCount][];
+        this.capacity = INITIAL_CAPACITY;
+
+        for (int i = 0; i < columnCount; i++)
+        {
+            this.columnNames[i] = metaData.getColumnLabel(i + 1);
+            this.columnTypes[i] = ColumnType.of(metaData.getColumnType(i + 1), metaData.isSigned(i + 1));
+            this.columnIndexes.put(this.columnNames[i], i + 1);
+            this.columns[i] = this.columnTypes[i].newArray(this.capacity);
+            this.nullBits[i] = new long[bitWords(this.capacity)];
+        }
+
+        while (resultSet.next())
+        {
+            if (this.rowCount == this.capacity)
+            {
+                this.grow();
+            }
+
+            for (int i = 0; i < columnCount; i++)
+            {
+                this.read(resultSet, i);
+            }
+
+            this.rowCount++;
+        }
+    }
+
+    private static int bitWords(int bits)
+    {
+        return (bits + 63) >>> 6;
+    }
+
+    private void read(ResultSet resultSet, int column) throws SQLException
+    {
+        int row = this.rowCount;
+        boolean wasNull;
+
+        switch (this.columnTypes[column])
+        {
+            case INT:
+                ((int[]) this.columns[column])[row] = resultSet.getInt(column + 1);
+                wasNull = resultSet.wasNull();
+                break;
+            case LONG:
+                ((long[]) this.columns[column])[row] = resultSet.getLong(column + 1);
+                wasNull = resultSet.wasNull();
+                break;
+            case DOUBLE:
+                ((double[]) this.columns[column])[row] = resultSet.getDouble(column + 1);
+                wasNull = resultSet.wasNull();
+                break;
+            case BYTES:
+                byte[] bytes = resultSet.getBytes(column + 1);
+                ((byte[][]) this.columns[column])[row] = bytes;
+                wasNull = bytes == null;
+                break;
+            default:
+                String string = resultSet.getString(column + 1);
+                ((String[]) this.columns[column])[row] = string;
+                wasNull = string == null;
+                break;
+        }
+
+        if (wasNull)
+        {
+            this.nullBits[column][row >>> 6] |= 1L << row;
+        }
+    }
+
+    private void grow()
+    {
+        this.capacity = this.capacity << 1;
+
+        for (int i = 0; i < this.columns.length; i++)
+        {
+            this.columns[i] = this.columnTypes[i].copyOf(this.columns[i], this.capacity);
+            this.nullBits[i] = Arrays.copyOf(this.nullBits[i], bitWords(this.capacity));
+        }
+    }
+
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    public int getColumnCount()
+    {
+        return columnNames.length;
+    }
+
+    /**
+     * @param columnIndex Index of the column, starting at 1
+     * @return The name or label of the column
+     */
+    public String getColumnName(int columnIndex)
+    {
+        return this.columnNames[this.column(columnIndex)];
+    }
+
+    /**
+     * @param columnIndex Index of the column, starting at 1
+     * @return How the values of the column are stored
+     */
+    public ColumnType getColumnType(int columnIndex)
+    {
+        return this.columnTypes[this.column(columnIndex)];
+    }
+
+    /**
+     * Returns the index of the column with the given name
+     *
+     * @param columnName Name of the column
+     * @return Index of the column, starting at 1
+     * @throws IllegalArgumentException if the column doesn't exist
+     */
+    public int findColumn(String columnName)
+    {
+        Integer columnIndex = this.columnIndexes.get(columnName);
+
+        Preconditions.checkArgument(columnIndex != null, "Unknown column '%s'", columnName);
+
+        return columnIndex;
+    }
+
+    public boolean isNull(int row, int columnIndex)
+    {
+        int column = this.column(columnIndex);
+        this.checkRow(row);
+
+        return (this.nullBits[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    public boolean isNull(int row, String columnName)
+    {
+        return this.isNull(row, this.findColumn(columnName));
+    }
+
+    /**
+     * Returns the value as int. Null values are returned as 0 like in JDBC.
+     *
+     * @param row         Index of the row, starting at 0
+     * @param columnIndex Index of the column, starting at 1
+     * @return The value of the cell
+     * @throws ArithmeticException   if a LONG value doesn't fit into an int
+     * @throws IllegalStateException if the column doesn't store integral values
+     */
+    public int getInt(int row, int columnIndex)
+    {
+        int column = this.column(columnIndex);
+        this.checkRow(row);
+
+        switch (this.columnTypes[column])
+        {
+            case INT:
+                return ((int[]) this.columns[column])[row];
+            case LONG:
+                return Math.toIntExact(((long[]) this.columns[column])[row]);
+            default:
+                throw new IllegalStateException(String.format("Column '%s' is a %s column", this.columnNames[column], this.columnTypes[column]));
+        }
+    }
+
+    public int getInt(int row, String columnName)
+    {
+        return this.getInt(row, this.findColumn(columnName));
+    }
+
+    /**
+     * Returns the value as long. Null values are returned as 0 like in JDBC.
+     *
+     * @param row         Index of the row, starting at 0
+     * @param columnIndex Index of the column, starting at 1
+     * @return The value of the cell
+     * @throws IllegalStateException if the column doesn't store integral values
+     */
+    public long getLong(int row, int columnIndex)
+    {
+        int column = this.column(columnIndex);
+        this.checkRow(row);
+
+        switch (this.columnTypes[column])
+        {
+            case INT:
+                return ((int[]) this.columns[column])[row];
+            case LONG:
+                return ((long[]) this.columns[column])[row];
+            default:
+                throw new IllegalStateException(String.format("Column '%s' is a %s column", this.columnNames[column], this.columnTypes[column]));
+        }
+    }
+
+    public long getLong(int row, String columnName)
+    {
+        return this.getLong(row, this.findColumn(columnName));
+    }
+
+    /**
+     * Returns the value as double. Null values are returned as 0 like in JDBC.
+     *
+     * @param row         Index of the row, starting at 0
+     * @param columnIndex Index of the column, starting at 1
+     * @return The value of the cell
+     * @throws IllegalStateException if the column doesn't store numeric values
+     */
+    public double getDouble(int row, int columnIndex)
+    {
+        int column = this.column(columnIndex);
+        this.checkRow(row);
+
+        switch (this.columnTypes[column])
+        {
+            case INT:
+                return ((int[]) this.columns[column])[row];
+            case LONG:
+                return ((long[]) this.columns[column])[row];
+            case DOUBLE:
+                return ((double[]) this.columns[column])[row];
+            default:
+                throw new IllegalStateException(String.format("Column '%s' is a %s column", this.columnNames[column], this.columnTypes[column]));
+        }
+    }
+
+    public double getDouble(int row, String columnName)
+    {
+        return this.getDouble(row, this.findColumn(columnName));
+    }
+
+    /**
+     * Returns the raw bytes of a BYTES column or the UTF-8 bytes of a STRING column
+     *
+     * @param row         Index of the row, starting at 0
+     * @param columnIndex Index of the column, starting at 1
+     * @return The value of the cell or null
+     * @throws IllegalStateException if the column stores numeric values
+     */
+    public byte[] getBytes(int row, int columnIndex)
+    {
+        int column = this.column(columnIndex);
+        this.checkRow(row);
+
+        switch (this.columnTypes[column])
+        {
+            case BYTES:
+                return ((byte[][]) this.columns[column])[row];
+            case STRING:
+                String value = ((String[]) this.columns[column])[row];
+                return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+            default:
+                throw new IllegalStateException(String.format("Column '%s' is a %s column", this.columnNames[column], this.columnTypes[column]));
+        }
+    }
+
+    public byte[] getBytes(int row, String columnName)
+    {
+        return this.getBytes(row, this.findColumn(columnName));
+    }
+
+    /**
+     * Returns the value as string, numeric values get converted
+     *
+     * @param row         Index of the row, starting at 0
+     * @param columnIndex Index of the column, starting at 1
+     * @return The value of the cell or null
+     */
+    public String getString(int row, int columnIndex)
+    {
+        if (this.isNull(row, columnIndex))
+        {
+            return null;
+        }
+
+        int column = this.column(columnIndex);
+
+        switch (this.columnTypes[column])
+        {
+            case INT:
+                return Integer.toString(((int[]) this.columns[column])[row]);
+            case LONG:
+                return Long.toString(((long[]) this.columns[column])[row]);
+            case DOUBLE:
+                return Double.toString(((double[]) this.columns[column])[row]);
+            case BYTES:
+                return new String(((byte[][]) this.columns[column])[row], StandardCharsets.UTF_8);
+            default:
+                return ((String[]) this.columns[column])[row];
+        }
+    }
+
+    public String getString(int row, String columnName)
+    {
+        return this.getString(row, this.findColumn(columnName));
+    }
+
+    private int column(int columnIndex)
+    {
+        Preconditions.checkElementIndex(columnIndex - 1, this.columnNames.length, "columnIndex");
+
+        return columnIndex - 1;
+    }
+
+    private void checkRow(int row)
+    {
+        Preconditions.checkElementIndex(row, this.rowCount, "row");
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnarResultSet{rows=" + rowCount +
+                ", columns=" + columnNames.length +
+                '}';
+    }
+
+    /**
+     * How the values of a column are stored
+     */
+    public enum ColumnType
+    {
+        INT,
+        LONG,
+        DOUBLE,
+        BYTES,
+        STRING;
+
+        static ColumnType of(int sqlType, boolean signed)
+        {
+            switch (sqlType)
+            {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                    return INT;
+                case Types.INTEGER:
+                    return signed ? INT : LONG;
+                case Types.BIGINT:
+                    return signed ? LONG : STRING;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return DOUBLE;
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                case Types.BLOB:
+                    return BYTES;
+                default:
+                    return STRING;
+            }
+        }
+
+        Object newArray(int capacity)
+        {
+            switch (this)
+            {
+                case INT:
+                    return new int[capacity];
+                case LONG:
+                    return new long[capacity];
+                case DOUBLE:
+                    return new double[capacity];
+                case BYTES:
+                    return new byte[capacity][];
+                default:
+                    return new String[capacity];
+            }
+        }
+
+        Object copyOf(Object array, int capacity)
+        {
+            switch (this)
+            {
+                case INT:
+                    return Arrays.copyOf((int[]) array, capacity);
+                case LONG:
+                    return Arrays.copyOf((long[]) array, capacity);
+                case DOUBLE:
+                    return Arrays.copyOf((double[]) array, capacity);
+                case BYTES:
+                    return Arrays.copyOf((byte[][]) array, capacity);
+                default:
+                    return Arrays.copyOf((String[]) array, capacity);
+            }
+        }
+    }
+}
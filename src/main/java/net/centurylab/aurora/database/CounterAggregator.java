@@ -0,0 +1,333 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import net.centurylab.aurora.logging.LogManager;
+import net.centurylab.aurora.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates increments of counter columns in memory and writes them periodically as
+ * {@code UPDATE t SET c = c + ?} statements. Incrementing only merges the delta into its cell and never touches the database.
+ * <p>
+ * Every flush removes the cells with their accumulated deltas and runs them in a single transaction, so cells of
+ * counters which aren't incremented anymore don't stay in memory. If the transaction fails, the deltas are merged
+ * back into the cells, so every increment is written exactly once as long as the database reports the outcome of the commit.
+ */
+public class CounterAggregator implements AutoCloseable
+{
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1_000;
+
+    private final    Logger                             logger        = LogManager.getLogger(CounterAggregator.class);
+    private final    Database                           database;
+    private final    ConcurrentHashMap<Cell, Long>      cells         = new ConcurrentHashMap<>();
+    private final    Object                             flushLock     = new Object();
+    private final    Runnable                           shutdownHook  = this::close;
+    private final    LongAdder                          increments    = new LongAdder();
+    private final    LongAdder                          writtenRows   = new LongAdder();
+    private final    LongAdder                          flushes       = new LongAdder();
+    private final    LongAdder                          failedFlushes = new LongAdder();
+    private final    Disposable                         timer;
+    private volatile boolean                            closed;
+
+    public CounterAggregator(Database database)
+    {
+        this(database, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param database      The {@link Database} which executes the flushes
+     * @param flushInterval The time between two flushes
+     * @param unit          The unit of the flush interval
+     */
+    public CounterAggregator(Database database, long flushInterval, TimeUnit unit)
+    {
+        Preconditions.checkNotNull(database, "database can't be null");
+        Preconditions.checkArgument(flushInterval > 0, "flushInterval can't be negative or equals zero");
+
+        this.database = database;
+        this.timer = Schedulers.computation().schedulePeriodicallyDirect(() -> this.flush().subscribe(rows ->
+        {
+        }, throwable -> this.logger.error(throwable, "Could not flush the counters")), flushInterval, flushInterval, unit);
+
+        this.database.addShutdownHook(this.shutdownHook);
+    }
+
+    /**
+     * Adds the delta to the counter column of the row with the given primary key
+     *
+     * @param tableName Name of the table
+     * @param keyColumn Name of the primary key column
+     * @param key       Value of the primary key
+     * @param column    Name of the counter column
+     * @param delta     The value which is added, can be negative
+     * @return Current {@link CounterAggregator} instance
+     */
+    public CounterAggregator increment(String tableName, String keyColumn, Object key, String column, long delta)
+    {
+        Preconditions.checkState(!this.closed, "The aggregator was closed");
+
+        this.cells.merge(new Cell(tableName, keyColumn, key, column), delta, Long::sum);
+        this.increments.increment();
+        return this;
+    }
+
+    /**
+     * Writes all accumulated deltas
+     *
+     * @return An {@link Observable} which pushes the count of updated rows
+     */
+    public Observable<Integer> flush()
+    {
+        return Observable.defer(() -> this.cells.isEmpty() ? Observable.just(0) : this.database.inTransaction(QueryPriority.BULK, this::flush));
+    }
+
+    private int flush(Transaction transaction) throws Exception
+    {
+        synchronized (this.flushLock)
+        {
+            Map<Cell, Long> deltas = new HashMap<>();
+
+            for (Cell cell : this.cells.keySet())
+            {
+                // removing the cell takes its delta atomically, later increments start a new cell
+                Long delta = this.cells.remove(cell);
+
+                if (delta != null && delta != 0)
+                {
+                    deltas.put(cell, delta);
+                }
+            }
+
+            if (deltas.isEmpty())
+            {
+                return 0;
+            }
+
+            try
+            {
+                int rows = this.write(transaction, deltas);
+                transaction.commit();
+
+                this.writtenRows.add(rows);
+                this.flushes.increment();
+                return rows;
+            }
+            catch (Exception e)
+            {
+                this.failedFlushes.increment();
+                deltas.forEach((cell, delta) -> this.cells.merge(cell, delta, Long::sum));
+                throw e;
+            }
+        }
+    }
+
+    private int write(Transaction transaction, Map<Cell, Long> deltas) throws Exception
+    {
+        Map<RowKey, Map<String, Object>> rows = new LinkedHashMap<>();
+
+        for (Map.Entry<Cell, Long> entry : deltas.entrySet())
+        {
+            Cell cell = entry.getKey();
+            rows.computeIfAbsent(cell.rowKey, rowKey -> new TreeMap<>()).put(cell.column, entry.getValue());
+        }
+
+        Map<String, Query> queries = new LinkedHashMap<>();
+        Map<String, List<Object[]>> parameters = new LinkedHashMap<>();
+
+        for (Map.Entry<RowKey, Map<String, Object>> entry : rows.entrySet())
+        {
+            RowKey rowKey = entry.getKey();
+            MySQLStatementBuilder statementBuilder = MySQLStatementBuilder.Increment(entry.getValue())
+                                                                          .addTable(rowKey.tableName)
+                                                                          .addCondition(new Condition(rowKey.keyColumn, "=", rowKey.key))
+                                                                          .setPriority(QueryPriority.BULK);
+            Query query = statementBuilder.compile();
+
+            queries.putIfAbsent(query.getSql(), query);
+            parameters.computeIfAbsent(query.getSql(), sql -> new ArrayList<>()).add(statementBuilder.getParameters());
+        }
+
+        for (Map.Entry<String, Query> entry : queries.entrySet())
+        {
+            transaction.executeBatch(entry.getValue(), parameters.get(entry.getKey()));
+        }
+
+        return rows.size();
+    }
+
+    /**
+     * Returns the delta which was accumulated since the last flush
+     *
+     * @param tableName Name of the table
+     * @param keyColumn Name of the primary key column
+     * @param key       Value of the primary key
+     * @param column    Name of the counter column
+     * @return The pending delta
+     */
+    public long getPendingDelta(String tableName, String keyColumn, Object key, String column)
+    {
+        return this.cells.getOrDefault(new Cell(tableName, keyColumn, key, column), 0L);
+    }
+
+    /**
+     * Stops the periodic flush and writes all accumulated deltas
+     */
+    @Override
+    public void close()
+    {
+        if (this.closed)
+        {
+            return;
+        }
+
+        this.closed = true;
+        this.timer.dispose();
+        this.database.removeShutdownHook(this.shutdownHook);
+
+        if (this.cells.isEmpty())
+        {
+            return;
+        }
+
+        // Database#close may run the hook on a worker of the database or result scheduler,
+        // so the last flush runs on the closing thread instead of waiting for a scheduled one
+        try (Transaction transaction = this.database.beginTransaction())
+        {
+            this.flush(transaction);
+        }
+        catch (Exception e)
+        {
+            this.logger.error(e, "Could not flush the counters");
+        }
+    }
+
+    /**
+     * @return Count of increments since the aggregator was created
+     */
+    public long getIncrementCount()
+    {
+        return this.increments.sum();
+    }
+
+    /**
+     * @return Count of rows which were updated by all flushes
+     */
+    public long getWrittenRowCount()
+    {
+        return this.writtenRows.sum();
+    }
+
+    public long getFlushCount()
+    {
+        return this.flushes.sum();
+    }
+
+    public long getFailedFlushCount()
+    {
+        return this.failedFlushes.sum();
+    }
+
+    /**
+     * @return Count of counter cells which were incremented since the last flush
+     */
+    public int getCellCount()
+    {
+        return this.cells.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CounterAggregator{cells=" + getCellCount() +
+                ", increments=" + getIncrementCount() +
+                ", writtenRows=" + getWrittenRowCount() +
+                '}';
+    }
+
+    private static final class RowKey
+    {
+        private final String tableName;
+        private final String keyColumn;
+        private final Object key;
+
+        private RowKey(String tableName, String keyColumn, Object key)
+        {
+            this.tableName = Preconditions.checkNotNull(tableName, "tableName can't be null");
+            this.keyColumn = Preconditions.checkNotNull(keyColumn, "keyColumn can't be null");
+            this.key = Preconditions.checkNotNull(key, "key can't be null");
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+
+            RowKey rowKey = (RowKey) o;
+
+            return tableName.equals(rowKey.tableName) && keyColumn.equals(rowKey.keyColumn) && key.equals(rowKey.key);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(tableName, keyColumn, key);
+        }
+    }
+
+    private static final class Cell
+    {
+        private final RowKey rowKey;
+        private final String column;
+
+        private Cell(String tableName, String keyColumn, Object key, String column)
+        {
+            this.rowKey = new RowKey(tableName, keyColumn, key);
+            this.column = Preconditions.checkNotNull(column, "column can't be null");
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+
+            Cell cell = (Cell) o;
+
+            return rowKey.equals(cell.rowKey) && column.equals(cell.column);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * rowKey.hashCode() + column.hashCode();
+        }
+    }
+}
@@ -1,25 +1,81 @@
 package net.centurylab.aurora.database;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.ObjectArrays;
 import com.zaxxer.hikari.HikariDataSource;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.SerialDisposable;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.UnicastProcessor;
+import io.reactivex.schedulers.Schedulers;
 
+import net.centurylab.aurora.database.mapping.EntityMapper;
+import net.centurylab.aurora.database.metrics.DatabaseMetrics;
+import net.centurylab.aurora.database.metrics.QueryMetrics;
+import net.centurylab.aurora.database.schema.ColumnMetadata;
+import net.centurylab.aurora.database.schema.SchemaCache;
+import net.centurylab.aurora.database.schema.TableMetadata;
 import net.centurylab.aurora.logging.LogManager;
 import net.centurylab.aurora.logging.Logger;
 
+import javax.management.JMException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
-public abstract class Database
+public abstract class Database implements AutoCloseable
 {
     private static final int DEFAULT_MIN_POOLSIZE = 5;
     private static final int DEFAULT_MAX_POOLSIZE = 10;
 
-    protected Logger           logger;
-    private   HikariDataSource connectionPool;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 100;
+    private static final int DEFAULT_BATCH_SIZE           = 500;
+    private static final int SCAN_CHUNKS_PER_CONNECTION   = 4;
+
+    private static final Pattern INTEGRAL = Pattern.compile("-?\\d+");
+
+    protected Logger                                    logger;
+    private   HikariDataSource                          connectionPool;
+    private   int                                       defaultFetchSize;
+    private   StatementCache                            statementCache;
+    private   ResultCache                               resultCache;
+    private   SingleFlight<BoundQuery, ParsedResultSet> singleFlight;
+    private   boolean                                   deduplicateSelects;
+    private   int                                       defaultBatchSize;
+    private   long                                      defaultQueryTimeoutMillis;
+    private   QueryScheduler                            queryScheduler;
+    private   Scheduler[]                               schedulers;
+    private   Scheduler                                 resultScheduler;
+    private   List<Runnable>                            shutdownHooks;
+    private   DatabaseMetrics                           metrics;
+    private   SlowQueryLog                              slowQueryLog;
+    private   SchemaCache                               schemaCache;
+    private   CopyOnWriteArrayList<Query>               hotQueries;
+    private   Completable                               warmUp;
+
+    private volatile long warmUpNanos;
 
     public Database(String driverClass, String jdbcUrl)
     {
@@ -40,6 +96,24 @@ public abstract class Database
     {
         this.logger = LogManager.getLogger(Database.class);
         this.connectionPool = new HikariDataSource();
+        this.connectionPool.setRegisterMbeans(true);
+        this.metrics = new DatabaseMetrics(this.connectionPool);
+        this.slowQueryLog = new SlowQueryLog(this);
+        this.schemaCache = new SchemaCache(this);
+        this.statementCache = new StatementCache(this.connectionPool, DEFAULT_STATEMENT_CACHE_SIZE);
+        this.defaultBatchSize = DEFAULT_BATCH_SIZE;
+        this.resultCache = new ResultCache();
+        this.singleFlight = new SingleFlight<>();
+        this.shutdownHooks = new CopyOnWriteArrayList<>();
+        this.hotQueries = new CopyOnWriteArrayList<>();
+        this.warmUpNanos = -1;
+        this.queryScheduler = new QueryScheduler(maxPoolSize < 1 ? DEFAULT_MAX_POOLSIZE : maxPoolSize);
+        this.schedulers = new Scheduler[QueryPriority.values().length];
+
+        for (QueryPriority priority : QueryPriority.values())
+        {
+            this.schedulers[priority.ordinal()] = Schedulers.from(this.queryScheduler.asExecutor(priority));
+        }
 
         if (Strings.isNullOrEmpty(driverClass))
         {
@@ -113,10 +187,49 @@ public abstract class Database
      * @return A new connection from the connection pool
      * @throws SQLException If a database access error occurs
      * @see HikariDataSource#getConnection()
+     * @see #checkout(HikariDataSource)
      */
     public Connection getConnection() throws SQLException
     {
-        return connectionPool.getConnection();
+        return checkout(this.connectionPool);
+    }
+
+    /**
+     * Checks out a connection from the pool. Scheduled work only waits for the connection until its deadline,
+     * the wait of the pool is ended at the deadline if it comes before the connection timeout of the pool.
+     *
+     * @param connectionPool The pool
+     * @return A new connection from the pool
+     * @throws SQLException If the deadline passed while waiting or a database access error occurs
+     */
+    protected static Connection checkout(HikariDataSource connectionPool) throws SQLException
+    {
+        QueryExecution execution = QueryExecution.current();
+
+        return execution == null ? connectionPool.getConnection() : execution.checkout(connectionPool);
+    }
+
+    /**
+     * Returns a connection on which the query should be executed. All queries use the connection pool by default,
+     * implementations can override this to route queries to other servers.
+     *
+     * @param query The {@link Query} which is executed on the connection
+     * @return A new connection
+     * @throws SQLException If a database access error occurs
+     */
+    protected Connection getConnection(Query query) throws SQLException
+    {
+        return this.getConnection();
+    }
+
+    /**
+     * Called after an INSERT, UPDATE or DELETE changed the tables, invalidates their cached results
+     *
+     * @param tables Names of the changed tables
+     */
+    protected void tablesChanged(Collection<String> tables)
+    {
+        this.resultCache.invalidate(tables);
     }
 
     /**
@@ -139,6 +252,463 @@ public abstract class Database
      */
     public abstract Observable<ParsedResultSet> execute(StatementBuilder statementBuilder);
 
+    /**
+     * Executes a compiled {@link Query} template with bound parameters.
+     * No SQL has to be generated for the execution.
+     *
+     * @param boundQuery The {@link BoundQuery}
+     * @return An {@link Observable} which pushes the result
+     */
+    public abstract Observable<ParsedResultSet> execute(BoundQuery boundQuery);
+
+    /**
+     * Binds the parameters to the {@link Query} template and executes it
+     *
+     * @param query      The {@link Query} template
+     * @param parameters The parameter values in placeholder order
+     * @return An {@link Observable} which pushes the result
+     */
+    public Observable<ParsedResultSet> execute(Query query, Object... parameters)
+    {
+        return this.execute(query.bind(parameters));
+    }
+
+    /**
+     * Executes the {@link Query} template once for every parameter row as JDBC batch on a single connection.
+     * The rows are sent in chunks of the given size.
+     *
+     * @param query      The {@link Query} template, must not be a SELECT
+     * @param parameters The parameter values of every row in placeholder order
+     * @param batchSize  The count of rows which are sent to the database at once
+     * @return An {@link Observable} which pushes the update counts of all rows and all generated keys
+     */
+    public abstract Observable<BatchResult> executeBatch(Query query, List<Object[]> parameters, int batchSize);
+
+    /**
+     * Executes the {@link Query} template once for every parameter row with the default batch size
+     *
+     * @param query      The {@link Query} template, must not be a SELECT
+     * @param parameters The parameter values of every row in placeholder order
+     * @return An {@link Observable} which pushes the update counts of all rows and all generated keys
+     * @see #executeBatch(Query, List, int)
+     */
+    public Observable<BatchResult> executeBatch(Query query, List<Object[]> parameters)
+    {
+        return this.executeBatch(query, parameters, this.defaultBatchSize);
+    }
+
+    /**
+     * Executes many INSERT, UPDATE or DELETE statements as JDBC batches. Consecutive builders
+     * which compile to the same SQL are sent together.
+     *
+     * @param statementBuilders The {@link StatementBuilder}s, one per row
+     * @param batchSize         The count of rows which are sent to the database at once
+     * @return An {@link Observable} which pushes the update counts of all rows and all generated keys
+     */
+    public Observable<BatchResult> executeBatch(List<? extends StatementBuilder> statementBuilders, int batchSize)
+    {
+        List<Observable<BatchResult>> batches = new ArrayList<>();
+        Query currentQuery = null;
+        List<Object[]> currentParameters = null;
+
+        for (StatementBuilder statementBuilder : statementBuilders)
+        {
+            Query query = statementBuilder.compile();
+
+            if (currentQuery == null || !currentQuery.getSql().equals(query.getSql()) || currentQuery.isReturnGeneratedKeys() != query.isReturnGeneratedKeys())
+            {
+                if (currentQuery != null)
+                {
+                    batches.add(this.executeBatch(currentQuery, currentParameters, batchSize));
+                }
+
+                currentQuery = query;
+                currentParameters = new ArrayList<>();
+            }
+
+            currentParameters.add(statementBuilder.getParameters());
+        }
+
+        if (currentQuery != null)
+        {
+            batches.add(this.executeBatch(currentQuery, currentParameters, batchSize));
+        }
+
+        return Observable.concat(batches)
+                         .reduce(BatchResult::merge)
+                         .toObservable()
+                         .defaultIfEmpty(new BatchResult(new int[0], new long[0]));
+    }
+
+    /**
+     * Executes many INSERT, UPDATE or DELETE statements with the default batch size
+     *
+     * @param statementBuilders The {@link StatementBuilder}s, one per row
+     * @return An {@link Observable} which pushes the update counts of all rows and all generated keys
+     * @see #executeBatch(List, int)
+     */
+    public Observable<BatchResult> executeBatch(List<? extends StatementBuilder> statementBuilders)
+    {
+        return this.executeBatch(statementBuilders, this.defaultBatchSize);
+    }
+
+    /**
+     * Checks out a connection and starts a {@link Transaction} on it. The transaction runs blocking
+     * on the calling thread and has to be closed to return the connection to the pool.
+     *
+     * @return A new {@link Transaction}
+     * @throws SQLException If a database access error occurs
+     */
+    public Transaction beginTransaction() throws SQLException
+    {
+        Connection connection = this.getConnection();
+
+        try
+        {
+            return new Transaction(this, connection);
+        }
+        catch (SQLException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the work in a {@link Transaction} on the database scheduler. The transaction is committed when the work
+     * returns and rolled back when it throws.
+     *
+     * @param work The work, must not return null
+     * @param <T>  Type of the result
+     * @return An {@link Observable} which pushes the result of the work after the commit
+     */
+    public <T> Observable<T> inTransaction(Function<Transaction, T> work)
+    {
+        return this.inTransaction(QueryPriority.NORMAL, work);
+    }
+
+    /**
+     * Runs the work in a {@link Transaction} on the database scheduler of the priority class
+     *
+     * @param priority The {@link QueryPriority}
+     * @param work     The work, must not return null
+     * @param <T>      Type of the result
+     * @return An {@link Observable} which pushes the result of the work after the commit
+     * @see #inTransaction(Function)
+     */
+    public <T> Observable<T> inTransaction(QueryPriority priority, Function<Transaction, T> work)
+    {
+        Preconditions.checkNotNull(work, "work can't be null");
+
+        return this.schedule(priority, () ->
+        {
+            try (Transaction transaction = this.beginTransaction())
+            {
+                T result = work.apply(transaction);
+
+                if (!transaction.isFinished())
+                {
+                    transaction.commit();
+                }
+
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Executes the statements in order on a single connection and commits them together.
+     * If one statement fails, all statements are rolled back.
+     *
+     * @param statementBuilders The {@link StatementBuilder}s
+     * @return An {@link Observable} which pushes the results in the order of the statements
+     */
+    public Observable<List<ParsedResultSet>> executeInTransaction(List<? extends StatementBuilder> statementBuilders)
+    {
+        List<BoundQuery> boundQueries = new ArrayList<>(statementBuilders.size());
+
+        for (StatementBuilder statementBuilder : statementBuilders)
+        {
+            boundQueries.add(statementBuilder.toBoundQuery());
+        }
+
+        return this.inTransaction(transaction ->
+        {
+            List<ParsedResultSet> results = new ArrayList<>(boundQueries.size());
+
+            for (BoundQuery boundQuery : boundQueries)
+            {
+                results.add(transaction.execute(boundQuery));
+            }
+
+            return results;
+        });
+    }
+
+    /**
+     * Executes a SELECT and materializes the result column by column
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @return An {@link Observable} which pushes the result
+     * @see ColumnarResultSet
+     */
+    public abstract Observable<ColumnarResultSet> executeColumnar(StatementBuilder statementBuilder);
+
+    /**
+     * Executes a SELECT and reads every row into an entity with the generated {@link EntityMapper}
+     *
+     * @param mapper           The {@link EntityMapper} of the entity class
+     * @param statementBuilder The {@link StatementBuilder}, e.g. {@link EntityMapper#select()} with conditions
+     * @param <T>              Type of the entities
+     * @return An {@link Observable} which pushes the entities in row order
+     */
+    public abstract <T> Observable<List<T>> select(EntityMapper<T> mapper, StatementBuilder statementBuilder);
+
+    /**
+     * Executes a SELECT and emits the rows one at a time while they are read from the database.
+     * The connection is held until the stream completes, fails or gets cancelled.
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @param fetchSize        The JDBC fetch size hint for the statement
+     * @return A {@link Flowable} which emits every row of the result
+     */
+    public abstract Flowable<Row> stream(StatementBuilder statementBuilder, int fetchSize);
+
+    /**
+     * Executes a compiled SELECT with bound parameters and emits the rows one at a time
+     *
+     * @param boundQuery The {@link BoundQuery} of the SELECT
+     * @param fetchSize  The JDBC fetch size hint for the statement
+     * @return A {@link Flowable} which emits every row of the result
+     * @see #stream(StatementBuilder, int)
+     */
+    public abstract Flowable<Row> stream(BoundQuery boundQuery, int fetchSize);
+
+    /**
+     * Executes a SELECT and emits the rows one at a time with the default fetch size
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @return A {@link Flowable} which emits every row of the result
+     * @see #stream(StatementBuilder, int)
+     */
+    public Flowable<Row> stream(StatementBuilder statementBuilder)
+    {
+        return this.stream(statementBuilder, this.defaultFetchSize);
+    }
+
+    /**
+     * Pages through the result of a SELECT with keyset pagination. Every page continues after the last row
+     * of the previous page with {@link StatementBuilder#seek(Object...)}, so every page costs the same
+     * no matter how deep it is. The {@link OrderField}s have to be selected, can't be NULL and have to identify a row
+     * uniquely, e.g. the primary key. Seek values of the builder are used as start position.
+     * <p>
+     * A page is read when the previous page was emitted, so at most one page is read ahead of the requests.
+     * {@link Flowable#blockingIterable()} turns the pages into an iterator.
+     *
+     * @param statementBuilder The {@link StatementBuilder} of the SELECT, its limit is replaced by the page size
+     * @param pageSize         The count of rows per page
+     * @return A {@link Flowable} which emits every non empty page
+     */
+    public Flowable<ParsedResultSet> paginate(StatementBuilder<?> statementBuilder, int pageSize)
+    {
+        Preconditions.checkArgument(statementBuilder.getQueryType() == QueryType.SELECT, "Only SELECT statements can be paginated");
+        Preconditions.checkArgument(statementBuilder.useOrdering && !statementBuilder.orderFields.isEmpty(), "Keyset pagination needs at least one order field");
+        Preconditions.checkArgument(pageSize > 0, "pageSize can't be negative or equals zero");
+
+        List<String> keyFields = new ArrayList<>(statementBuilder.orderFields.size());
+        Object[] seekValues = statementBuilder.seekValues;
+
+        for (OrderField orderField : statementBuilder.orderFields)
+        {
+            keyFields.add(orderField.getFieldName());
+        }
+
+        // Both templates are compiled once, every page only binds the key values of the last row
+        StatementBuilder<?> pageBuilder = (StatementBuilder<?>) statementBuilder.copy();
+        pageBuilder.limit(pageSize, 0);
+        pageBuilder.seek((Object[]) null);
+        Query firstPage = pageBuilder.compile();
+        Object[] parameters = pageBuilder.getParameters();
+
+        pageBuilder.seek(new Object[keyFields.size()]);
+        Query nextPage = pageBuilder.compile();
+
+        return Flowable.defer(() ->
+        {
+            // The key values of the last row of every full page are fed back to read the next page
+            UnicastProcessor<Object[]> positions = UnicastProcessor.create();
+            positions.onNext(seekValues == null ? new Object[0] : seekValues.clone());
+
+            return positions.concatMap(lastValues ->
+            {
+                BoundQuery boundQuery = lastValues.length == 0 ? firstPage.bind(parameters) : nextPage.bind(ObjectArrays.concat(parameters, lastValues, Object.class));
+
+                return this.execute(boundQuery).toFlowable(BackpressureStrategy.BUFFER);
+            }, 1).doOnNext(page ->
+            {
+                List<Map<String, String>> rows = page.getRows();
+
+                if (rows.size() < pageSize)
+                {
+                    positions.onComplete();
+                    return;
+                }
+
+                Map<String, String> lastRow = rows.get(rows.size() - 1);
+                Object[] nextValues = new Object[keyFields.size()];
+
+                for (int i = 0; i < nextValues.length; i++)
+                {
+                    nextValues[i] = lastRow.get(findColumn(lastRow, keyFields.get(i)));
+                    Preconditions.checkState(nextValues[i] != null, "The order field '%s' is NULL, keyset pagination can't continue after the row", keyFields.get(i));
+                }
+
+                positions.onNext(nextValues);
+            }).filter(page -> page.getRowCount() > 0);
+        });
+    }
+
+    /**
+     * Returns the key of the field in the rows of a result. The rows are keyed by the column names
+     * without the table, so a qualified field like {@code users.id} is found as {@code id}.
+     *
+     * @throws IllegalStateException if the field wasn't selected
+     */
+    static String findColumn(Map<String, String> row, String field)
+    {
+        if (row.containsKey(field))
+        {
+            return field;
+        }
+
+        String column = getColumnName(field);
+        Preconditions.checkState(row.containsKey(column), "The field '%s' has to be selected", field);
+
+        return column;
+    }
+
+    /**
+     * Reads the rows of a SELECT in parallel with four chunks per connection
+     *
+     * @param statementBuilder The {@link StatementBuilder} of the SELECT
+     * @param keyColumn        Name of an indexed column with integral values, e.g. the primary key
+     * @param parallelism      The count of chunks which are read at the same time
+     * @param ordered          True to emit the rows ordered by the key column
+     * @return A {@link Flowable} which emits every row of the result
+     * @see #scan(StatementBuilder, String, int, int, boolean)
+     */
+    public Flowable<Row> scan(StatementBuilder<?> statementBuilder, String keyColumn, int parallelism, boolean ordered)
+    {
+        return this.scan(statementBuilder, keyColumn, parallelism, parallelism * SCAN_CHUNKS_PER_CONNECTION, ordered);
+    }
+
+    /**
+     * Reads the rows of a SELECT in parallel. The range between the lowest and the highest value of the key column
+     * is split into chunks of equal width, every chunk is streamed on its own connection. Up to {@code parallelism}
+     * chunks are read at the same time and merged into one {@link Flowable} which respects backpressure.
+     * Every chunk holds a slot of the {@link QueryScheduler} while it is read, so the parallelism is capped
+     * at the slots the priority class of the builder can use.
+     * <p>
+     * Ordered scans emit the chunks one after another and order every chunk by the key column, the rows of the
+     * following chunks are buffered meanwhile. Unordered scans emit the rows as soon as they are read.
+     * The limit and the {@link OrderField}s of the builder are ignored.
+     *
+     * @param statementBuilder The {@link StatementBuilder} of the SELECT
+     * @param keyColumn        Name of an indexed column with integral values, e.g. the primary key
+     * @param parallelism      The count of chunks which are read at the same time
+     * @param chunks           The count of chunks the key range is split into
+     * @param ordered          True to emit the rows ordered by the key column
+     * @return A {@link Flowable} which emits every row of the result
+     */
+    public Flowable<Row> scan(StatementBuilder<?> statementBuilder, String keyColumn, int parallelism, int chunks, boolean ordered)
+    {
+        Preconditions.checkArgument(statementBuilder.getQueryType() == QueryType.SELECT, "Only SELECT statements can be scanned");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(keyColumn), "keyColumn can't be null or empty");
+        Preconditions.checkArgument(parallelism > 0, "parallelism can't be negative or equals zero");
+        Preconditions.checkArgument(chunks > 0, "chunks can't be negative or equals zero");
+
+        // The bounds and the chunks are compiled once from a copy of the builder, the chunks only bind their range
+        StatementBuilder<?> scanBuilder = (StatementBuilder<?>) statementBuilder.copy();
+        scanBuilder.seek((Object[]) null);
+        scanBuilder.range(null, null, null);
+        scanBuilder.fields.clear();
+        scanBuilder.fields.add(keyColumn);
+        scanBuilder.orderFields.clear();
+        scanBuilder.addOrderField(new OrderField(keyColumn, OrderType.ASCENDING));
+        scanBuilder.limit(1, 0);
+        Object[] parameters = scanBuilder.getParameters();
+        Query minQuery = scanBuilder.compile();
+
+        scanBuilder.orderFields.set(0, new OrderField(keyColumn, OrderType.DESCENDING));
+        Query maxQuery = scanBuilder.compile();
+
+        scanBuilder.fields.clear();
+        scanBuilder.fields.addAll(statementBuilder.fields);
+        scanBuilder.orderFields.set(0, new OrderField(keyColumn, OrderType.ASCENDING));
+        scanBuilder.useOrdering = ordered;
+        scanBuilder.useLimits = false;
+        scanBuilder.range(keyColumn, 0L, 0L);
+        Query chunkQuery = scanBuilder.compile();
+
+        return Single.zip(this.execute(minQuery.bind(parameters)).singleOrError(), this.execute(maxQuery.bind(parameters)).singleOrError(), (min, max) ->
+                min.getRowCount() == 0 ? new long[0] : new long[]{readKey(min, keyColumn), readKey(max, keyColumn)})
+                     .flatMapPublisher(bounds ->
+                     {
+                         if (bounds.length == 0)
+                         {
+                             return Flowable.empty();
+                         }
+
+                         // The span of the whole long range doesn't fit into a long
+                         BigInteger end = BigInteger.valueOf(bounds[1]).add(BigInteger.ONE);
+                         BigInteger span = end.subtract(BigInteger.valueOf(bounds[0]));
+                         BigInteger chunkSize = span.add(BigInteger.valueOf(chunks - 1)).divide(BigInteger.valueOf(chunks));
+                         List<Flowable<Row>> streams = new ArrayList<>(chunks);
+
+                         for (BigInteger from = BigInteger.valueOf(bounds[0]); from.compareTo(end) < 0; from = from.add(chunkSize))
+                         {
+                             Object[] chunkParameters = ObjectArrays.concat(parameters, new Object[]{toParameter(from), toParameter(from.add(chunkSize).min(end))}, Object.class);
+                             streams.add(this.stream(chunkQuery.bind(chunkParameters), this.defaultFetchSize));
+                         }
+
+                         // Every stream holds a slot of the scheduler while it is read, more would only wait in the queue
+                         int streamCount = Math.max(1, Math.min(parallelism, this.queryScheduler.getAvailableSlots(chunkQuery.getPriority())));
+
+                         return ordered ? Flowable.concatEager(streams, streamCount, Flowable.bufferSize()) : Flowable.merge(streams, streamCount);
+                     });
+    }
+
+    /**
+     * Reads the key of the single row of a bound query, a qualified key column like {@code users.id} is found by its column name
+     *
+     * @throws IllegalArgumentException If the key isn't an integral value
+     */
+    private static long readKey(ParsedResultSet bound, String keyColumn) throws Exception
+    {
+        Map<String, String> row = bound.getRows().get(0);
+        String key = row.get(findColumn(row, keyColumn));
+
+        Preconditions.checkArgument(key != null, "The key column '%s' can't contain NULL", keyColumn);
+        Preconditions.checkArgument(INTEGRAL.matcher(key).matches(), "The key column '%s' has to contain integral values, but contains '%s'", keyColumn, key);
+
+        try
+        {
+            return Long.parseLong(key);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(String.format("The key '%s' of the key column '%s' doesn't fit into a long", key, keyColumn), e);
+        }
+    }
+
+    /**
+     * @return The value as {@link Long} if it fits, otherwise as {@link BigDecimal}
+     */
+    private static Object toParameter(BigInteger value)
+    {
+        return value.bitLength() < Long.SIZE ? (Object) value.longValue() : new BigDecimal(value);
+    }
+
     public HikariDataSource getConnectionPool()
     {
         return connectionPool;
@@ -177,47 +747,394 @@ public abstract class Database
         return this.connectionPool.getMaximumPoolSize();
     }
 
+    /**
+     * Sets the maximum size of the connection pool, the {@link QueryScheduler} is resized to the same capacity
+     *
+     * @param maxPoolsize New size
+     * @return Current {@link Database} instance
+     */
     public Database setMaxPoolsize(int maxPoolsize)
     {
         this.connectionPool.setMaximumPoolSize(maxPoolsize);
+        this.queryScheduler.setCapacity(maxPoolsize);
+
         return this;
     }
 
-    public String getDriverClass()
+    /**
+     * Returns the {@link Scheduler} where blocking JDBC work with {@link QueryPriority#NORMAL} is done
+     *
+     * @return The database {@link Scheduler}
+     * @see #getScheduler(QueryPriority)
+     */
+    public Scheduler getScheduler()
     {
-        return this.connectionPool.getDriverClassName();
+        return this.getScheduler(QueryPriority.NORMAL);
     }
 
-    public Database setDriverClass(String driverClass)
+    /**
+     * Returns a {@link Scheduler} which queues the work in the {@link QueryScheduler} with the given priority
+     *
+     * @param priority The {@link QueryPriority}
+     * @return The database {@link Scheduler}
+     */
+    public Scheduler getScheduler(QueryPriority priority)
     {
-        this.connectionPool.setDriverClassName(driverClass);
-        return this;
+        return this.schedulers[priority.ordinal()];
     }
 
-    public String getJdbcUrl()
+    /**
+     * @return The {@link QueryScheduler} which queues all work in front of the connection pool
+     */
+    public QueryScheduler getQueryScheduler()
     {
-        return this.connectionPool.getJdbcUrl();
+        return queryScheduler;
     }
 
-    public Database setJdbcUrl(String jdbcUrl)
+    public Scheduler getResultScheduler()
     {
-        this.connectionPool.setJdbcUrl(jdbcUrl);
-        return this;
+        return resultScheduler;
     }
 
-    public String getUsername()
+    /**
+     * Sets the {@link Scheduler} where the results are pushed to the subscribers.
+     * If it is null the results are pushed on the database scheduler.
+     *
+     * @param resultScheduler The {@link Scheduler} or null
+     * @return Current {@link Database} instance
+     */
+    public Database setResultScheduler(Scheduler resultScheduler)
     {
-        return this.connectionPool.getUsername();
+        this.resultScheduler = resultScheduler;
+        return this;
     }
 
-    public Database setUsername(String username)
+    public StatementCache getStatementCache()
     {
-        this.connectionPool.setUsername(username);
-        return this;
+        return statementCache;
     }
 
-    public String getPassword()
-    {
+    /**
+     * Sets the count of prepared statements which are cached per connection, 0 disables the cache.
+     * It has to be set before the first connection is checked out.
+     *
+     * @param statementCacheSize New size
+     * @return Current {@link Database} instance
+     */
+    public Database setStatementCacheSize(int statementCacheSize)
+    {
+        this.statementCache.setMaxSize(statementCacheSize);
+        return this;
+    }
+
+    /**
+     * Returns the {@link ResultCache}. Results are only cached for tables which were enabled with
+     * {@link ResultCache#enableTable(String)}.
+     *
+     * @return The {@link ResultCache}
+     */
+    public ResultCache getResultCache()
+    {
+        return resultCache;
+    }
+
+    public Database setResultCache(ResultCache resultCache)
+    {
+        Preconditions.checkNotNull(resultCache, "resultCache can't be null");
+
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    /**
+     * Lets identical SELECTs which are running at the same time share a single execution.
+     * SELECTs are identical if their SQL and parameters are equal.
+     *
+     * @param deduplicateSelects True to collapse identical concurrent SELECTs
+     * @return Current {@link Database} instance
+     */
+    public Database setDeduplicateSelects(boolean deduplicateSelects)
+    {
+        this.deduplicateSelects = deduplicateSelects;
+        return this;
+    }
+
+    public boolean isDeduplicateSelects()
+    {
+        return deduplicateSelects;
+    }
+
+    /**
+     * Returns the {@link SingleFlight} which collapses identical concurrent SELECTs,
+     * {@link SingleFlight#getCollapsedCount()} reports how many executions were saved.
+     *
+     * @return The {@link SingleFlight}
+     */
+    public SingleFlight<BoundQuery, ParsedResultSet> getSingleFlight()
+    {
+        return singleFlight;
+    }
+
+    /**
+     * Returns the timings of every query template and the statistics of the connection pool.
+     * Use {@link DatabaseMetrics#registerMBean(String)} to expose them through JMX.
+     *
+     * @return The {@link DatabaseMetrics}
+     */
+    public DatabaseMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Returns the log of statements which took longer than its threshold, one second by default
+     *
+     * @return The {@link SlowQueryLog}
+     */
+    public SlowQueryLog getSlowQueryLog()
+    {
+        return slowQueryLog;
+    }
+
+    /**
+     * Returns the cache of the table metadata which is used to bind the parameters with the column types
+     * and to warn about lookups which aren't covered by an index
+     *
+     * @return The {@link SchemaCache}
+     */
+    public SchemaCache getSchemaCache()
+    {
+        return schemaCache;
+    }
+
+    /**
+     * Registers a query template which is prepared on every connection by {@link #warmUp()}
+     *
+     * @param query The {@link Query} template
+     * @return Current {@link Database} instance
+     */
+    public Database addHotQuery(Query query)
+    {
+        Preconditions.checkNotNull(query, "query can't be null");
+
+        this.hotQueries.addIfAbsent(query);
+        return this;
+    }
+
+    /**
+     * Compiles the {@link StatementBuilder} and registers the template
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @return Current {@link Database} instance
+     * @see #addHotQuery(Query)
+     */
+    public Database addHotQuery(StatementBuilder<?> statementBuilder)
+    {
+        Preconditions.checkNotNull(statementBuilder, "statementBuilder can't be null");
+
+        return this.addHotQuery(statementBuilder.compile());
+    }
+
+    public List<Query> getHotQueries()
+    {
+        return Collections.unmodifiableList(hotQueries);
+    }
+
+    /**
+     * Starts the warm-up of the connection pool: the minimum count of connections is opened in parallel
+     * and every hot query is prepared on each of them, so the first requests after the start
+     * neither wait for new connections nor for the server to parse their statements.
+     * <p>
+     * The warm-up only runs once, later calls return the same {@link Completable}.
+     * Call {@link Completable#blockingAwait()} on it to block the startup until the database is ready.
+     *
+     * @return A {@link Completable} which completes when the warm-up is done
+     * @see #addHotQuery(Query)
+     */
+    public synchronized Completable warmUp()
+    {
+        if (this.warmUp == null)
+        {
+            this.warmUp = Completable.fromAction(this::runWarmUp).subscribeOn(Schedulers.io()).cache();
+            this.warmUp.subscribe(() -> {}, e -> this.logger.error(e, "Warm-up failed"));
+        }
+
+        return this.warmUp;
+    }
+
+    private void runWarmUp() throws SQLException
+    {
+        long start = System.nanoTime();
+        this.warmUpPools();
+        this.warmUpNanos = System.nanoTime() - start;
+        this.logger.info("Warm-up finished in %s ms", TimeUnit.NANOSECONDS.toMillis(this.warmUpNanos));
+    }
+
+    /**
+     * Warms up the connection pool with every hot query. Implementations with more connection pools override this
+     * to warm up their pools as well.
+     *
+     * @throws SQLException If a connection can't be opened
+     */
+    protected void warmUpPools() throws SQLException
+    {
+        this.warmUp(this.connectionPool, this.hotQueries);
+    }
+
+    /**
+     * Opens the minimum count of connections of the pool in parallel and prepares the queries on each of them
+     *
+     * @param connectionPool The pool
+     * @param queries        The {@link Query} templates which are prepared
+     * @throws SQLException If a connection can't be opened
+     */
+    protected final void warmUp(HikariDataSource connectionPool, List<Query> queries) throws SQLException
+    {
+        int connectionCount = Math.max(1, connectionPool.getMinimumIdle());
+        List<Connection> connections = new CopyOnWriteArrayList<>();
+        int prepared;
+
+        try
+        {
+            // every connection is kept until all are opened, so the pool has to create a new one for each of them
+            prepared = Flowable.range(0, connectionCount)
+                               .flatMap(i -> Flowable.fromCallable(() -> this.warmUpConnection(connectionPool, queries, connections)).subscribeOn(Schedulers.io()), connectionCount)
+                               .reduce(0, Integer::sum)
+                               .blockingGet();
+        }
+        finally
+        {
+            for (Connection connection : connections)
+            {
+                try
+                {
+                    connection.close();
+                }
+                catch (SQLException e)
+                {
+                    this.logger.error(e, "Could not close the connection after the warm-up");
+                }
+            }
+        }
+
+        this.logger.info("Warmed up %s connections of %s and prepared %s statements", connections.size(), connectionPool.getPoolName(), prepared);
+    }
+
+    private int warmUpConnection(HikariDataSource connectionPool, List<Query> queries, List<Connection> connections) throws SQLException
+    {
+        Connection connection = checkout(connectionPool);
+        connections.add(connection);
+        int prepared = 0;
+
+        for (Query query : queries)
+        {
+            try
+            {
+                this.releaseStatement(this.prepareStatement(connection, query));
+                prepared++;
+            }
+            catch (SQLException e)
+            {
+                this.logger.error(e, "Could not prepare the hot query %s", query.getSql());
+            }
+        }
+
+        return prepared;
+    }
+
+    /**
+     * @return The time the warm-up took in nanoseconds, -1 if it didn't finish yet
+     */
+    public long getWarmUpNanos()
+    {
+        return warmUpNanos;
+    }
+
+    /**
+     * Sets the timeout of all queries which don't have their own timeout. The timeout starts when the query
+     * is queued, queries which don't finish in time fail with a {@link SQLTimeoutException}.
+     *
+     * @param timeout The timeout, 0 for no timeout
+     * @param unit    The unit of the timeout
+     * @return Current {@link Database} instance
+     * @see StatementBuilder#setQueryTimeout(long, TimeUnit)
+     */
+    public Database setDefaultQueryTimeout(long timeout, TimeUnit unit)
+    {
+        Preconditions.checkArgument(timeout > -1, "timeout can't be negative");
+        Preconditions.checkNotNull(unit, "unit can't be null");
+
+        this.defaultQueryTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * @return The timeout in milliseconds of queries without their own timeout, 0 if there is none
+     */
+    public long getDefaultQueryTimeoutMillis()
+    {
+        return defaultQueryTimeoutMillis;
+    }
+
+    public int getDefaultBatchSize()
+    {
+        return defaultBatchSize;
+    }
+
+    public Database setDefaultBatchSize(int defaultBatchSize)
+    {
+        Preconditions.checkArgument(defaultBatchSize > 0, "defaultBatchSize can't be negative or equals zero");
+
+        this.defaultBatchSize = defaultBatchSize;
+        return this;
+    }
+
+    public int getDefaultFetchSize()
+    {
+        return defaultFetchSize;
+    }
+
+    public Database setDefaultFetchSize(int defaultFetchSize)
+    {
+        this.defaultFetchSize = defaultFetchSize;
+        return this;
+    }
+
+    public String getDriverClass()
+    {
+        return this.connectionPool.getDriverClassName();
+    }
+
+    public Database setDriverClass(String driverClass)
+    {
+        this.connectionPool.setDriverClassName(driverClass);
+        return this;
+    }
+
+    public String getJdbcUrl()
+    {
+        return this.connectionPool.getJdbcUrl();
+    }
+
+    public Database setJdbcUrl(String jdbcUrl)
+    {
+        this.connectionPool.setJdbcUrl(jdbcUrl);
+        return this;
+    }
+
+    public String getUsername()
+    {
+        return this.connectionPool.getUsername();
+    }
+
+    public Database setUsername(String username)
+    {
+        this.connectionPool.setUsername(username);
+        return this;
+    }
+
+    public String getPassword()
+    {
         return this.connectionPool.getPassword();
     }
 
@@ -227,6 +1144,478 @@ public abstract class Database
         return this;
     }
 
+    /**
+     * Queues blocking JDBC work in the {@link QueryScheduler}. Nothing is done until the {@link Observable}
+     * gets subscribed and every subscription runs the work again. If the queue of the priority class
+     * is full the {@link Observable} fails with a {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * @param priority The {@link QueryPriority} of the work
+     * @param work     The work which produces the result
+     * @param <T>      Type of the result
+     * @return An {@link Observable} which pushes the result on the result scheduler
+     * @see #schedule(QueryPriority, long, Callable)
+     */
+    protected <T> Observable<T> schedule(QueryPriority priority, Callable<T> work)
+    {
+        return this.schedule(priority, this.defaultQueryTimeoutMillis, work);
+    }
+
+    /**
+     * Queues blocking JDBC work with the priority and the timeout of the query
+     *
+     * @param query The {@link Query} which is executed by the work
+     * @param work  The work which produces the result
+     * @param <T>   Type of the result
+     * @return An {@link Observable} which pushes the result on the result scheduler
+     * @see #schedule(QueryPriority, long, Callable)
+     */
+    protected <T> Observable<T> schedule(Query query, Callable<T> work)
+    {
+        return this.schedule(query.getPriority(), query.getTimeoutMillis() > 0 ? query.getTimeoutMillis() : this.defaultQueryTimeoutMillis, work);
+    }
+
+    /**
+     * Queues blocking JDBC work in the {@link QueryScheduler} with a deadline which starts when the work is queued.
+     * <p>
+     * Work which is still queued at the deadline is taken out of the queue and fails with a {@link SQLTimeoutException},
+     * so it never occupies a connection. The work only waits for a connection of the pool until the deadline
+     * and statements which are prepared by the work get the remaining time as query timeout.
+     * Disposing the subscription takes queued work out of the queue and cancels the running statement on the server,
+     * so the connection and its worker are free again right away.
+     *
+     * @param priority      The {@link QueryPriority} of the work
+     * @param timeoutMillis The time the work may take including the time in the queue, 0 for no timeout
+     * @param work          The work which produces the result
+     * @param <T>           Type of the result
+     * @return An {@link Observable} which pushes the result on the result scheduler
+     */
+    protected <T> Observable<T> schedule(QueryPriority priority, long timeoutMillis, Callable<T> work)
+    {
+        Observable<T> observable = Observable.create(e ->
+        {
+            QueryExecution execution = new QueryExecution(TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+            SerialDisposable deadline = new SerialDisposable();
+            QueryScheduler.Task task = this.queryScheduler.submit(priority, () -> execution.run(() ->
+            {
+                // the work left the queue, the timer of the deadline is not needed anymore
+                deadline.dispose();
+
+                if (e.isDisposed())
+                {
+                    return;
+                }
+
+                T result;
+
+                try
+                {
+                    execution.checkDeadline();
+                    result = work.call();
+                }
+                catch (Throwable throwable)
+                {
+                    execution.complete();
+
+                    if (!e.isDisposed())
+                    {
+                        e.onError(throwable);
+                    }
+                    return;
+                }
+
+                execution.complete();
+                e.onNext(result);
+                e.onComplete();
+            }));
+
+            if (timeoutMillis != 0)
+            {
+                // replacing the timer after the work started disposes it right away
+                deadline.replace(Schedulers.computation().scheduleDirect(() ->
+                {
+                    if (task.cancel() && !e.isDisposed())
+                    {
+                        e.onError(new SQLTimeoutException(String.format("The query waited longer than its timeout of %s ms in the queue", timeoutMillis)));
+                    }
+                }, timeoutMillis, TimeUnit.MILLISECONDS));
+            }
+
+            e.setCancellable(() ->
+            {
+                deadline.dispose();
+
+                if (!task.cancel() && !execution.isDone())
+                {
+                    // cancelling opens a new connection to kill the statement, so it doesn't run on the disposing thread
+                    Schedulers.io().scheduleDirect(() -> this.cancel(execution));
+                }
+            });
+        });
+
+        return this.observeResults(observable);
+    }
+
+    /**
+     * @param observable An {@link Observable} which pushes results
+     * @param <T>        Type of the results
+     * @return The {@link Observable} which pushes the results on the result scheduler if one is set
+     */
+    protected <T> Observable<T> observeResults(Observable<T> observable)
+    {
+        return this.resultScheduler == null ? observable : observable.observeOn(this.resultScheduler);
+    }
+
+    private void cancel(QueryExecution execution)
+    {
+        try
+        {
+            execution.cancel();
+        }
+        catch (SQLException e)
+        {
+            this.logger.error(e, "Could not cancel the running statement");
+        }
+    }
+
+    /**
+     * Subscribes to the {@link Flowable} and requests its items on the database scheduler of the priority class.
+     * The {@link Flowable} occupies a slot of the {@link QueryScheduler} from the subscription until it terminates
+     * or gets disposed, so a connection which is kept between the requests is part of the admission control.
+     *
+     * @param priority The {@link QueryPriority} of the work
+     * @param flowable A {@link Flowable} which does blocking JDBC work
+     * @param <T>      Type of the items
+     * @return A {@link Flowable} which emits the items on the result scheduler
+     */
+    protected <T> Flowable<T> schedule(QueryPriority priority, Flowable<T> flowable)
+    {
+        Flowable<T> scheduled = Flowable.defer(() ->
+        {
+            AtomicBoolean subscribed = new AtomicBoolean();
+
+            return this.lease(priority, subscribed).flatMapPublisher(lease ->
+            {
+                subscribed.set(true);
+                return flowable.subscribeOn(Schedulers.from(lease)).doFinally(lease::release);
+            });
+        });
+
+        return this.resultScheduler == null ? scheduled : scheduled.observeOn(this.resultScheduler);
+    }
+
+    /**
+     * Waits for a free slot of the priority class without blocking a thread
+     *
+     * @param subscribed Set as soon as the lease is in use, a lease which was delivered after the subscription
+     *                   was disposed is released right away
+     */
+    private Single<QueryScheduler.Lease> lease(QueryPriority priority, AtomicBoolean subscribed)
+    {
+        return Single.create(e ->
+        {
+            QueryScheduler.Task task = this.queryScheduler.lease(priority, lease ->
+            {
+                if (!e.isDisposed())
+                {
+                    e.onSuccess(lease);
+                }
+
+                if (!subscribed.get())
+                {
+                    lease.release();
+                }
+            });
+
+            e.setCancellable(task::cancel);
+        });
+    }
+
+    /**
+     * Checks out a connection and starts a streaming SELECT on it. The statement is prepared through the statement cache
+     * with the timeout of the query, it is cancelled if the stream is closed before the end. The timings and the row count
+     * are recorded in the metrics and the slow query log when the stream gets closed.
+     *
+     * @param boundQuery The {@link BoundQuery} of the SELECT
+     * @param fetchSize  The JDBC fetch size hint
+     * @return The open {@link ResultStream}, the caller has to close it
+     * @throws Exception If the query timed out or a database access error occurs
+     */
+    protected ResultStream openStream(BoundQuery boundQuery, int fetchSize) throws Exception
+    {
+        Query query = boundQuery.getQuery();
+        QueryExecution execution = new QueryExecution(TimeUnit.MILLISECONDS.toNanos(query.getTimeoutMillis() > 0 ? query.getTimeoutMillis() : this.defaultQueryTimeoutMillis));
+        QueryMetrics queryMetrics = this.metrics.get(query);
+        long start = System.nanoTime();
+
+        return execution.call(() ->
+        {
+            Connection connection = this.getConnection(query);
+            long checkedOut = System.nanoTime();
+            PreparedStatement preparedStatement;
+
+            try
+            {
+                preparedStatement = this.prepareStatement(connection, boundQuery);
+            }
+            catch (SQLException e)
+            {
+                connection.close();
+                throw e;
+            }
+
+            long prepared = System.nanoTime();
+
+            return new ResultStream(connection, preparedStatement, fetchSize, resultStream ->
+            {
+                execution.complete();
+                execution.detach(preparedStatement);
+                this.releaseStatement(preparedStatement);
+
+                long streamed = System.nanoTime() - prepared;
+
+                if (queryMetrics != null)
+                {
+                    queryMetrics.record(checkedOut - start, prepared - checkedOut, streamed, 0);
+                    queryMetrics.recordResult(resultStream.getRowCount(), 0);
+                }
+
+                this.slowQueryLog.record(boundQuery, checkedOut - start, prepared - checkedOut, streamed, 0, resultStream.getRowCount());
+            });
+        });
+    }
+
+    /**
+     * Prepares the {@link BoundQuery} on the given connection, reusing a cached statement if possible
+     *
+     * @param connection The connection which was checked out from the pool
+     * @param boundQuery The {@link BoundQuery}
+     * @return The {@link PreparedStatement} with all parameters bound
+     * @throws SQLException If a database access error occurs
+     * @see StatementCache
+     */
+    protected PreparedStatement prepareStatement(Connection connection, BoundQuery boundQuery) throws SQLException
+    {
+        this.describe(connection, boundQuery.getQuery());
+        PreparedStatement preparedStatement = this.statementCache.prepare(connection, boundQuery.getQuery());
+
+        try
+        {
+            boundQuery.bind(preparedStatement);
+            this.attach(preparedStatement);
+        }
+        catch (SQLException e)
+        {
+            this.releaseStatement(preparedStatement);
+            throw e;
+        }
+
+        return preparedStatement;
+    }
+
+    /**
+     * Prepares the {@link Query} on the given connection without binding any parameters
+     *
+     * @param connection The connection which was checked out from the pool
+     * @param query      The {@link Query}
+     * @return The {@link PreparedStatement}
+     * @throws SQLException If a database access error occurs
+     * @see StatementCache
+     */
+    protected PreparedStatement prepareStatement(Connection connection, Query query) throws SQLException
+    {
+        this.describe(connection, query);
+        PreparedStatement preparedStatement = this.statementCache.prepare(connection, query);
+
+        try
+        {
+            this.attach(preparedStatement);
+        }
+        catch (SQLException e)
+        {
+            this.releaseStatement(preparedStatement);
+            throw e;
+        }
+
+        return preparedStatement;
+    }
+
+    /**
+     * Applies the deadline of the scheduled work which runs on the current thread to the statement
+     * and allows the work to cancel it
+     */
+    private void attach(PreparedStatement preparedStatement) throws SQLException
+    {
+        QueryExecution execution = QueryExecution.current();
+
+        if (execution != null)
+        {
+            execution.attach(preparedStatement);
+        }
+    }
+
+    /**
+     * Looks up the column type of every placeholder of the template in the {@link SchemaCache} and warns about
+     * lookup fields which aren't covered by an index. This happens once per template and generation of the schema,
+     * templates whose tables couldn't be loaded are described again when they are prepared the next time.
+     *
+     * @param connection The connection which is used to load missing tables
+     * @param query      The {@link Query}
+     */
+    private void describe(Connection connection, Query query)
+    {
+        long generation = this.schemaCache.getGeneration();
+
+        if (!this.schemaCache.isEnabled() || query.isDescribed(generation))
+        {
+            return;
+        }
+
+        List<TableMetadata> tables = new ArrayList<>(query.getTables().size());
+
+        try
+        {
+            for (String table : query.getTables())
+            {
+                tables.add(this.schemaCache.getTable(connection, table));
+            }
+        }
+        catch (SQLException e)
+        {
+            this.logger.warn("Could not load the schema of %s: %s", query.getTables(), e.getMessage());
+            return;
+        }
+
+        List<String> parameterNames = query.getParameterNames();
+        int[] columnTypes = new int[parameterNames.size()];
+
+        for (int i = 0; i < columnTypes.length; i++)
+        {
+            ColumnMetadata column = findColumn(tables, parameterNames.get(i));
+            columnTypes[i] = column == null ? Types.NULL : column.getJdbcType();
+        }
+
+        List<String> lookupColumns = Lists.transform(query.getLookupFields(), Database::getColumnName);
+
+        for (String columnName : lookupColumns)
+        {
+            for (TableMetadata table : tables)
+            {
+                if (table.getColumn(columnName) != null && !table.isIndexed(columnName, lookupColumns))
+                {
+                    this.logger.warn("`%s`.`%s` is not covered by an index: %s", table.getName(), columnName, query.getSql());
+                }
+            }
+        }
+
+        query.setColumnTypes(columnTypes, generation);
+    }
+
+    private static ColumnMetadata findColumn(List<TableMetadata> tables, String fieldName)
+    {
+        String columnName = getColumnName(fieldName);
+
+        for (TableMetadata table : tables)
+        {
+            ColumnMetadata column = table.getColumn(columnName);
+
+            if (column != null)
+            {
+                return column;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Strips the table of a qualified field name, e.g. {@code players.name}
+     */
+    private static String getColumnName(String fieldName)
+    {
+        return fieldName.substring(fieldName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Hands a statement which was created by {@link #prepareStatement(Connection, BoundQuery)} back to the statement cache.
+     * The connection is not closed by this method.
+     *
+     * @param preparedStatement The {@link PreparedStatement}
+     */
+    protected void releaseStatement(PreparedStatement preparedStatement)
+    {
+        QueryExecution execution = QueryExecution.current();
+
+        if (execution != null)
+        {
+            execution.detach(preparedStatement);
+        }
+
+        this.statementCache.release(preparedStatement);
+    }
+
+    /**
+     * Registers work which runs when the database gets closed, before the scheduler stops accepting new work
+     *
+     * @param shutdownHook The work, e.g. flushing buffered writes
+     * @return Current {@link Database} instance
+     */
+    public Database addShutdownHook(Runnable shutdownHook)
+    {
+        Preconditions.checkNotNull(shutdownHook, "shutdownHook can't be null");
+
+        this.shutdownHooks.add(shutdownHook);
+        return this;
+    }
+
+    public boolean removeShutdownHook(Runnable shutdownHook)
+    {
+        return this.shutdownHooks.remove(shutdownHook);
+    }
+
+    /**
+     * Runs the shutdown hooks, stops accepting new work, waits for the queued work and closes all cached statements and the connection pool
+     */
+    @Override
+    public void close()
+    {
+        for (Runnable shutdownHook : this.shutdownHooks)
+        {
+            try
+            {
+                shutdownHook.run();
+            }
+            catch (Exception e)
+            {
+                this.logger.error(e, "Shutdown hook failed");
+            }
+        }
+
+        this.queryScheduler.shutdown();
+
+        try
+        {
+            if (!this.queryScheduler.awaitTermination(this.connectionPool.getConnectionTimeout(), TimeUnit.MILLISECONDS))
+            {
+                this.logger.warn("Database scheduler did not terminate in time");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        try
+        {
+            this.metrics.unregisterMBean();
+        }
+        catch (JMException e)
+        {
+            this.logger.error(e, "Could not unregister the metrics MBean");
+        }
+
+        this.connectionPool.close();
+    }
+
     /**
      * Closes the given {@link PreparedStatement}
      *
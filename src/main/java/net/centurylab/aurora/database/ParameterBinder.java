@@ -0,0 +1,22 @@
+package net.centurylab.aurora.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds a parameter value of a specific type to a {@link PreparedStatement}
+ *
+ * @param <T> Type of the value
+ * @see ParameterBinders#register(Class, ParameterBinder)
+ */
+@FunctionalInterface
+public interface ParameterBinder<T>
+{
+    /**
+     * @param preparedStatement The {@link PreparedStatement}
+     * @param index             Index of the placeholder, starting at 1
+     * @param value             The value, never null
+     * @throws SQLException If a database access error occurs
+     */
+    void bind(PreparedStatement preparedStatement, int index, T value) throws SQLException;
+}
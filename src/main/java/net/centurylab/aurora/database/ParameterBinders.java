@@ -0,0 +1,273 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The registry of the {@link ParameterBinder}s of all parameter types.
+ * <p>
+ * Every {@link Query} template resolves the binder of every placeholder from the class of its value and the type
+ * of its column. Later executions only compare the class of every value with the resolved class and call
+ * the binder directly. A placeholder whose values change their class, e.g. because its first value was null,
+ * is resolved again for the new class. Values of unregistered types are bound with the binder of their closest
+ * registered supertype, with the setter of their column type if the schema is known
+ * or with {@link PreparedStatement#setObject(int, Object)}.
+ */
+public final class ParameterBinders
+{
+    /**
+     * Binds a {@link UUID} as its 36 characters string, this is the default
+     */
+    public static final ParameterBinder<UUID> UUID_AS_STRING = (preparedStatement, index, value) -> preparedStatement.setString(index, value.toString());
+
+    /**
+     * Binds a {@link UUID} as its 16 bytes for BINARY(16) columns
+     */
+    public static final ParameterBinder<UUID> UUID_AS_BINARY = (preparedStatement, index, value) -> preparedStatement.setBytes(index, toBytes(value));
+
+    /**
+     * Binds an {@link Instant} as TIMESTAMP, this is the default
+     */
+    public static final ParameterBinder<Instant> INSTANT_AS_TIMESTAMP = (preparedStatement, index, value) -> preparedStatement.setTimestamp(index, Timestamp.from(value));
+
+    /**
+     * Binds an {@link Instant} as milliseconds since the epoch for BIGINT columns
+     */
+    public static final ParameterBinder<Instant> INSTANT_AS_MILLIS = (preparedStatement, index, value) -> preparedStatement.setLong(index, value.toEpochMilli());
+
+    private static final ParameterBinder<Object> OBJECT = PreparedStatement::setObject;
+
+    private static final ConcurrentHashMap<Class<?>, ParameterBinder<Object>> BINDERS  = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, ParameterBinder<Object>> RESOLVED = new ConcurrentHashMap<>();
+    private static final AtomicInteger                                        VERSION  = new AtomicInteger();
+
+    static
+    {
+        register(String.class, PreparedStatement::setString);
+        register(Integer.class, (preparedStatement, index, value) -> preparedStatement.setInt(index, value));
+        register(Long.class, (preparedStatement, index, value) -> preparedStatement.setLong(index, value));
+        register(Short.class, (preparedStatement, index, value) -> preparedStatement.setShort(index, value));
+        register(Byte.class, (preparedStatement, index, value) -> preparedStatement.setByte(index, value));
+        register(Float.class, (preparedStatement, index, value) -> preparedStatement.setFloat(index, value));
+        register(Double.class, (preparedStatement, index, value) -> preparedStatement.setDouble(index, value));
+        register(Boolean.class, (preparedStatement, index, value) -> preparedStatement.setBoolean(index, value));
+        register(BigDecimal.class, PreparedStatement::setBigDecimal);
+        register(byte[].class, PreparedStatement::setBytes);
+        register(Timestamp.class, PreparedStatement::setTimestamp);
+        register(Date.class, PreparedStatement::setDate);
+        register(Time.class, PreparedStatement::setTime);
+        register(UUID.class, UUID_AS_STRING);
+        register(Instant.class, INSTANT_AS_TIMESTAMP);
+    }
+
+    private ParameterBinders()
+    {
+    }
+
+    /**
+     * Registers the binder of a type, replacing the previous binder. Subtypes use the binder as well
+     * unless they have their own. Templates which already resolved their binders resolve them again.
+     *
+     * @param type   The type of the values
+     * @param binder The {@link ParameterBinder}
+     * @param <T>    The type of the values
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void register(Class<T> type, ParameterBinder<? super T> binder)
+    {
+        Preconditions.checkNotNull(type, "type can't be null");
+        Preconditions.checkNotNull(binder, "binder can't be null");
+
+        BINDERS.put(type, (ParameterBinder<Object>) binder);
+        RESOLVED.clear();
+        VERSION.incrementAndGet();
+    }
+
+    /**
+     * Returns the binder of the type or of its closest registered supertype
+     *
+     * @param type The type of the values
+     * @return The {@link ParameterBinder}, {@link PreparedStatement#setObject(int, Object)} if no supertype is registered
+     */
+    public static ParameterBinder<Object> get(Class<?> type)
+    {
+        ParameterBinder<Object> binder = RESOLVED.get(type);
+
+        return binder != null ? binder : RESOLVED.computeIfAbsent(type, ParameterBinders::find);
+    }
+
+    private static ParameterBinder<Object> find(Class<?> type)
+    {
+        for (Class<?> current = type; current != null; current = current.getSuperclass())
+        {
+            ParameterBinder<Object> binder = BINDERS.get(current);
+
+            if (binder != null)
+            {
+                return binder;
+            }
+
+            for (Class<?> implemented : current.getInterfaces())
+            {
+                binder = BINDERS.get(implemented);
+
+                if (binder != null)
+                {
+                    return binder;
+                }
+            }
+        }
+
+        return OBJECT;
+    }
+
+    private static byte[] toBytes(UUID uuid)
+    {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    /**
+     * Resolves the binders of a template from the types of the given values. Values without a registered binder
+     * are converted to the type of their column if it is known.
+     *
+     * @param parameters  The parameter values of the first execution
+     * @param columnTypes The {@link Types} of the column of every placeholder or null if the schema is unknown
+     * @return The resolved binders
+     */
+    static Resolved resolve(Object[] parameters, int[] columnTypes)
+    {
+        Resolved resolved = new Resolved(VERSION.get(), parameters.length, columnTypes);
+
+        for (int i = 0; i < parameters.length; i++)
+        {
+            if (parameters[i] != null)
+            {
+                resolved.slots[i] = resolved.resolve(i, parameters[i].getClass());
+            }
+        }
+
+        return resolved;
+    }
+
+    private static boolean isKnown(int columnType)
+    {
+        return columnType != Types.NULL && columnType != Types.OTHER;
+    }
+
+    /**
+     * Binds a value of an unregistered type with the setter of the column type
+     */
+    private static void bindAs(PreparedStatement preparedStatement, int index, Object value, int columnType) throws SQLException
+    {
+        if (value instanceof java.util.Date && columnType == Types.TIMESTAMP)
+        {
+            preparedStatement.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+        }
+        else if (value instanceof java.util.Date && columnType == Types.DATE)
+        {
+            preparedStatement.setDate(index, new Date(((java.util.Date) value).getTime()));
+        }
+        else if (value instanceof Number && (columnType == Types.TINYINT || columnType == Types.SMALLINT || columnType == Types.INTEGER || columnType == Types.BIGINT))
+        {
+            preparedStatement.setLong(index, ((Number) value).longValue());
+        }
+        else if (value instanceof Number && (columnType == Types.REAL || columnType == Types.DOUBLE))
+        {
+            preparedStatement.setDouble(index, ((Number) value).doubleValue());
+        }
+        else
+        {
+            preparedStatement.setObject(index, value, columnType);
+        }
+    }
+
+    /**
+     * The binders of one template, one per placeholder
+     */
+    static final class Resolved
+    {
+        private final int    version;
+        private final Slot[] slots;
+        private final int[]  columnTypes;
+
+        private Resolved(int version, int parameterCount, int[] columnTypes)
+        {
+            this.version = version;
+            this.slots = new Slot[parameterCount];
+            this.columnTypes = columnTypes;
+        }
+
+        /**
+         * @return False if a binder was registered after the binders were resolved
+         */
+        boolean isCurrent()
+        {
+            return this.version == VERSION.get();
+        }
+
+        private Slot resolve(int index, Class<?> type)
+        {
+            ParameterBinder<Object> binder = get(type);
+
+            if (binder == OBJECT && this.columnTypes != null && isKnown(this.columnTypes[index]))
+            {
+                int columnType = this.columnTypes[index];
+                binder = (preparedStatement, parameterIndex, value) -> bindAs(preparedStatement, parameterIndex, value, columnType);
+            }
+
+            return new Slot(type, binder);
+        }
+
+        void bind(PreparedStatement preparedStatement, Object[] parameters) throws SQLException
+        {
+            for (int i = 0; i < parameters.length; i++)
+            {
+                Object value = parameters[i];
+
+                if (value == null)
+                {
+                    preparedStatement.setNull(i + 1, this.columnTypes == null ? Types.NULL : this.columnTypes[i]);
+                    continue;
+                }
+
+                Slot slot = this.slots[i];
+
+                if (slot == null || value.getClass() != slot.type)
+                {
+                    // slots are immutable, concurrent executions see either the old or the new one
+                    slot = this.resolve(i, value.getClass());
+                    this.slots[i] = slot;
+                }
+
+                slot.binder.bind(preparedStatement, i + 1, value);
+            }
+        }
+    }
+
+    /**
+     * The binder of a placeholder for values of one class
+     */
+    private static final class Slot
+    {
+        private final Class<?>                type;
+        private final ParameterBinder<Object> binder;
+
+        private Slot(Class<?> type, ParameterBinder<Object> binder)
+        {
+            this.type = type;
+            this.binder = binder;
+        }
+    }
+}
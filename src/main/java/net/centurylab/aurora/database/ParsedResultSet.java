@@ -4,8 +4,10 @@ import net.centurylab.aurora.utilities.CommonFunctions;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,75 +16,93 @@ public class ParsedResultSet
 {
     private List<Map<String, String>> rows;
     private int                       updateCount;
-    private int[]                     generatedKeys;
+    private long[]                    generatedKeys;
+    private long                      estimatedSize = -1;
+    private long                      executionNanos;
 
     public ParsedResultSet(PreparedStatement preparedStatement, QueryType queryType, boolean returnGeneratedKeys) throws SQLException
     {
-        try
+        long start = System.nanoTime();
+
+        if (queryType == QueryType.SELECT)
         {
-            if (queryType == QueryType.SELECT)
-            {
-                preparedStatement.execute();
-            }
-            else
-            {
-                preparedStatement.executeUpdate();
-            }
+            preparedStatement.execute();
+        }
+        else
+        {
+            preparedStatement.executeUpdate();
+        }
 
-            switch (queryType)
-            {
-                case SELECT:
-                    this.updateCount = -1;
-                    this.rows = new ArrayList<>(CommonFunctions.getRowCount(preparedStatement.getResultSet()));
-                    this.updateCount = -1;
+        this.executionNanos = System.nanoTime() - start;
 
-                    while (preparedStatement.getResultSet().next())
-                    {
-                        Map<String, String> dbValues = new HashMap<>();
+        switch (queryType)
+        {
+            case SELECT:
+                this.updateCount = -1;
+                this.rows = new ArrayList<>();
 
-                        for (int i = 1; i < preparedStatement.getResultSet().getMetaData().getColumnCount() + 1; i++)
-                        {
-                            dbValues.put(preparedStatement.getResultSet().getMetaData().getColumnName(i), preparedStatement.getResultSet().getString(i));
-                        }
+                ResultSet resultSet = preparedStatement.getResultSet();
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                String[] columnNames = new String[metaData.getColumnCount()];
+                int mapCapacity = (int) (columnNames.length / 0.75F) + 1;
 
-                        this.rows.add(dbValues);
-                    }
-                    break;
-                case INSERT:
-                    this.updateCount = preparedStatement.getUpdateCount();
-                    this.rows = null;
+                for (int i = 0; i < columnNames.length; i++)
+                {
+                    columnNames[i] = metaData.getColumnName(i + 1);
+                }
+
+                while (resultSet.next())
+                {
+                    Map<String, String> dbValues = new HashMap<>(mapCapacity);
 
-                    if (returnGeneratedKeys)
+                    for (int i = 0; i < columnNames.length; i++)
                     {
-                        this.generatedKeys = new int[CommonFunctions.getRowCount(preparedStatement.getGeneratedKeys())];
-                        int index = 0;
-                        ResultSet resultSet = preparedStatement.getGeneratedKeys();
-
-                        while (resultSet.next())
-                        {
-                            this.generatedKeys[index] = resultSet.getInt(1);
-                            index++;
-                        }
+                        dbValues.put(columnNames[i], resultSet.getString(i + 1));
                     }
-                    else
+
+                    // results may be cached and shared between subscribers, so the rows are read-only
+                    this.rows.add(Collections.unmodifiableMap(dbValues));
+                }
+                break;
+            case INSERT:
+                this.updateCount = preparedStatement.getUpdateCount();
+                this.rows = null;
+
+                if (returnGeneratedKeys)
+                {
+                    try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys())
                     {
-                        this.generatedKeys = null;
+                        this.generatedKeys = CommonFunctions.getLongColumn(generatedKeys, 1);
                     }
-                    break;
-                case DELETE:
-                case UPDATE:
-                    this.updateCount = preparedStatement.getUpdateCount();
-                    this.rows = null;
+                }
+                else
+                {
                     this.generatedKeys = null;
-                    break;
-            }
-        }
-        catch (SQLException e)
-        {
-            throw e;
+                }
+                break;
+            case DELETE:
+            case UPDATE:
+                this.updateCount = preparedStatement.getUpdateCount();
+                this.rows = null;
+                this.generatedKeys = null;
+                break;
         }
     }
 
+    /**
+     * Creates a result from already materialized values, e.g. the merged results of several databases
+     *
+     * @param rows          The rows of a SELECT or null
+     * @param updateCount   The update count, -1 for a SELECT
+     * @param generatedKeys The generated keys or null
+     */
+    public ParsedResultSet(List<Map<String, String>> rows, int updateCount, long[] generatedKeys)
+    {
+        this.rows = rows;
+        this.updateCount = updateCount;
+        this.generatedKeys = generatedKeys;
+    }
+
     public int getUpdateCount()
     {
         return updateCount;
@@ -109,7 +129,7 @@ public class ParsedResultSet
     {
         this.check();
 
-        return Integer.parseInt(this.rows.get(0).get(columnName));
+        return Integer.parseInt(this.rows.get(index).get(columnName));
     }
 
     public short getShort(String columnName) throws Exception
@@ -172,11 +192,65 @@ public class ParsedResultSet
         return Double.parseDouble(this.rows.get(index).get(columnName));
     }
 
-    public int[] getGeneratedKeys()
+    /**
+     * @return All rows of the result, every row maps the column names to their values
+     * @throws Exception if the query wasn't a SELECT
+     */
+    public List<Map<String, String>> getRows() throws Exception
+    {
+        this.check();
+
+        return Collections.unmodifiableList(this.rows);
+    }
+
+    public long[] getGeneratedKeys()
     {
         return generatedKeys;
     }
 
+    /**
+     * @return The time in nanoseconds the statement took to execute, without reading the result
+     */
+    public long getExecutionNanos()
+    {
+        return executionNanos;
+    }
+
+    /**
+     * Estimates the heap size of this result in bytes
+     *
+     * @return The estimated size in bytes
+     */
+    public long estimateSize()
+    {
+        if (this.estimatedSize < 0)
+        {
+            long size = 64;
+
+            if (this.rows != null)
+            {
+                for (Map<String, String> row : this.rows)
+                {
+                    size += 48 + row.size() * 32L;
+
+                    for (String value : row.values())
+                    {
+                        size += value == null ? 0 : 40 + value.length() * 2L;
+                    }
+                }
+            }
+
+            if (this.generatedKeys != null)
+            {
+                size += this.generatedKeys.length * 8L;
+            }
+
+            this.estimatedSize = size;
+        }
+
+        return this.estimatedSize;
+    }
+
     private void check() throws Exception
     {
         if (this.rows == null)
@@ -0,0 +1,240 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable query template which was compiled from a {@link StatementBuilder}.
+ * The SQL and the parameter layout are generated only once, so a template can be shared
+ * between threads and bound with new parameter values as often as needed.
+ */
+public final class Query
+{
+    private final String                sql;
+    private final QueryType             queryType;
+    private final boolean               returnGeneratedKeys;
+    private final ImmutableList<String> tables;
+    private final ImmutableList<String> parameterNames;
+    private final QueryPriority         priority;
+    private final ImmutableList<String> lookupFields;
+    private final long                  timeoutMillis;
+
+    private volatile ParameterBinders.Resolved binders;
+    private volatile int[]                     columnTypes;
+    private volatile long                      schemaGeneration;
+
+    public Query(String sql, QueryType queryType, boolean returnGeneratedKeys, List<String> tables, List<String> parameterNames)
+    {
+        this(sql, queryType, returnGeneratedKeys, tables, parameterNames, QueryPriority.NORMAL);
+    }
+
+    public Query(String sql, QueryType queryType, boolean returnGeneratedKeys, List<String> tables, List<String> parameterNames, QueryPriority priority)
+    {
+        this(sql, queryType, returnGeneratedKeys, tables, parameterNames, priority, ImmutableList.of());
+    }
+
+    /**
+     * @param sql                 The SQL with placeholders
+     * @param queryType           The {@link QueryType}
+     * @param returnGeneratedKeys True if the driver should return the generated keys
+     * @param tables              The tables which are touched by the query
+     * @param parameterNames      The name of the field for every placeholder
+     * @param priority            The {@link QueryPriority}
+     * @param lookupFields        The fields which are used in the conditions and the ordering
+     */
+    public Query(String sql, QueryType queryType, boolean returnGeneratedKeys, List<String> tables, List<String> parameterNames, QueryPriority priority,
+                 List<String> lookupFields)
+    {
+        this(sql, queryType, returnGeneratedKeys, tables, parameterNames, priority, lookupFields, 0);
+    }
+
+    private Query(String sql, QueryType queryType, boolean returnGeneratedKeys, List<String> tables, List<String> parameterNames, QueryPriority priority,
+                  List<String> lookupFields, long timeoutMillis)
+    {
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(sql), "sql can't be empty");
+        Preconditions.checkNotNull(queryType, "queryType can't be null");
+        Preconditions.checkNotNull(priority, "priority can't be null");
+
+        this.sql = sql;
+        this.queryType = queryType;
+        this.returnGeneratedKeys = returnGeneratedKeys;
+        this.tables = ImmutableList.copyOf(tables);
+        this.parameterNames = ImmutableList.copyOf(parameterNames);
+        this.priority = priority;
+        this.lookupFields = ImmutableList.copyOf(lookupFields);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns a copy of this template which is executed with the given priority
+     *
+     * @param priority The {@link QueryPriority}
+     * @return A new {@link Query}
+     */
+    public Query withPriority(QueryPriority priority)
+    {
+        return new Query(this.sql, this.queryType, this.returnGeneratedKeys, this.tables, this.parameterNames, priority, this.lookupFields, this.timeoutMillis);
+    }
+
+    /**
+     * Returns a copy of this template which fails with a {@link java.sql.SQLTimeoutException} if it doesn't finish in time.
+     * The timeout starts when the query is queued, so the time waiting for a connection counts as well.
+     *
+     * @param timeout The timeout, 0 to use the default timeout of the database
+     * @param unit    The unit of the timeout
+     * @return A new {@link Query}
+     */
+    public Query withTimeout(long timeout, TimeUnit unit)
+    {
+        Preconditions.checkArgument(timeout > -1, "timeout can't be negative");
+        Preconditions.checkNotNull(unit, "unit can't be null");
+
+        return new Query(this.sql, this.queryType, this.returnGeneratedKeys, this.tables, this.parameterNames, this.priority, this.lookupFields, unit.toMillis(timeout));
+    }
+
+    /**
+     * Binds new parameter values to this template
+     *
+     * @param parameters The values in the order of {@link #getParameterNames()}
+     * @return A {@link BoundQuery} which can be executed
+     * @throws IllegalArgumentException if the count of parameters doesn't match
+     */
+    public BoundQuery bind(Object... parameters)
+    {
+        Preconditions.checkArgument(parameters.length == this.parameterNames.size(), "Expected %s parameters but got %s", this.parameterNames.size(), parameters.length);
+
+        return new BoundQuery(this, parameters.clone());
+    }
+
+    /**
+     * Binds the parameter values with the binders of this template, which are resolved on the first call
+     *
+     * @param preparedStatement The {@link PreparedStatement} of this template
+     * @param parameters        The values in placeholder order
+     * @throws SQLException If a database access error occurs
+     */
+    void bindParameters(PreparedStatement preparedStatement, Object[] parameters) throws SQLException
+    {
+        ParameterBinders.Resolved binders = this.binders;
+
+        if (binders == null || !binders.isCurrent())
+        {
+            binders = ParameterBinders.resolve(parameters, this.columnTypes);
+            this.binders = binders;
+        }
+
+        binders.bind(preparedStatement, parameters);
+    }
+
+    /**
+     * @param schemaGeneration The current generation of the {@link net.centurylab.aurora.database.schema.SchemaCache}
+     * @return True if the column types of the placeholders were looked up in that generation of the schema
+     */
+    boolean isDescribed(long schemaGeneration)
+    {
+        return this.columnTypes != null && this.schemaGeneration == schemaGeneration;
+    }
+
+    /**
+     * Sets the {@link java.sql.Types} of the column of every placeholder, the binders are resolved again
+     *
+     * @param columnTypes      The column types in placeholder order, {@link java.sql.Types#NULL} if the column is unknown
+     * @param schemaGeneration The generation of the schema the types were looked up in
+     */
+    void setColumnTypes(int[] columnTypes, long schemaGeneration)
+    {
+        this.columnTypes = columnTypes;
+        this.binders = null;
+        this.schemaGeneration = schemaGeneration;
+    }
+
+    /**
+     * Prepares the SQL of this template on the given connection without binding any parameters
+     *
+     * @param connection The {@link Connection}
+     * @return A new {@link PreparedStatement}
+     * @throws SQLException If a database access error occurs
+     */
+    public PreparedStatement prepare(Connection connection) throws SQLException
+    {
+        if (this.returnGeneratedKeys)
+        {
+            return connection.prepareStatement(this.sql, Statement.RETURN_GENERATED_KEYS);
+        }
+
+        return connection.prepareStatement(this.sql);
+    }
+
+    public String getSql()
+    {
+        return sql;
+    }
+
+    public QueryType getQueryType()
+    {
+        return queryType;
+    }
+
+    public boolean isReturnGeneratedKeys()
+    {
+        return returnGeneratedKeys;
+    }
+
+    /**
+     * @return The tables which are touched by this query
+     */
+    public List<String> getTables()
+    {
+        return tables;
+    }
+
+    /**
+     * @return The name of the field for every placeholder, in placeholder order
+     */
+    public List<String> getParameterNames()
+    {
+        return parameterNames;
+    }
+
+    /**
+     * @return The fields which are used in the conditions and the ordering and should be covered by an index
+     */
+    public List<String> getLookupFields()
+    {
+        return lookupFields;
+    }
+
+    public QueryPriority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * @return The timeout in milliseconds, 0 if the default timeout of the database is used
+     */
+    public long getTimeoutMillis()
+    {
+        return timeoutMillis;
+    }
+
+    public int getParameterCount()
+    {
+        return parameterNames.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Query{sql='" + sql + '\'' +
+                ", queryType=" + queryType +
+                '}';
+    }
+}
@@ -0,0 +1,253 @@
+package net.centurylab.aurora.database;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The state of one scheduled piece of database work: its deadline and the statement which is currently running.
+ * The work runs on a worker of the {@link QueryScheduler}, the execution is bound to that thread while it runs,
+ * so every statement which is prepared through {@link Database#prepareStatement} gets the remaining time
+ * as query timeout and is cancelled on the server when the subscription gets disposed.
+ */
+final class QueryExecution implements Cancellable
+{
+    private static final long                        NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final ThreadLocal<QueryExecution> CURRENT          = new ThreadLocal<>();
+
+    private final long      deadline;
+    private       Statement statement;
+    private       boolean   cancelled;
+    private       boolean   done;
+    private       Thread    waiting;
+    private       boolean   interrupted;
+
+    /**
+     * @param timeoutNanos The time the work may take from now on including the time in the queue, 0 for no timeout
+     */
+    QueryExecution(long timeoutNanos)
+    {
+        this.deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+    }
+
+    /**
+     * @return The execution of the work which runs on the current thread, null if there is none
+     */
+    static QueryExecution current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the work with this execution bound to the current thread
+     */
+    void run(Runnable work)
+    {
+        CURRENT.set(this);
+
+        try
+        {
+            work.run();
+        }
+        finally
+        {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Calls the work with this execution bound to the current thread
+     */
+    <T> T call(Callable<T> work) throws Exception
+    {
+        CURRENT.set(this);
+
+        try
+        {
+            return work.call();
+        }
+        finally
+        {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Checks out a connection within the remaining time. The pool only knows its own connection timeout,
+     * if the deadline comes first the waiting thread is interrupted at the deadline, which ends the wait of the pool.
+     *
+     * @param connectionPool The pool
+     * @return A connection from the pool
+     * @throws SQLException If the deadline passed while waiting or a database access error occurs
+     */
+    Connection checkout(HikariDataSource connectionPool) throws SQLException
+    {
+        this.checkDeadline();
+        long remainingNanos = this.getRemainingNanos();
+
+        if (remainingNanos >= TimeUnit.MILLISECONDS.toNanos(connectionPool.getConnectionTimeout()))
+        {
+            return connectionPool.getConnection();
+        }
+
+        Thread thread = Thread.currentThread();
+
+        synchronized (this)
+        {
+            this.waiting = thread;
+        }
+
+        Disposable interrupt = Schedulers.computation().scheduleDirect(() -> this.interrupt(thread), remainingNanos, TimeUnit.NANOSECONDS);
+
+        try
+        {
+            return connectionPool.getConnection();
+        }
+        catch (SQLException e)
+        {
+            if (this.isExpired())
+            {
+                throw new SQLTimeoutException("The query timed out while waiting for a connection", e);
+            }
+
+            throw e;
+        }
+        finally
+        {
+            interrupt.dispose();
+
+            synchronized (this)
+            {
+                this.waiting = null;
+
+                if (this.interrupted)
+                {
+                    // only clears the interrupt of the deadline, the thread is not interrupted anymore once waiting is reset
+                    this.interrupted = false;
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    private synchronized void interrupt(Thread thread)
+    {
+        if (this.waiting == thread)
+        {
+            this.interrupted = true;
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Registers the statement which is about to be executed and sets its query timeout to the remaining time
+     *
+     * @param statement The {@link Statement}
+     * @throws SQLException If the deadline already passed, the work was cancelled or a database access error occurs
+     */
+    synchronized void attach(Statement statement) throws SQLException
+    {
+        if (this.cancelled)
+        {
+            throw new SQLException("The query was cancelled");
+        }
+
+        this.checkDeadline();
+        // JDBC timeouts have a resolution of seconds, the remaining time is rounded up
+        statement.setQueryTimeout(this.deadline == 0 ? 0 : (int) Math.max(1, (this.getRemainingNanos() + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+        this.statement = statement;
+    }
+
+    /**
+     * Forgets the statement before it is handed back to the statement cache, so it can't be cancelled anymore
+     */
+    synchronized void detach(Statement statement)
+    {
+        if (this.statement != statement)
+        {
+            return;
+        }
+
+        this.statement = null;
+
+        if (this.deadline != 0)
+        {
+            try
+            {
+                // cached statements keep their timeout, the next execution may not have one
+                statement.setQueryTimeout(0);
+            }
+            catch (SQLException ignored)
+            {
+                // the statement cache closes statements which fail on release
+            }
+        }
+    }
+
+    /**
+     * Marks the work as done, it can't be cancelled anymore
+     */
+    synchronized void complete()
+    {
+        this.done = true;
+    }
+
+    synchronized boolean isDone()
+    {
+        return done;
+    }
+
+    /**
+     * @throws SQLTimeoutException If the deadline passed
+     */
+    void checkDeadline() throws SQLTimeoutException
+    {
+        if (this.isExpired())
+        {
+            throw new SQLTimeoutException("The query timed out after waiting " + TimeUnit.NANOSECONDS.toMillis(-this.getRemainingNanos()) + " ms past its deadline");
+        }
+    }
+
+    boolean isExpired()
+    {
+        return this.deadline != 0 && this.getRemainingNanos() <= 0;
+    }
+
+    /**
+     * @return The time in nanoseconds until the deadline, {@link Long#MAX_VALUE} if there is none
+     */
+    long getRemainingNanos()
+    {
+        return this.deadline == 0 ? Long.MAX_VALUE : this.deadline - System.nanoTime();
+    }
+
+    /**
+     * Cancels the running statement on the server, statements which are attached later fail right away
+     *
+     * @throws SQLException If the statement couldn't be cancelled
+     */
+    @Override
+    public synchronized void cancel() throws SQLException
+    {
+        if (this.done)
+        {
+            return;
+        }
+
+        this.cancelled = true;
+
+        if (this.statement != null)
+        {
+            this.statement.cancel();
+            this.statement = null;
+        }
+    }
+}
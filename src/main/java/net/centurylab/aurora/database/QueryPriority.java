@@ -0,0 +1,21 @@
+package net.centurylab.aurora.database;
+
+/**
+ * The priority class of a query. Every class has its own queue in the {@link QueryScheduler}.
+ * Classes are declared from the highest to the lowest priority.
+ */
+public enum QueryPriority
+{
+    /**
+     * Latency critical lookups, e.g. while a player is waiting
+     */
+    INTERACTIVE,
+    /**
+     * Everything which isn't latency critical
+     */
+    NORMAL,
+    /**
+     * Background writes, exports and other big jobs
+     */
+    BULK
+}
@@ -0,0 +1,469 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Queues the database work in front of the connection pool. Every {@link QueryPriority} has its own queue
+ * and at most as many tasks as the pool has connections are running at the same time.
+ * <p>
+ * Free slots are always handed to the highest priority class first. Slots which are reserved for a class
+ * can't be used by the classes with a lower priority, so bulk work can never occupy every connection.
+ * A class rejects new work right away when its queue is full.
+ */
+public class QueryScheduler
+{
+    private static final int[] DEFAULT_MAX_QUEUE_DEPTHS = {1_000, 10_000, 100_000};
+
+    private final ThreadPoolExecutor workers;
+    private final Lane[]             lanes;
+    private       int                capacity;
+    private       int                running;
+    private       boolean            shutdown;
+
+    public QueryScheduler(int capacity)
+    {
+        Preconditions.checkArgument(capacity > 0, "capacity can't be negative or equals zero");
+
+        this.workers = new ThreadPoolExecutor(capacity, capacity, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                              new ThreadFactoryBuilder().setNameFormat("aurora-database-%d").setDaemon(true).build());
+        this.lanes = new Lane[QueryPriority.values().length];
+        this.capacity = capacity;
+
+        for (QueryPriority priority : QueryPriority.values())
+        {
+            this.lanes[priority.ordinal()] = new Lane(DEFAULT_MAX_QUEUE_DEPTHS[priority.ordinal()]);
+        }
+
+        this.lanes[QueryPriority.INTERACTIVE.ordinal()].reserved = Math.max(capacity / 4, capacity > 1 ? 1 : 0);
+    }
+
+    /**
+     * Queues the work in the queue of the given priority class
+     *
+     * @param priority The {@link QueryPriority}
+     * @param work     The blocking database work
+     * @return A {@link Task} which can be used to take the work out of the queue again
+     * @throws RejectedExecutionException if the queue of the priority class is full or the scheduler was shut down
+     */
+    public Task submit(QueryPriority priority, Runnable work)
+    {
+        return this.submit(priority, work, true);
+    }
+
+    /**
+     * Queues a request for a slot which stays occupied until the {@link Lease} is released, e.g. by a streaming
+     * result which keeps its connection between the requests of its subscriber. The queue depth limit doesn't apply.
+     *
+     * @param priority The {@link QueryPriority}
+     * @param onLeased Receives the {@link Lease} on a worker thread as soon as a slot is free
+     * @return A {@link Task} which can be used to take the request out of the queue again
+     * @throws RejectedExecutionException if the scheduler was shut down
+     */
+    public Task lease(QueryPriority priority, Consumer<Lease> onLeased)
+    {
+        Preconditions.checkNotNull(onLeased, "onLeased can't be null");
+
+        return this.submit(priority, null, onLeased, false);
+    }
+
+    private Task submit(QueryPriority priority, Runnable work, boolean limitQueueDepth)
+    {
+        return this.submit(priority, work, null, limitQueueDepth);
+    }
+
+    private Task submit(QueryPriority priority, Runnable work, Consumer<Lease> onLeased, boolean limitQueueDepth)
+    {
+        Preconditions.checkNotNull(priority, "priority can't be null");
+
+        Lane lane = this.lanes[priority.ordinal()];
+        Task task = new Task(lane, work, onLeased);
+
+        synchronized (this)
+        {
+            if (this.shutdown)
+            {
+                throw new RejectedExecutionException("The query scheduler was shut down");
+            }
+
+            if (limitQueueDepth && lane.queue.size() >= lane.maxQueueDepth)
+            {
+                lane.rejected.increment();
+                throw new RejectedExecutionException(String.format("The %s queue is full (%s tasks)", priority, lane.maxQueueDepth));
+            }
+
+            lane.queue.addLast(task);
+            this.dispatch();
+        }
+
+        return task;
+    }
+
+    /**
+     * Returns an {@link Executor} which queues the work with the given priority.
+     * The queue depth limit doesn't apply to this executor, it is meant for long running streams.
+     *
+     * @param priority The {@link QueryPriority}
+     * @return An {@link Executor}
+     */
+    public Executor asExecutor(QueryPriority priority)
+    {
+        return work -> this.submit(priority, work, false);
+    }
+
+    /**
+     * Starts queued tasks while there are free slots. Must be called while holding the monitor.
+     */
+    private void dispatch()
+    {
+        while (this.running < this.capacity)
+        {
+            Task next = null;
+            int higherReservations = 0;
+            int lowerRunning = this.running;
+
+            for (Lane lane : this.lanes)
+            {
+                if (!lane.queue.isEmpty() && lowerRunning < this.capacity - higherReservations)
+                {
+                    next = lane.queue.pollFirst();
+                    break;
+                }
+
+                higherReservations += lane.reserved;
+                lowerRunning -= lane.running;
+            }
+
+            if (next == null)
+            {
+                return;
+            }
+
+            this.running++;
+            next.lane.running++;
+            this.workers.execute(next);
+        }
+    }
+
+    private synchronized void finished(Lane lane)
+    {
+        this.running--;
+        lane.running--;
+        this.dispatch();
+
+        if (this.shutdown && this.running == 0)
+        {
+            this.workers.shutdown();
+        }
+    }
+
+    private synchronized boolean remove(Task task)
+    {
+        return task.lane.queue.remove(task);
+    }
+
+    /**
+     * Changes the count of tasks which may run at the same time, usually the size of the connection pool
+     *
+     * @param capacity New capacity
+     */
+    public void setCapacity(int capacity)
+    {
+        Preconditions.checkArgument(capacity > 0, "capacity can't be negative or equals zero");
+
+        synchronized (this)
+        {
+            if (capacity > this.workers.getMaximumPoolSize())
+            {
+                this.workers.setMaximumPoolSize(capacity);
+                this.workers.setCorePoolSize(capacity);
+            }
+            else
+            {
+                this.workers.setCorePoolSize(capacity);
+                this.workers.setMaximumPoolSize(capacity);
+            }
+
+            this.capacity = capacity;
+            this.dispatch();
+        }
+    }
+
+    public synchronized int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @param priority The {@link QueryPriority}
+     * @return The count of slots the class can use, the capacity without the slots which are reserved for higher classes
+     */
+    public synchronized int getAvailableSlots(QueryPriority priority)
+    {
+        int available = this.capacity;
+
+        for (int i = 0; i < priority.ordinal(); i++)
+        {
+            available -= this.lanes[i].reserved;
+        }
+
+        return Math.max(1, available);
+    }
+
+    /**
+     * Reserves slots for a priority class which can't be used by the classes with a lower priority
+     *
+     * @param priority The {@link QueryPriority}
+     * @param reserved Count of reserved slots
+     * @return Current {@link QueryScheduler} instance
+     */
+    public synchronized QueryScheduler setReserved(QueryPriority priority, int reserved)
+    {
+        Preconditions.checkArgument(reserved > -1, "reserved can't be negative");
+
+        this.lanes[priority.ordinal()].reserved = reserved;
+        return this;
+    }
+
+    public synchronized int getReserved(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].reserved;
+    }
+
+    /**
+     * Sets the count of tasks which may wait in the queue of a priority class before new work is rejected
+     *
+     * @param priority      The {@link QueryPriority}
+     * @param maxQueueDepth New maximum queue depth
+     * @return Current {@link QueryScheduler} instance
+     */
+    public synchronized QueryScheduler setMaxQueueDepth(QueryPriority priority, int maxQueueDepth)
+    {
+        Preconditions.checkArgument(maxQueueDepth > -1, "maxQueueDepth can't be negative");
+
+        this.lanes[priority.ordinal()].maxQueueDepth = maxQueueDepth;
+        return this;
+    }
+
+    public synchronized int getMaxQueueDepth(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].maxQueueDepth;
+    }
+
+    public synchronized int getQueueDepth(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].queue.size();
+    }
+
+    public synchronized int getRunning(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].running;
+    }
+
+    public long getRejectedCount(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].rejected.sum();
+    }
+
+    /**
+     * @param priority The {@link QueryPriority}
+     * @return Count of tasks of the class which left the queue and were started
+     */
+    public long getStartedCount(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].started.sum();
+    }
+
+    /**
+     * @param priority The {@link QueryPriority}
+     * @return The average time in nanoseconds tasks of the class waited in the queue
+     */
+    public long getAverageQueueWaitNanos(QueryPriority priority)
+    {
+        Lane lane = this.lanes[priority.ordinal()];
+        long started = lane.started.sum();
+
+        return started == 0 ? 0 : lane.waitNanos.sum() / started;
+    }
+
+    /**
+     * @param priority The {@link QueryPriority}
+     * @return The longest time in nanoseconds a task of the class waited in the queue
+     */
+    public long getMaxQueueWaitNanos(QueryPriority priority)
+    {
+        return this.lanes[priority.ordinal()].maxWaitNanos.get();
+    }
+
+    /**
+     * Stops accepting new work, queued work is still executed
+     */
+    public synchronized void shutdown()
+    {
+        this.shutdown = true;
+
+        if (this.running == 0)
+        {
+            this.workers.shutdown();
+        }
+    }
+
+    /**
+     * Waits until all queued work was executed after {@link #shutdown()}
+     *
+     * @param timeout The maximum time to wait
+     * @param unit    The unit of the timeout
+     * @return True if all work was executed, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return this.workers.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueryScheduler{capacity=" + capacity +
+                ", running=" + running +
+                '}';
+    }
+
+    /**
+     * Work which was queued in the {@link QueryScheduler}
+     */
+    public final class Task implements Runnable
+    {
+        private final Lane            lane;
+        private final Runnable        work;
+        private final Consumer<Lease> onLeased;
+        private final long            queuedAt;
+
+        private Task(Lane lane, Runnable work, Consumer<Lease> onLeased)
+        {
+            this.lane = lane;
+            this.work = work;
+            this.onLeased = onLeased;
+            this.queuedAt = System.nanoTime();
+        }
+
+        @Override
+        public void run()
+        {
+            long waited = System.nanoTime() - this.queuedAt;
+
+            this.lane.started.increment();
+            this.lane.waitNanos.add(waited);
+            this.lane.maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            if (this.onLeased != null)
+            {
+                Lease lease = new Lease(this.lane);
+
+                try
+                {
+                    this.onLeased.accept(lease);
+                }
+                catch (RuntimeException e)
+                {
+                    lease.release();
+                    throw e;
+                }
+                return;
+            }
+
+            try
+            {
+                this.work.run();
+            }
+            finally
+            {
+                QueryScheduler.this.finished(this.lane);
+            }
+        }
+
+        /**
+         * Takes the task out of the queue if it wasn't started yet
+         *
+         * @return True if the task was removed and will never run
+         */
+        public boolean cancel()
+        {
+            return QueryScheduler.this.remove(this);
+        }
+
+        /**
+         * @return The time in nanoseconds since the task was queued
+         */
+        public long getAgeNanos()
+        {
+            return System.nanoTime() - this.queuedAt;
+        }
+    }
+
+    /**
+     * A slot which was taken out of the scheduler. Work which is executed by the lease runs on the workers
+     * of the scheduler without queueing again, the slot is free again when the lease gets released.
+     */
+    public final class Lease implements Executor
+    {
+        private final Lane          lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Lane lane)
+        {
+            this.lane = lane;
+        }
+
+        @Override
+        public void execute(Runnable command)
+        {
+            QueryScheduler.this.workers.execute(command);
+        }
+
+        /**
+         * Frees the slot, later calls have no effect
+         */
+        public void release()
+        {
+            if (this.released.compareAndSet(false, true))
+            {
+                QueryScheduler.this.finished(this.lane);
+            }
+        }
+
+        public boolean isReleased()
+        {
+            return this.released.get();
+        }
+    }
+
+    private static final class Lane
+    {
+        private final Deque<Task> queue        = new ArrayDeque<>();
+        private final LongAdder   rejected     = new LongAdder();
+        private final LongAdder   started      = new LongAdder();
+        private final LongAdder   waitNanos    = new LongAdder();
+        private final AtomicLong  maxWaitNanos = new AtomicLong();
+        private       int         maxQueueDepth;
+        private       int         reserved;
+        private       int         running;
+
+        private Lane(int maxQueueDepth)
+        {
+            this.maxQueueDepth = maxQueueDepth;
+        }
+    }
+}
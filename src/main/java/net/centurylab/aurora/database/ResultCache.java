@@ -0,0 +1,217 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of SELECTs which only read tables that opted in.
+ * The entries are keyed by the SQL and the bound parameters and are evicted by size and age.
+ * Every INSERT, UPDATE or DELETE which is executed through the {@link Database} invalidates
+ * the entries of the tables it touched.
+ */
+public class ResultCache
+{
+    private static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_TTL_SECONDS   = 60;
+
+    private final Cache<BoundQuery, ParsedResultSet>    cache;
+    private final Set<String>                           tables      = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final LongAdder                             memoryUsage = new LongAdder();
+
+    public ResultCache()
+    {
+        this(DEFAULT_MAXIMUM_BYTES, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maximumBytes The estimated size of all cached results in bytes
+     * @param ttl          The time after which a result gets evicted
+     * @param unit         The unit of the ttl
+     */
+    public ResultCache(long maximumBytes, long ttl, TimeUnit unit)
+    {
+        Preconditions.checkArgument(maximumBytes > 0, "maximumBytes can't be negative or equals zero");
+        Preconditions.checkArgument(ttl > 0, "ttl can't be negative or equals zero");
+
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(maximumBytes)
+                                 .weigher((BoundQuery key, ParsedResultSet value) -> (int) Math.min(Integer.MAX_VALUE, value.estimateSize()))
+                                 .expireAfterWrite(ttl, unit)
+                                 .removalListener(notification -> this.memoryUsage.add(-notification.getValue().estimateSize()))
+                                 .recordStats()
+                                 .build();
+    }
+
+    /**
+     * Lets the results of SELECTs on the table be cached
+     *
+     * @param tableName Name of the table
+     * @return Current {@link ResultCache} instance
+     */
+    public ResultCache enableTable(String tableName)
+    {
+        this.tables.add(tableName);
+        return this;
+    }
+
+    /**
+     * Stops caching results of the table and drops its cached results
+     *
+     * @param tableName Name of the table
+     * @return Current {@link ResultCache} instance
+     */
+    public ResultCache disableTable(String tableName)
+    {
+        this.tables.remove(tableName);
+        this.invalidate(tableName);
+        return this;
+    }
+
+    /**
+     * @param query The {@link Query}
+     * @return True if the query is a SELECT and all of its tables opted in
+     */
+    public boolean isCacheable(Query query)
+    {
+        return query.getQueryType() == QueryType.SELECT && !this.tables.isEmpty() && this.tables.containsAll(query.getTables());
+    }
+
+    /**
+     * @param boundQuery The {@link BoundQuery}
+     * @return The cached result or null
+     */
+    public ParsedResultSet get(BoundQuery boundQuery)
+    {
+        return this.cache.getIfPresent(boundQuery);
+    }
+
+    /**
+     * Returns a value which changes whenever one of the tables of the query gets invalidated.
+     * It has to be taken before the query is executed and passed to {@link #put(BoundQuery, ParsedResultSet, long)}.
+     *
+     * @param query The {@link Query}
+     * @return The current generation of the tables
+     */
+    public long getGeneration(Query query)
+    {
+        long generation = 0;
+
+        for (String table : query.getTables())
+        {
+            generation += this.generations.computeIfAbsent(table, key -> new AtomicLong()).get();
+        }
+
+        return generation;
+    }
+
+    /**
+     * Caches the result unless one of its tables was invalidated while the query was running
+     *
+     * @param boundQuery      The {@link BoundQuery}
+     * @param parsedResultSet The result
+     * @param generation      The generation which was taken before the query was executed
+     */
+    public void put(BoundQuery boundQuery, ParsedResultSet parsedResultSet, long generation)
+    {
+        if (this.getGeneration(boundQuery.getQuery()) != generation)
+        {
+            return;
+        }
+
+        this.memoryUsage.add(parsedResultSet.estimateSize());
+        this.cache.put(boundQuery, parsedResultSet);
+
+        if (this.getGeneration(boundQuery.getQuery()) != generation)
+        {
+            this.cache.invalidate(boundQuery);
+        }
+    }
+
+    /**
+     * Drops all cached results which read one of the tables
+     *
+     * @param tableNames Names of the tables
+     */
+    public void invalidate(Collection<String> tableNames)
+    {
+        for (String tableName : tableNames)
+        {
+            this.invalidate(tableName);
+        }
+    }
+
+    /**
+     * Drops all cached results which read the table
+     *
+     * @param tableName Name of the table
+     */
+    public void invalidate(String tableName)
+    {
+        AtomicLong generation = this.generations.get(tableName);
+
+        if (generation == null)
+        {
+            return;
+        }
+
+        generation.incrementAndGet();
+        this.cache.asMap().keySet().removeIf(boundQuery -> boundQuery.getQuery().getTables().contains(tableName));
+    }
+
+    /**
+     * Drops all cached results
+     */
+    public void invalidateAll()
+    {
+        this.generations.values().forEach(AtomicLong::incrementAndGet);
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * @return The hit ratio, 1.0 if nothing was requested yet
+     */
+    public double getHitRatio()
+    {
+        return this.cache.stats().hitRate();
+    }
+
+    /**
+     * @return The statistics of the underlying cache
+     */
+    public CacheStats getStats()
+    {
+        return this.cache.stats();
+    }
+
+    /**
+     * @return The estimated size of all cached results in bytes
+     */
+    public long getMemoryUsage()
+    {
+        return this.memoryUsage.sum();
+    }
+
+    public long size()
+    {
+        return this.cache.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ResultCache{size=" + size() +
+                ", memoryUsage=" + getMemoryUsage() +
+                ", hitRatio=" + getHitRatio() +
+                '}';
+    }
+}
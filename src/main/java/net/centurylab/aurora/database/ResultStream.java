@@ -0,0 +1,180 @@
+package net.centurylab.aurora.database;
+
+import net.centurylab.aurora.logging.LogManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads the rows of a SELECT one at a time. The underlying connection stays checked out until {@link #close()} is invoked.
+ */
+public class ResultStream implements AutoCloseable
+{
+    private final PreparedStatement      preparedStatement;
+    private final Connection             connection;
+    private final ResultSet              resultSet;
+    private final Map<String, Integer>   columnIndexes;
+    private final int                    columnCount;
+    private final Consumer<ResultStream> onClose;
+    private       long                   rowCount;
+    private       boolean                exhausted;
+
+    public ResultStream(PreparedStatement preparedStatement, int fetchSize) throws SQLException
+    {
+        this(preparedStatement.getConnection(), preparedStatement, fetchSize);
+    }
+
+    /**
+     * @param connection        The connection which is closed together with the stream
+     * @param preparedStatement The SELECT, it has to be prepared on the connection
+     * @param fetchSize         The JDBC fetch size hint
+     * @throws SQLException If a database access error occurs
+     */
+    public ResultStream(Connection connection, PreparedStatement preparedStatement, int fetchSize) throws SQLException
+    {
+        this(connection, preparedStatement, fetchSize, null);
+    }
+
+    /**
+     * @param connection        The connection which is closed together with the stream
+     * @param preparedStatement The SELECT, it has to be prepared on the connection
+     * @param fetchSize         The JDBC fetch size hint
+     * @param onClose           Hands the statement back when the stream is closed instead of closing it, e.g. to a statement cache.
+     *                          The connection is closed afterwards.
+     * @throws SQLException If a database access error occurs
+     */
+    public ResultStream(Connection connection, PreparedStatement preparedStatement, int fetchSize, Consumer<ResultStream> onClose) throws SQLException
+    {
+        this.preparedStatement = preparedStatement;
+        this.connection = connection;
+        this.onClose = onClose;
+
+        try
+        {
+            this.preparedStatement.setFetchSize(fetchSize);
+            this.resultSet = this.preparedStatement.executeQuery();
+
+            ResultSetMetaData metaData = this.resultSet.getMetaData();
+            this.columnCount = metaData.getColumnCount();
+            this.columnIndexes = new HashMap<>(this.columnCount * 2);
+
+            for (int i = 1; i <= this.columnCount; i++)
+            {
+                this.columnIndexes.put(metaData.getColumnLabel(i), i);
+            }
+        }
+        catch (SQLException e)
+        {
+            this.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next row
+     *
+     * @return The next {@link Row} or null if there are no more rows
+     * @throws SQLException If a database access error occurs
+     */
+    public Row next() throws SQLException
+    {
+        if (this.exhausted || !this.resultSet.next())
+        {
+            this.exhausted = true;
+            return null;
+        }
+
+        Object[] values = new Object[this.columnCount];
+
+        for (int i = 0; i < this.columnCount; i++)
+        {
+            values[i] = this.resultSet.getObject(i + 1);
+        }
+
+        this.rowCount++;
+
+        return new Row(this.columnIndexes, values);
+    }
+
+    public PreparedStatement getPreparedStatement()
+    {
+        return preparedStatement;
+    }
+
+    /**
+     * @return The count of rows which were read so far
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return True if all rows were read
+     */
+    public boolean isExhausted()
+    {
+        return exhausted;
+    }
+
+    /**
+     * Closes the result, the statement and hands the connection back to the pool.
+     * If the stream wasn't read until the end the running statement gets cancelled,
+     * so the driver doesn't have to read the remaining rows.
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            if (!this.exhausted && this.resultSet != null)
+            {
+                this.preparedStatement.cancel();
+            }
+        }
+        catch (SQLException e)
+        {
+            LogManager.getLogger(ResultStream.class).error(e, "Could not cancel the streaming statement");
+        }
+
+        try
+        {
+            if (this.resultSet != null && !this.resultSet.isClosed())
+            {
+                this.resultSet.close();
+            }
+        }
+        catch (SQLException e)
+        {
+            LogManager.getLogger(ResultStream.class).error(e, "Could not close the ResultSet");
+        }
+
+        if (this.onClose != null)
+        {
+            this.onClose.accept(this);
+        }
+
+        try
+        {
+            if (this.onClose == null && !this.preparedStatement.isClosed())
+            {
+                this.preparedStatement.close();
+            }
+
+            if (!this.connection.isClosed())
+            {
+                this.connection.close();
+            }
+        }
+        catch (SQLException e)
+        {
+            LogManager.getLogger(ResultStream.class).error(e, "Could not close the PreparedStatement");
+        }
+    }
+}
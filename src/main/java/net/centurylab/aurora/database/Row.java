@@ -0,0 +1,142 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Map;
+
+/**
+ * A single row which was emitted by a streaming query.
+ * Column names and their indexes are shared between all rows of the same stream.
+ */
+public class Row
+{
+    private final Map<String, Integer> columnIndexes;
+    private final Object[]             values;
+
+    public Row(Map<String, Integer> columnIndexes, Object[] values)
+    {
+        this.columnIndexes = columnIndexes;
+        this.values = values;
+    }
+
+    /**
+     * @return The count of columns in this row
+     */
+    public int getColumnCount()
+    {
+        return this.values.length;
+    }
+
+    /**
+     * Returns the raw value of the column
+     *
+     * @param columnIndex Index of the column, starting at 1
+     * @return The value like it was returned by the driver, can be null
+     */
+    public Object getObject(int columnIndex)
+    {
+        Preconditions.checkElementIndex(columnIndex - 1, this.values.length);
+
+        return this.values[columnIndex - 1];
+    }
+
+    public Object getObject(String columnName)
+    {
+        return this.getObject(this.findColumn(columnName));
+    }
+
+    public boolean isNull(int columnIndex)
+    {
+        return this.getObject(columnIndex) == null;
+    }
+
+    public boolean isNull(String columnName)
+    {
+        return this.getObject(columnName) == null;
+    }
+
+    public String getString(int columnIndex)
+    {
+        Object value = this.getObject(columnIndex);
+
+        return value == null ? null : value.toString();
+    }
+
+    public String getString(String columnName)
+    {
+        return this.getString(this.findColumn(columnName));
+    }
+
+    public int getInt(int columnIndex)
+    {
+        Object value = this.getObject(columnIndex);
+
+        if (value instanceof Number)
+        {
+            return ((Number) value).intValue();
+        }
+
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    public int getInt(String columnName)
+    {
+        return this.getInt(this.findColumn(columnName));
+    }
+
+    public long getLong(int columnIndex)
+    {
+        Object value = this.getObject(columnIndex);
+
+        if (value instanceof Number)
+        {
+            return ((Number) value).longValue();
+        }
+
+        return value == null ? 0L : Long.parseLong(value.toString());
+    }
+
+    public long getLong(String columnName)
+    {
+        return this.getLong(this.findColumn(columnName));
+    }
+
+    public double getDouble(int columnIndex)
+    {
+        Object value = this.getObject(columnIndex);
+
+        if (value instanceof Number)
+        {
+            return ((Number) value).doubleValue();
+        }
+
+        return value == null ? 0D : Double.parseDouble(value.toString());
+    }
+
+    public double getDouble(String columnName)
+    {
+        return this.getDouble(this.findColumn(columnName));
+    }
+
+    /**
+     * Returns the index of the column with the given name
+     *
+     * @param columnName Name of the column
+     * @return Index of the column, starting at 1
+     * @throws IllegalArgumentException if the column doesn't exist
+     */
+    public int findColumn(String columnName)
+    {
+        Integer columnIndex = this.columnIndexes.get(columnName);
+
+        Preconditions.checkArgument(columnIndex != null, "Unknown column '%s'", columnName);
+
+        return columnIndex;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Row{columns=" + values.length + '}';
+    }
+}
@@ -0,0 +1,399 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import io.reactivex.Observable;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Distributes the rows of the tables over several {@link Database}s by the value of a shard key column.
+ * <p>
+ * Statements which contain the shard key, as INSERT value or as {@code =} condition which is combined with AND,
+ * are only sent to the shard which owns the key. All other statements are sent to every shard in parallel.
+ * The rows of a fanned out SELECT are merged and sorted by the {@link OrderField}s of the statement,
+ * offset and limit are applied to the merged rows. The update counts of fanned out writes are summed up,
+ * their limit applies per shard.
+ * <p>
+ * The merge only concatenates and sorts rows, so a fanned out SELECT can't aggregate: every shard would return
+ * its own COUNT, SUM or group, such fields are rejected. Strings are sorted like MySQL's default case-insensitive
+ * collations compare them, {@link #setStringComparator(Comparator)} has to match other collations of the order fields.
+ */
+public class ShardedDatabase implements AutoCloseable
+{
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    private final ImmutableList<Database>    shards;
+    private final String                     shardKey;
+    private final LongAdder[]                requests;
+    private final LongAdder[]                latencyNanos;
+    private final AtomicLong[]               maxLatencyNanos;
+    private final LongAdder                  fanOuts          = new LongAdder();
+    private       ToIntFunction<Object>      shardFunction;
+    private       Comparator<? super String> stringComparator = ShardedDatabase::compareIgnoreCase;
+
+    /**
+     * @param shardKey Name of the column which decides on which shard a row is stored
+     * @param shards   The shards, their order must never change
+     */
+    public ShardedDatabase(String shardKey, List<? extends Database> shards)
+    {
+        Preconditions.checkNotNull(shardKey, "shardKey can't be null");
+        Preconditions.checkArgument(shards != null && !shards.isEmpty(), "shards can't be empty");
+
+        this.shardKey = shardKey;
+        this.shards = ImmutableList.copyOf(shards);
+        this.requests = new LongAdder[this.shards.size()];
+        this.latencyNanos = new LongAdder[this.shards.size()];
+        this.maxLatencyNanos = new AtomicLong[this.shards.size()];
+        this.shardFunction = key -> Hashing.consistentHash(Hashing.murmur3_32().hashString(key.toString(), StandardCharsets.UTF_8), this.shards.size());
+
+        for (int i = 0; i < this.shards.size(); i++)
+        {
+            this.requests[i] = new LongAdder();
+            this.latencyNanos[i] = new LongAdder();
+            this.maxLatencyNanos[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Executes the statement on the shard of its shard key or on all shards
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @return An {@link Observable} which pushes the result, merged if the statement was sent to several shards
+     * @throws IllegalArgumentException if an INSERT has no value for the shard key or a fanned out SELECT aggregates
+     */
+    public Observable<ParsedResultSet> execute(StatementBuilder<?> statementBuilder)
+    {
+        Object key = this.findShardKey(statementBuilder);
+
+        if (key != null)
+        {
+            return this.execute(this.getShardIndex(key), statementBuilder.toBoundQuery());
+        }
+
+        Preconditions.checkArgument(statementBuilder.getQueryType() != QueryType.INSERT, "INSERT statements need a value for the shard key '%s'", this.shardKey);
+
+        for (String field : statementBuilder.fields)
+        {
+            Preconditions.checkArgument(field.indexOf('(') == -1, "The results of '%s' can't be merged across shards", field);
+        }
+
+        QueryType queryType = statementBuilder.getQueryType();
+        List<OrderField> orderFields = statementBuilder.useOrdering ? new ArrayList<>(statementBuilder.orderFields) : new ArrayList<>();
+        int limit = statementBuilder.useLimits ? statementBuilder.limit : -1;
+        int offset = statementBuilder.useLimits && queryType == QueryType.SELECT ? statementBuilder.offset : 0;
+        BoundQuery boundQuery;
+
+        // Every shard has to return the rows in front of the offset, the offset is applied to the merged rows
+        if (offset > 0)
+        {
+            StatementBuilder<?> copy = (StatementBuilder<?>) statementBuilder.copy();
+            copy.limit = (int) Math.min(Integer.MAX_VALUE, (long) limit + offset);
+            copy.offset = 0;
+            boundQuery = copy.toBoundQuery();
+        }
+        else
+        {
+            boundQuery = statementBuilder.toBoundQuery();
+        }
+
+        List<Observable<ParsedResultSet>> results = new ArrayList<>(this.shards.size());
+
+        for (int i = 0; i < this.shards.size(); i++)
+        {
+            results.add(this.execute(i, boundQuery));
+        }
+
+        Comparator<? super String> stringComparator = this.stringComparator;
+
+        return Observable.merge(results)
+                         .toList()
+                         .map(parsedResultSets -> merge(queryType, orderFields, limit, offset, stringComparator, parsedResultSets))
+                         .toObservable()
+                         .doOnSubscribe(disposable -> this.fanOuts.increment());
+    }
+
+    private Observable<ParsedResultSet> execute(int shard, BoundQuery boundQuery)
+    {
+        return Observable.defer(() ->
+        {
+            long start = System.nanoTime();
+
+            return this.shards.get(shard).execute(boundQuery).doOnNext(parsedResultSet ->
+            {
+                long elapsed = System.nanoTime() - start;
+
+                this.requests[shard].increment();
+                this.latencyNanos[shard].add(elapsed);
+                this.maxLatencyNanos[shard].accumulateAndGet(elapsed, Math::max);
+            });
+        });
+    }
+
+    private Object findShardKey(StatementBuilder<?> statementBuilder)
+    {
+        if (statementBuilder.getQueryType() == QueryType.INSERT)
+        {
+            return statementBuilder.values == null ? null : statementBuilder.values.get(this.shardKey);
+        }
+
+        if (!statementBuilder.useConditions)
+        {
+            return null;
+        }
+
+        Object key = null;
+
+        for (Condition condition : statementBuilder.conditions)
+        {
+            if (!condition.isFirstCondition() && !"AND".equalsIgnoreCase(Strings.nullToEmpty(condition.getClause()).trim()))
+            {
+                return null;
+            }
+
+            if (this.shardKey.equals(condition.getField()) && "=".equals(condition.getOperator().trim()) && !(condition.getValue() instanceof Collection))
+            {
+                key = condition.getValue();
+            }
+        }
+
+        return key;
+    }
+
+    private static ParsedResultSet merge(QueryType queryType, List<OrderField> orderFields, int limit, int offset,
+                                         Comparator<? super String> stringComparator, List<ParsedResultSet> parsedResultSets) throws Exception
+    {
+        if (queryType != QueryType.SELECT)
+        {
+            int updateCount = 0;
+            List<Long> generatedKeys = new ArrayList<>();
+
+            for (ParsedResultSet parsedResultSet : parsedResultSets)
+            {
+                updateCount += Math.max(0, parsedResultSet.getUpdateCount());
+
+                if (parsedResultSet.getGeneratedKeys() != null)
+                {
+                    for (long generatedKey : parsedResultSet.getGeneratedKeys())
+                    {
+                        generatedKeys.add(generatedKey);
+                    }
+                }
+            }
+
+            return new ParsedResultSet(null, updateCount, generatedKeys.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        List<Map<String, String>> rows = new ArrayList<>();
+
+        for (ParsedResultSet parsedResultSet : parsedResultSets)
+        {
+            rows.addAll(parsedResultSet.getRows());
+        }
+
+        if (!orderFields.isEmpty() && !rows.isEmpty())
+        {
+            rows.sort(comparator(rows, orderFields, stringComparator));
+        }
+
+        if (limit > -1)
+        {
+            rows = new ArrayList<>(rows.subList(Math.min(offset, rows.size()), (int) Math.min((long) offset + limit, rows.size())));
+        }
+
+        return new ParsedResultSet(rows, -1, null);
+    }
+
+    /**
+     * Sorts NULL first and then by the columns of the order fields. A column whose values are all numbers
+     * is compared by value, any other column only with the string comparator, so the order stays transitive.
+     * Qualified order fields like {@code users.name} are found by their column name.
+     */
+    private static Comparator<Map<String, String>> comparator(List<Map<String, String>> rows, List<OrderField> orderFields,
+                                                              Comparator<? super String> stringComparator)
+    {
+        Comparator<Map<String, String>> comparator = null;
+
+        for (OrderField orderField : orderFields)
+        {
+            String column = Database.findColumn(rows.get(0), orderField.getFieldName());
+            Comparator<String> values = isNumeric(rows, column) ? Comparator.comparing(value -> new BigDecimal(value)) : stringComparator::compare;
+            Comparator<Map<String, String>> byColumn = Comparator.comparing(row -> row.get(column), Comparator.nullsFirst(values));
+
+            if (orderField.getOrderType() == OrderType.DESCENDING)
+            {
+                byColumn = byColumn.reversed();
+            }
+
+            comparator = comparator == null ? byColumn : comparator.thenComparing(byColumn);
+        }
+
+        return comparator;
+    }
+
+    private static boolean isNumeric(List<Map<String, String>> rows, String column)
+    {
+        for (Map<String, String> row : rows)
+        {
+            String value = row.get(column);
+
+            if (value != null && !NUMBER.matcher(value).matches())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares strings like MySQL's default collations: case-insensitive and without trailing spaces.
+     * Accents and other Unicode collation rules aren't applied.
+     */
+    private static int compareIgnoreCase(String first, String second)
+    {
+        return String.CASE_INSENSITIVE_ORDER.compare(trimTrailingSpaces(first), trimTrailingSpaces(second));
+    }
+
+    private static String trimTrailingSpaces(String value)
+    {
+        int end = value.length();
+
+        while (end > 0 && value.charAt(end - 1) == ' ')
+        {
+            end--;
+        }
+
+        return end == value.length() ? value : value.substring(0, end);
+    }
+
+    /**
+     * @param key Value of the shard key
+     * @return Index of the shard which owns the key
+     */
+    public int getShardIndex(Object key)
+    {
+        Preconditions.checkNotNull(key, "key can't be null");
+
+        int shard = this.shardFunction.applyAsInt(key);
+        Preconditions.checkElementIndex(shard, this.shards.size(), "shard");
+
+        return shard;
+    }
+
+    /**
+     * @param key Value of the shard key
+     * @return The {@link Database} which owns the key, e.g. to run a {@link Transaction} on it
+     */
+    public Database getShard(Object key)
+    {
+        return this.shards.get(this.getShardIndex(key));
+    }
+
+    public List<Database> getShards()
+    {
+        return shards;
+    }
+
+    public String getShardKey()
+    {
+        return shardKey;
+    }
+
+    /**
+     * Replaces the consistent hash which maps the shard key values to the shard indexes
+     *
+     * @param shardFunction Returns the shard index of a key
+     * @return Current {@link ShardedDatabase} instance
+     */
+    public ShardedDatabase setShardFunction(ToIntFunction<Object> shardFunction)
+    {
+        Preconditions.checkNotNull(shardFunction, "shardFunction can't be null");
+
+        this.shardFunction = shardFunction;
+        return this;
+    }
+
+    /**
+     * Replaces the order of string values when the rows of several shards are merged, e.g. with
+     * {@link Comparator#naturalOrder()} for binary collations or a {@link java.text.Collator} for language specific ones
+     *
+     * @param stringComparator Compares two non-numeric values of an order field
+     * @return Current {@link ShardedDatabase} instance
+     */
+    public ShardedDatabase setStringComparator(Comparator<? super String> stringComparator)
+    {
+        Preconditions.checkNotNull(stringComparator, "stringComparator can't be null");
+
+        this.stringComparator = stringComparator;
+        return this;
+    }
+
+    /**
+     * @param shard Index of the shard
+     * @return Count of statements which were executed on the shard
+     */
+    public long getRequestCount(int shard)
+    {
+        return this.requests[shard].sum();
+    }
+
+    /**
+     * @param shard Index of the shard
+     * @return The average time in nanoseconds the shard needed to answer a statement
+     */
+    public long getAverageLatencyNanos(int shard)
+    {
+        long requests = this.requests[shard].sum();
+
+        return requests == 0 ? 0 : this.latencyNanos[shard].sum() / requests;
+    }
+
+    /**
+     * @param shard Index of the shard
+     * @return The longest time in nanoseconds the shard needed to answer a statement
+     */
+    public long getMaxLatencyNanos(int shard)
+    {
+        return this.maxLatencyNanos[shard].get();
+    }
+
+    /**
+     * @return Count of statements which were sent to all shards
+     */
+    public long getFanOutCount()
+    {
+        return this.fanOuts.sum();
+    }
+
+    /**
+     * Closes all shards
+     */
+    @Override
+    public void close()
+    {
+        this.shards.forEach(Database::close);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ShardedDatabase{shardKey=" + shardKey +
+                ", shards=" + shards.size() +
+                ", fanOuts=" + getFanOutCount() +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package net.centurylab.aurora.database;
+
+import io.reactivex.Observable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses concurrent executions with the same key into a single execution.
+ * The first subscriber runs the source, every subscriber which arrives while it is still running
+ * gets the same result instead of running the source again. The execution is disposed once all of its subscribers
+ * are disposed.
+ *
+ * @param <K> Type of the key
+ * @param <V> Type of the result
+ */
+public class SingleFlight<K, V>
+{
+    private final ConcurrentHashMap<K, Observable<V>> inFlight   = new ConcurrentHashMap<>();
+    private final LongAdder                           executions = new LongAdder();
+    private final LongAdder                           collapsed  = new LongAdder();
+
+    /**
+     * Returns an {@link Observable} which subscribes the source unless an execution with the same key is already running
+     *
+     * @param key    The key which identifies equal executions
+     * @param source The execution
+     * @return An {@link Observable} which pushes the shared result
+     */
+    public Observable<V> execute(K key, Observable<V> source)
+    {
+        return Observable.defer(() ->
+        {
+            AtomicReference<Observable<V>> self = new AtomicReference<>();
+            // the last subscriber which goes away disposes the execution, a subscriber which arrives after
+            // the result was pushed but before the entry was removed still gets the replayed result
+            Observable<V> shared = source.doFinally(() -> this.inFlight.remove(key, self.get())).replay(1).refCount();
+            self.set(shared);
+
+            Observable<V> running = this.inFlight.putIfAbsent(key, shared);
+
+            if (running != null)
+            {
+                this.collapsed.increment();
+                return running;
+            }
+
+            this.executions.increment();
+            return shared;
+        });
+    }
+
+    /**
+     * @return Count of executions which were actually run
+     */
+    public long getExecutionCount()
+    {
+        return this.executions.sum();
+    }
+
+    /**
+     * @return Count of executions which were answered by an execution which was already running
+     */
+    public long getCollapsedCount()
+    {
+        return this.collapsed.sum();
+    }
+
+    /**
+     * @return Count of executions which are running right now
+     */
+    public int getInFlightCount()
+    {
+        return this.inFlight.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SingleFlight{executions=" + getExecutionCount() +
+                ", collapsed=" + getCollapsedCount() +
+                ", inFlight=" + getInFlightCount() +
+                '}';
+    }
+}
@@ -0,0 +1,283 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+
+import net.centurylab.aurora.logging.LogManager;
+import net.centurylab.aurora.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs statements which took longer than the threshold to {@link net.centurylab.aurora.logging.LogLevel#DATABASE}
+ * with their template, parameters, timing breakdown and row count.
+ * <p>
+ * The plan of a slow SELECT is requested with {@code EXPLAIN} on a separate connection with {@link QueryPriority#BULK}
+ * and attached to the entry, full table scans are flagged. Slow statements are sampled and the entries are
+ * limited per second, so the log can stay enabled in production.
+ */
+public class SlowQueryLog
+{
+    private static final long DEFAULT_THRESHOLD_MILLIS       = 1_000;
+    private static final int  DEFAULT_MAX_ENTRIES_PER_SECOND = 10;
+    private static final long WINDOW_NANOS                   = TimeUnit.SECONDS.toNanos(1);
+
+    private final    Logger        logger              = LogManager.getLogger(SlowQueryLog.class);
+    private final    Database      database;
+    private final    AtomicLong    windowStart         = new AtomicLong(System.nanoTime());
+    private final    AtomicInteger windowEntries       = new AtomicInteger();
+    private final    LongAdder     slowQueries         = new LongAdder();
+    private final    LongAdder     loggedQueries       = new LongAdder();
+    private final    LongAdder     fullTableScans      = new LongAdder();
+    private volatile boolean       enabled             = true;
+    private volatile long          thresholdNanos      = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+    private volatile double        sampleRate          = 1;
+    private volatile int           maxEntriesPerSecond = DEFAULT_MAX_ENTRIES_PER_SECOND;
+    private volatile boolean       explain             = true;
+    private volatile boolean       logParameters       = true;
+
+    public SlowQueryLog(Database database)
+    {
+        this.database = Preconditions.checkNotNull(database, "database can't be null");
+    }
+
+    /**
+     * Logs the statement if it took longer than the threshold. Doesn't allocate for statements below the threshold.
+     *
+     * @param boundQuery       The executed {@link BoundQuery}
+     * @param checkoutNanos    Time which was spent waiting for the connection
+     * @param prepareNanos     Time which was spent preparing the statement
+     * @param executeNanos     Time which was spent executing the statement
+     * @param materializeNanos Time which was spent reading the result
+     * @param rows             Count of returned rows for SELECTs, the update count for all other statements
+     */
+    public void record(BoundQuery boundQuery, long checkoutNanos, long prepareNanos, long executeNanos, long materializeNanos, long rows)
+    {
+        long totalNanos = checkoutNanos + prepareNanos + executeNanos + materializeNanos;
+
+        if (!this.enabled || totalNanos < this.thresholdNanos)
+        {
+            return;
+        }
+
+        this.slowQueries.increment();
+
+        if (this.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= this.sampleRate)
+        {
+            return;
+        }
+
+        if (!this.tryAcquire())
+        {
+            return;
+        }
+
+        this.loggedQueries.increment();
+
+        Query query = boundQuery.getQuery();
+        String entry = String.format("Slow %s took %.1f ms (checkout %.1f ms, prepare %.1f ms, execute %.1f ms, materialize %.1f ms), %d rows: %s%nParameters: %s",
+                                     query.getQueryType(), millis(totalNanos), millis(checkoutNanos), millis(prepareNanos), millis(executeNanos),
+                                     millis(materializeNanos), rows, query.getSql(),
+                                     this.logParameters ? Arrays.toString(boundQuery.getParameters()) : "<hidden>");
+
+        if (query.getQueryType() != QueryType.SELECT || !this.explain)
+        {
+            this.logger.database("%s", entry);
+            return;
+        }
+
+        this.database.schedule(QueryPriority.BULK, () -> this.explain(boundQuery))
+                     .subscribe(plan -> this.logger.database("%s%n%s", entry, plan),
+                                throwable -> this.logger.database("%s%nEXPLAIN failed: %s", entry, throwable.getMessage()));
+    }
+
+    /**
+     * Allows the maximum count of entries per second
+     */
+    private boolean tryAcquire()
+    {
+        long now = System.nanoTime();
+        long windowStart = this.windowStart.get();
+
+        if (now - windowStart >= WINDOW_NANOS && this.windowStart.compareAndSet(windowStart, now))
+        {
+            this.windowEntries.set(0);
+        }
+
+        return this.windowEntries.incrementAndGet() <= this.maxEntriesPerSecond;
+    }
+
+    /**
+     * Runs EXPLAIN with the parameters of the SELECT on a connection to the server which executed it
+     */
+    private String explain(BoundQuery boundQuery) throws Exception
+    {
+        StringBuilder plan = new StringBuilder("Plan:");
+
+        try (Connection connection = this.database.getConnection(boundQuery.getQuery());
+             PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN " + boundQuery.getQuery().getSql()))
+        {
+            boundQuery.bind(preparedStatement);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery())
+            {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+
+                while (resultSet.next())
+                {
+                    plan.append(System.lineSeparator()).append("  ");
+
+                    for (int i = 1; i <= metaData.getColumnCount(); i++)
+                    {
+                        plan.append(i > 1 ? ", " : "").append(metaData.getColumnLabel(i)).append('=').append(resultSet.getString(i));
+                    }
+
+                    if ("ALL".equalsIgnoreCase(resultSet.getString("type")))
+                    {
+                        this.fullTableScans.increment();
+                        plan.append(" <- FULL TABLE SCAN on ").append(resultSet.getString("table"));
+                    }
+                }
+            }
+        }
+
+        return plan.toString();
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / 1_000_000D;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public SlowQueryLog setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public long getThresholdNanos()
+    {
+        return thresholdNanos;
+    }
+
+    /**
+     * @param threshold Statements which take at least this long are logged
+     * @param unit      The unit of the threshold
+     * @return Current {@link SlowQueryLog} instance
+     */
+    public SlowQueryLog setThreshold(long threshold, TimeUnit unit)
+    {
+        Preconditions.checkArgument(threshold > -1, "threshold can't be negative");
+
+        this.thresholdNanos = unit.toNanos(threshold);
+        return this;
+    }
+
+    public double getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate The fraction of slow statements which are logged, e.g. 0.1
+     * @return Current {@link SlowQueryLog} instance
+     */
+    public SlowQueryLog setSampleRate(double sampleRate)
+    {
+        Preconditions.checkArgument(sampleRate > 0 && sampleRate <= 1, "sampleRate has to be between 0 and 1");
+
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public int getMaxEntriesPerSecond()
+    {
+        return maxEntriesPerSecond;
+    }
+
+    /**
+     * @param maxEntriesPerSecond The count of entries which are logged per second at most, further slow statements are only counted
+     * @return Current {@link SlowQueryLog} instance
+     */
+    public SlowQueryLog setMaxEntriesPerSecond(int maxEntriesPerSecond)
+    {
+        Preconditions.checkArgument(maxEntriesPerSecond > 0, "maxEntriesPerSecond can't be negative or equals zero");
+
+        this.maxEntriesPerSecond = maxEntriesPerSecond;
+        return this;
+    }
+
+    public boolean isExplain()
+    {
+        return explain;
+    }
+
+    /**
+     * @param explain True to attach the plan of slow SELECTs
+     * @return Current {@link SlowQueryLog} instance
+     */
+    public SlowQueryLog setExplain(boolean explain)
+    {
+        this.explain = explain;
+        return this;
+    }
+
+    public boolean isLogParameters()
+    {
+        return logParameters;
+    }
+
+    /**
+     * @param logParameters False to keep sensitive parameter values out of the log
+     * @return Current {@link SlowQueryLog} instance
+     */
+    public SlowQueryLog setLogParameters(boolean logParameters)
+    {
+        this.logParameters = logParameters;
+        return this;
+    }
+
+    /**
+     * @return Count of statements which exceeded the threshold, including the ones which were not logged
+     */
+    public long getSlowQueryCount()
+    {
+        return this.slowQueries.sum();
+    }
+
+    public long getLoggedQueryCount()
+    {
+        return this.loggedQueries.sum();
+    }
+
+    /**
+     * @return Count of full table scans which were found in the plans of slow SELECTs
+     */
+    public long getFullTableScanCount()
+    {
+        return this.fullTableScans.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SlowQueryLog{thresholdNanos=" + thresholdNanos +
+                ", slowQueries=" + getSlowQueryCount() +
+                ", loggedQueries=" + getLoggedQueryCount() +
+                ", fullTableScans=" + getFullTableScanCount() +
+                '}';
+    }
+}
@@ -2,8 +2,10 @@ package net.centurylab.aurora.database;
 
 import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public abstract class StatementBuilder<T>
 {
@@ -20,8 +22,14 @@ public abstract class StatementBuilder<T>
     protected int           offset              = 0;
     protected boolean       useOrdering         = false;
     protected boolean       returnGeneratedKeys = false;
+    protected QueryPriority priority            = QueryPriority.NORMAL;
+    protected long          timeoutMillis       = 0;
 
     protected Map<String, Object> values;
+    protected Object[]            seekValues;
+    protected String              rangeField;
+    protected Object              rangeFrom;
+    protected Object              rangeTo;
 
     /**
      * Adds a field to the query
@@ -46,6 +54,13 @@ public abstract class StatementBuilder<T>
      */
     public abstract T reset();
 
+    /**
+     * Creates an independent builder with the same state, e.g. to change the limit without touching this one
+     *
+     * @return A new {@link StatementBuilder} instance
+     */
+    public abstract T copy();
+
     /**
      * Set to true if you want to use conditions for the next query
      *
@@ -91,6 +106,28 @@ public abstract class StatementBuilder<T>
      */
     public abstract T limit(int limit, int offset);
 
+    /**
+     * Continues the result after the row with the given values of the {@link OrderField}s.
+     * This adds {@code (a, b) > (?, ?)} to the conditions, or {@code <} if the fields are ordered descending,
+     * so MySQL can seek in the index instead of skipping the rows in front of an offset.
+     *
+     * @param values The values of the last row in the order of the {@link OrderField}s, null to start at the first row
+     * @return Current {@link StatementBuilder} instance
+     * @throws IllegalArgumentException if the count of values doesn't match the count of {@link OrderField}s
+     */
+    public abstract T seek(Object... values);
+
+    /**
+     * Restricts the result to the rows whose field is in the half-open range {@code [from, to)}.
+     * The range is combined with the conditions by AND.
+     *
+     * @param field Name of the field, null to remove the range
+     * @param from  The lowest value which is included
+     * @param to    The lowest value which is excluded
+     * @return Current {@link StatementBuilder} instance
+     */
+    public abstract T range(String field, Object from, Object to);
+
     /**
      * Orders the result by the given field by the given type
      *
@@ -142,6 +179,41 @@ public abstract class StatementBuilder<T>
         return returnGeneratedKeys;
     }
 
+    /**
+     * Sets the priority class in which the query is queued before it gets a connection
+     *
+     * @param priority The {@link QueryPriority}
+     * @return Current {@link StatementBuilder} instance
+     */
+    public abstract T setPriority(QueryPriority priority);
+
+    /**
+     * @return The priority class in which the query is queued
+     */
+    public QueryPriority getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Sets the time after which the query fails with a {@link java.sql.SQLTimeoutException}, including the time
+     * it waits in the queue for a connection. The statement is cancelled on the server when the timeout elapses.
+     *
+     * @param timeout The timeout, 0 to use the default timeout of the database
+     * @param unit    The unit of the timeout
+     * @return Current {@link StatementBuilder} instance
+     * @see Database#setDefaultQueryTimeout(long, TimeUnit)
+     */
+    public abstract T setQueryTimeout(long timeout, TimeUnit unit);
+
+    /**
+     * @return The timeout in milliseconds, 0 if the default timeout of the database is used
+     */
+    public long getQueryTimeoutMillis()
+    {
+        return timeoutMillis;
+    }
+
     /**
      * Creates a {@link PreparedStatement} with the current query
      *
@@ -150,6 +222,90 @@ public abstract class StatementBuilder<T>
      */
     public abstract PreparedStatement build(Database database);
 
+    /**
+     * Compiles the current state into an immutable {@link Query} template.
+     * Changes to this builder after compiling don't affect the template.
+     *
+     * @return The compiled {@link Query}
+     */
+    public abstract Query compile();
+
+    /**
+     * Returns the current parameter values in placeholder order: first the values, then the condition values,
+     * the range and at last the seek values.
+     * Condition values which are a {@link Collection} are expanded into one parameter per element.
+     *
+     * @return The current parameter values
+     */
+    public Object[] getParameters()
+    {
+        int valueCount = this.values == null ? 0 : this.values.size();
+        boolean bindConditions = this.useConditions && this.queryType != QueryType.INSERT;
+        boolean bindSeekValues = this.seekValues != null && this.queryType == QueryType.SELECT;
+        boolean bindRange = this.rangeField != null && this.queryType == QueryType.SELECT;
+        int conditionCount = 0;
+
+        if (bindConditions)
+        {
+            for (Condition condition : this.conditions)
+            {
+                conditionCount += condition.getValue() instanceof Collection ? ((Collection<?>) condition.getValue()).size() : 1;
+            }
+        }
+
+        Object[] parameters = new Object[valueCount + conditionCount + (bindRange ? 2 : 0) + (bindSeekValues ? this.seekValues.length : 0)];
+        int index = 0;
+
+        if (this.values != null)
+        {
+            for (Object value : this.values.values())
+            {
+                parameters[index++] = value;
+            }
+        }
+
+        if (bindConditions)
+        {
+            for (Condition condition : this.conditions)
+            {
+                if (condition.getValue() instanceof Collection)
+                {
+                    for (Object value : (Collection<?>) condition.getValue())
+                    {
+                        parameters[index++] = value;
+                    }
+                }
+                else
+                {
+                    parameters[index++] = condition.getValue();
+                }
+            }
+        }
+
+        if (bindRange)
+        {
+            parameters[index++] = this.rangeFrom;
+            parameters[index++] = this.rangeTo;
+        }
+
+        if (bindSeekValues)
+        {
+            System.arraycopy(this.seekValues, 0, parameters, index, this.seekValues.length);
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Compiles the current state and binds the current parameter values
+     *
+     * @return A {@link BoundQuery} which can be executed
+     */
+    public BoundQuery toBoundQuery()
+    {
+        return this.compile().bind(this.getParameters());
+    }
+
     /**
      * @return The current query type (SELECT, INSERT, UPDATE, DELETE)
      */
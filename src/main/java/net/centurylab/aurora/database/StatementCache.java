@@ -0,0 +1,214 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import com.zaxxer.hikari.HikariDataSource;
+
+import net.centurylab.aurora.logging.LogManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepares the statements of the query templates through Connector/J's statement cache. The driver keeps an LRU cache
+ * of prepared statements for every physical connection, closing a statement only hands it back to that cache,
+ * so it is reused on the next checkout of the connection without being parsed again.
+ * <p>
+ * The statements are prepared on the connection of the pool, so the pool tracks them like all other statements:
+ * it closes them when the connection is handed back and resets the state of the connection after work which was
+ * done through them. The cache lives and dies with the physical connection.
+ * <p>
+ * The driver doesn't report whether a statement came from its cache, so the hits, misses and evictions are counted
+ * by tracking the SQL of the statements in an LRU of the same size for every physical connection, like the driver does.
+ * The tracked connections are weakly referenced and dropped once the pool closed them.
+ */
+public class StatementCache
+{
+    /**
+     * Enables the statement cache of Connector/J
+     */
+    private static final String CACHE_PREPARED_STATEMENTS = "cachePrepStmts";
+
+    /**
+     * The count of statements Connector/J caches per connection
+     */
+    private static final String CACHE_SIZE = "prepStmtCacheSize";
+
+    /**
+     * The length of the longest SQL Connector/J caches, the default of 256 characters is too short for generated statements
+     */
+    private static final String CACHE_SQL_LIMIT = "prepStmtCacheSqlLimit";
+
+    private static final int MAX_SQL_LENGTH = 4096;
+
+    private final HikariDataSource                    connectionPool;
+    private final Map<Connection, ConnectionStatements> connections = new MapMaker().weakKeys().makeMap();
+    private final LongAdder                             hits        = new LongAdder();
+    private final LongAdder                             misses      = new LongAdder();
+    private final LongAdder                             evictions   = new LongAdder();
+
+    private volatile int maxSize;
+
+    /**
+     * @param connectionPool The pool which passes the cache settings to the driver
+     * @param maxSize        The count of statements which are cached per connection, 0 disables the cache
+     */
+    public StatementCache(HikariDataSource connectionPool, int maxSize)
+    {
+        this.connectionPool = Preconditions.checkNotNull(connectionPool, "connectionPool can't be null");
+        this.connectionPool.getDataSourceProperties().put(CACHE_SQL_LIMIT, String.valueOf(MAX_SQL_LENGTH));
+        this.setMaxSize(maxSize);
+    }
+
+    /**
+     * Prepares the statement of the query, the driver returns a cached statement if the connection already prepared it
+     *
+     * @param connection The connection which was checked out from the pool
+     * @param query      The {@link Query} which should be prepared
+     * @return A {@link PreparedStatement} without any bound parameters
+     * @throws SQLException If a database access error occurs
+     */
+    public PreparedStatement prepare(Connection connection, Query query) throws SQLException
+    {
+        this.record(connection.unwrap(Connection.class), query.getSql());
+        return query.prepare(connection);
+    }
+
+    /**
+     * Counts the statement as hit if the physical connection prepared its SQL recently enough to still have it cached
+     */
+    private void record(Connection physicalConnection, String sql)
+    {
+        if (this.maxSize == 0 || sql.length() > MAX_SQL_LENGTH)
+        {
+            this.misses.increment();
+            return;
+        }
+
+        ConnectionStatements connectionStatements = this.connections.computeIfAbsent(physicalConnection, connection -> new ConnectionStatements());
+
+        // a connection is used by one thread at a time, the lock only orders the handover between threads
+        synchronized (connectionStatements)
+        {
+            if (connectionStatements.put(sql, Boolean.TRUE) != null)
+            {
+                this.hits.increment();
+            }
+            else
+            {
+                this.misses.increment();
+            }
+        }
+    }
+
+    /**
+     * Hands a statement back after it was executed. Closing the statement returns it to the cache of the driver.
+     *
+     * @param preparedStatement The {@link PreparedStatement} which was returned by {@link #prepare(Connection, Query)}
+     */
+    public void release(PreparedStatement preparedStatement)
+    {
+        try
+        {
+            if (!preparedStatement.isClosed())
+            {
+                preparedStatement.close();
+            }
+        }
+        catch (SQLException e)
+        {
+            LogManager.getLogger(StatementCache.class).error(e, "Could not release the PreparedStatement");
+        }
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Sets the count of statements which are cached per connection, 0 disables the cache.
+     * The driver reads the setting when the pool opens a connection, so it has to be set before the pool is started.
+     *
+     * @param maxSize New size
+     * @return Current {@link StatementCache} instance
+     */
+    public StatementCache setMaxSize(int maxSize)
+    {
+        Preconditions.checkArgument(maxSize > -1, "maxSize can't be negative");
+
+        this.maxSize = maxSize;
+        this.connectionPool.getDataSourceProperties().put(CACHE_PREPARED_STATEMENTS, String.valueOf(maxSize > 0));
+        this.connectionPool.getDataSourceProperties().put(CACHE_SIZE, String.valueOf(maxSize));
+        return this;
+    }
+
+    /**
+     * @return The count of statements which were requested from the driver
+     */
+    public long getPrepareCount()
+    {
+        return this.getHitCount() + this.getMissCount();
+    }
+
+    /**
+     * @return The count of statements which the driver returned from its cache
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return The count of statements which the driver had to prepare on the server
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return The count of statements which were dropped from the cache of a connection because it was full
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StatementCache{maxSize=" + maxSize +
+                ", hits=" + getHitCount() +
+                ", misses=" + getMissCount() +
+                ", evictions=" + getEvictionCount() +
+                '}';
+    }
+
+    /**
+     * The SQL of the statements which the driver caches for a connection in LRU order
+     */
+    private final class ConnectionStatements extends LinkedHashMap<String, Boolean>
+    {
+        private ConnectionStatements()
+        {
+            super(16, 0.75F, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+        {
+            if (this.size() <= StatementCache.this.maxSize)
+            {
+                return false;
+            }
+
+            StatementCache.this.evictions.increment();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A unit of work which runs all of its statements on a single connection and commits them together.
+ * The statements are executed blocking on the calling thread, so a transaction should be used
+ * through {@link Database#inTransaction(io.reactivex.functions.Function)} or on a database scheduler.
+ * <p>
+ * Closing a transaction which wasn't committed rolls it back.
+ */
+public class Transaction implements AutoCloseable
+{
+    private final Database    database;
+    private final Connection  connection;
+    private final Set<String> tables = new HashSet<>();
+    private       boolean     finished;
+
+    Transaction(Database database, Connection connection) throws SQLException
+    {
+        this.database = database;
+        this.connection = connection;
+
+        this.connection.setAutoCommit(false);
+    }
+
+    /**
+     * Executes the statement within the transaction
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @return The result
+     * @throws SQLException If a database access error occurs
+     */
+    public ParsedResultSet execute(StatementBuilder statementBuilder) throws SQLException
+    {
+        return this.execute(statementBuilder.toBoundQuery());
+    }
+
+    /**
+     * Executes the {@link Query} template with the given parameters within the transaction
+     *
+     * @param query      The {@link Query} template
+     * @param parameters The parameter values in placeholder order
+     * @return The result
+     * @throws SQLException If a database access error occurs
+     */
+    public ParsedResultSet execute(Query query, Object... parameters) throws SQLException
+    {
+        return this.execute(query.bind(parameters));
+    }
+
+    /**
+     * Executes the {@link BoundQuery} within the transaction
+     *
+     * @param boundQuery The {@link BoundQuery}
+     * @return The result
+     * @throws SQLException If a database access error occurs
+     */
+    public ParsedResultSet execute(BoundQuery boundQuery) throws SQLException
+    {
+        this.checkActive();
+
+        Query query = boundQuery.getQuery();
+        PreparedStatement preparedStatement = this.database.prepareStatement(this.connection, boundQuery);
+
+        try
+        {
+            if (query.getQueryType() != QueryType.SELECT)
+            {
+                this.tables.addAll(query.getTables());
+            }
+
+            return new ParsedResultSet(preparedStatement, query.getQueryType(), query.isReturnGeneratedKeys());
+        }
+        finally
+        {
+            this.database.releaseStatement(preparedStatement);
+        }
+    }
+
+    /**
+     * Executes the {@link Query} template once for every parameter row as JDBC batch within the transaction
+     *
+     * @param query      The {@link Query} template, must not be a SELECT
+     * @param parameters The parameter values of every row in placeholder order
+     * @return The update count of every row
+     * @throws SQLException If a database access error occurs
+     */
+    public int[] executeBatch(Query query, List<Object[]> parameters) throws SQLException
+    {
+        Preconditions.checkArgument(query.getQueryType() != QueryType.SELECT, "SELECT statements can't be batched");
+        this.checkActive();
+
+        PreparedStatement preparedStatement = this.database.prepareStatement(this.connection, query);
+
+        try
+        {
+            this.tables.addAll(query.getTables());
+
+            for (Object[] row : parameters)
+            {
+                query.bind(row).bind(preparedStatement);
+                preparedStatement.addBatch();
+            }
+
+            return preparedStatement.executeBatch();
+        }
+        finally
+        {
+            this.database.releaseStatement(preparedStatement);
+        }
+    }
+
+    /**
+     * Creates a savepoint to which the transaction can be rolled back
+     *
+     * @param name Name of the savepoint
+     * @return The {@link Savepoint}
+     * @throws SQLException If a database access error occurs
+     */
+    public Savepoint setSavepoint(String name) throws SQLException
+    {
+        this.checkActive();
+
+        return this.connection.setSavepoint(name);
+    }
+
+    /**
+     * Undoes all statements which were executed after the savepoint was created
+     *
+     * @param savepoint The {@link Savepoint}
+     * @throws SQLException If a database access error occurs
+     */
+    public void rollback(Savepoint savepoint) throws SQLException
+    {
+        this.checkActive();
+
+        this.connection.rollback(savepoint);
+    }
+
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException
+    {
+        this.checkActive();
+
+        this.connection.releaseSavepoint(savepoint);
+    }
+
+    /**
+     * Commits all statements and invalidates the cached results of the changed tables.
+     * If the commit fails the transaction stays active, so closing it rolls it back.
+     *
+     * @throws SQLException If a database access error occurs
+     */
+    public void commit() throws SQLException
+    {
+        this.checkActive();
+
+        this.connection.commit();
+        this.finished = true;
+        this.database.tablesChanged(this.tables);
+    }
+
+    /**
+     * Undoes all statements of the transaction
+     *
+     * @throws SQLException If a database access error occurs
+     */
+    public void rollback() throws SQLException
+    {
+        this.checkActive();
+
+        this.finished = true;
+        this.connection.rollback();
+    }
+
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     * Rolls the transaction back if it wasn't finished or its commit failed and returns the connection to the pool.
+     * Auto-commit is only switched back on after the rollback, switching it on commits the open transaction.
+     *
+     * @throws SQLException If a database access error occurs
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        try
+        {
+            if (!this.finished)
+            {
+                this.rollback();
+            }
+
+            this.connection.setAutoCommit(true);
+        }
+        finally
+        {
+            this.connection.close();
+        }
+    }
+
+    private void checkActive()
+    {
+        Preconditions.checkState(!this.finished, "The transaction was already committed or rolled back");
+    }
+}
@@ -0,0 +1,370 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.base.Preconditions;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import net.centurylab.aurora.logging.LogManager;
+import net.centurylab.aurora.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers UPDATEs per table and primary key and writes them later. When a row gets updated again before
+ * the buffer was flushed, the new field values are merged into the pending ones, so only the last value
+ * of every field is written.
+ * <p>
+ * The buffer is flushed periodically, when it holds the maximum count of rows and when the {@link Database}
+ * gets closed. Every flush runs as a single transaction with one JDBC batch per statement shape.
+ * Rows of a failed flush are put back into the buffer unless they were updated again in the meantime.
+ */
+public class WriteBehindBuffer implements AutoCloseable
+{
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1_000;
+    private static final int  DEFAULT_MAX_PENDING_ROWS      = 10_000;
+
+    private final Logger                           logger         = LogManager.getLogger(WriteBehindBuffer.class);
+    private final Database                         database;
+    private final Object                           flushLock      = new Object();
+    private final Runnable                         shutdownHook   = this::close;
+    private final AtomicBoolean                    flushRequested = new AtomicBoolean();
+    private final LongAdder                        updates        = new LongAdder();
+    private final LongAdder                        writtenRows    = new LongAdder();
+    private final LongAdder                        flushes        = new LongAdder();
+    private final LongAdder                        flushNanos     = new LongAdder();
+    private final AtomicLong                       maxFlushNanos  = new AtomicLong();
+    private       Map<RowKey, Map<String, Object>> pending        = new LinkedHashMap<>();
+    private       int                              maxPendingRows;
+    private       Disposable                       timer;
+    private       boolean                          closed;
+
+    public WriteBehindBuffer(Database database)
+    {
+        this(database, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_MAX_PENDING_ROWS);
+    }
+
+    /**
+     * @param database       The {@link Database} which executes the flushes
+     * @param flushInterval  The time between two periodic flushes
+     * @param unit           The unit of the flush interval
+     * @param maxPendingRows The count of buffered rows which triggers a flush right away
+     */
+    public WriteBehindBuffer(Database database, long flushInterval, TimeUnit unit, int maxPendingRows)
+    {
+        Preconditions.checkNotNull(database, "database can't be null");
+        Preconditions.checkArgument(flushInterval > 0, "flushInterval can't be negative or equals zero");
+        Preconditions.checkArgument(maxPendingRows > 0, "maxPendingRows can't be negative or equals zero");
+
+        this.database = database;
+        this.maxPendingRows = maxPendingRows;
+        this.timer = Schedulers.computation().schedulePeriodicallyDirect(this::flushInBackground, flushInterval, flushInterval, unit);
+
+        this.database.addShutdownHook(this.shutdownHook);
+    }
+
+    /**
+     * Buffers an UPDATE of the row with the given primary key
+     *
+     * @param tableName Name of the table
+     * @param keyColumn Name of the primary key column
+     * @param key       Value of the primary key
+     * @param values    The new field values
+     * @return Current {@link WriteBehindBuffer} instance
+     */
+    public WriteBehindBuffer update(String tableName, String keyColumn, Object key, Map<String, Object> values)
+    {
+        Preconditions.checkNotNull(tableName, "tableName can't be null");
+        Preconditions.checkNotNull(keyColumn, "keyColumn can't be null");
+        Preconditions.checkNotNull(key, "key can't be null");
+        Preconditions.checkNotNull(values, "values can't be null");
+
+        boolean full;
+
+        synchronized (this)
+        {
+            Preconditions.checkState(!this.closed, "The buffer was closed");
+
+            // Sorted fields let rows which change the same fields share one statement
+            this.pending.computeIfAbsent(new RowKey(tableName, keyColumn, key), rowKey -> new TreeMap<>()).putAll(values);
+            full = this.pending.size() >= this.maxPendingRows;
+        }
+
+        this.updates.increment();
+
+        if (full && this.flushRequested.compareAndSet(false, true))
+        {
+            this.flushInBackground();
+        }
+
+        return this;
+    }
+
+    /**
+     * Writes all buffered rows
+     *
+     * @return An {@link Observable} which pushes the count of written rows
+     */
+    public Observable<Integer> flush()
+    {
+        return this.database.inTransaction(QueryPriority.BULK, this::flush);
+    }
+
+    private int flush(Transaction transaction) throws Exception
+    {
+        // Flushes are serialized, so an older value can never overwrite a newer one
+        synchronized (this.flushLock)
+        {
+            Map<RowKey, Map<String, Object>> batch = this.takePending();
+
+            if (batch.isEmpty())
+            {
+                return 0;
+            }
+
+            long start = System.nanoTime();
+
+            try
+            {
+                this.write(transaction, batch);
+                transaction.commit();
+            }
+            catch (Exception e)
+            {
+                this.restore(batch);
+                throw e;
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            this.writtenRows.add(batch.size());
+            this.flushes.increment();
+            this.flushNanos.add(elapsed);
+            this.maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+
+            return batch.size();
+        }
+    }
+
+    private void flushInBackground()
+    {
+        if (this.getPendingRows() == 0)
+        {
+            return;
+        }
+
+        this.flush().subscribe(rows ->
+        {
+        }, throwable -> this.logger.error(throwable, "Could not flush the write behind buffer"));
+    }
+
+    private void write(Transaction transaction, Map<RowKey, Map<String, Object>> batch) throws Exception
+    {
+        Map<String, Query> queries = new LinkedHashMap<>();
+        Map<String, List<Object[]>> parameters = new LinkedHashMap<>();
+
+        for (Map.Entry<RowKey, Map<String, Object>> entry : batch.entrySet())
+        {
+            RowKey rowKey = entry.getKey();
+            MySQLStatementBuilder statementBuilder = MySQLStatementBuilder.Update(entry.getValue())
+                                                                          .addTable(rowKey.tableName)
+                                                                          .addCondition(new Condition(rowKey.keyColumn, "=", rowKey.key))
+                                                                          .setPriority(QueryPriority.BULK);
+            Query query = statementBuilder.compile();
+
+            queries.putIfAbsent(query.getSql(), query);
+            parameters.computeIfAbsent(query.getSql(), sql -> new ArrayList<>()).add(statementBuilder.getParameters());
+        }
+
+        for (Map.Entry<String, Query> entry : queries.entrySet())
+        {
+            transaction.executeBatch(entry.getValue(), parameters.get(entry.getKey()));
+        }
+    }
+
+    private synchronized Map<RowKey, Map<String, Object>> takePending()
+    {
+        Map<RowKey, Map<String, Object>> batch = this.pending;
+        this.pending = new LinkedHashMap<>();
+        this.flushRequested.set(false);
+        return batch;
+    }
+
+    private synchronized void restore(Map<RowKey, Map<String, Object>> batch)
+    {
+        for (Map.Entry<RowKey, Map<String, Object>> entry : batch.entrySet())
+        {
+            Map<String, Object> newer = this.pending.get(entry.getKey());
+            Map<String, Object> values = new TreeMap<>(entry.getValue());
+
+            if (newer != null)
+            {
+                values.putAll(newer);
+            }
+
+            this.pending.put(entry.getKey(), values);
+        }
+    }
+
+    /**
+     * Stops the periodic flush and writes all buffered rows. Further updates are rejected.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (this.closed)
+            {
+                return;
+            }
+
+            this.closed = true;
+        }
+
+        this.timer.dispose();
+        this.database.removeShutdownHook(this.shutdownHook);
+
+        if (this.getPendingRows() == 0)
+        {
+            return;
+        }
+
+        // The buffer may be closed by Database#close on a worker of the database or result scheduler,
+        // so the last flush runs on the closing thread instead of waiting for a scheduled one
+        try (Transaction transaction = this.database.beginTransaction())
+        {
+            this.flush(transaction);
+        }
+        catch (Exception e)
+        {
+            this.logger.error(e, "Could not flush %s buffered rows", this.getPendingRows());
+        }
+    }
+
+    public synchronized WriteBehindBuffer setMaxPendingRows(int maxPendingRows)
+    {
+        Preconditions.checkArgument(maxPendingRows > 0, "maxPendingRows can't be negative or equals zero");
+
+        this.maxPendingRows = maxPendingRows;
+        return this;
+    }
+
+    public synchronized int getMaxPendingRows()
+    {
+        return maxPendingRows;
+    }
+
+    /**
+     * @return Count of rows which are waiting for the next flush
+     */
+    public synchronized int getPendingRows()
+    {
+        return this.pending.size();
+    }
+
+    /**
+     * @return Count of buffered updates
+     */
+    public long getUpdateCount()
+    {
+        return this.updates.sum();
+    }
+
+    /**
+     * @return Count of rows which were written
+     */
+    public long getWrittenRowCount()
+    {
+        return this.writtenRows.sum();
+    }
+
+    /**
+     * @return The average count of updates which were merged into one written row
+     */
+    public double getCoalescingRatio()
+    {
+        long written = this.writtenRows.sum();
+
+        return written == 0 ? 0 : (double) this.updates.sum() / written;
+    }
+
+    public long getFlushCount()
+    {
+        return this.flushes.sum();
+    }
+
+    /**
+     * @return The average time in nanoseconds a successful flush took
+     */
+    public long getAverageFlushNanos()
+    {
+        long flushes = this.flushes.sum();
+
+        return flushes == 0 ? 0 : this.flushNanos.sum() / flushes;
+    }
+
+    /**
+     * @return The longest time in nanoseconds a successful flush took
+     */
+    public long getMaxFlushNanos()
+    {
+        return this.maxFlushNanos.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "WriteBehindBuffer{pendingRows=" + getPendingRows() +
+                ", coalescingRatio=" + getCoalescingRatio() +
+                ", averageFlushNanos=" + getAverageFlushNanos() +
+                '}';
+    }
+
+    private static final class RowKey
+    {
+        private final String tableName;
+        private final String keyColumn;
+        private final Object key;
+
+        private RowKey(String tableName, String keyColumn, Object key)
+        {
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+
+            RowKey rowKey = (RowKey) o;
+
+            return tableName.equals(rowKey.tableName) && keyColumn.equals(rowKey.keyColumn) && key.equals(rowKey.key);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(tableName, keyColumn, key);
+        }
+    }
+}
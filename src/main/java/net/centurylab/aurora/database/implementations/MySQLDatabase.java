@@ -1,17 +1,53 @@
 package net.centurylab.aurora.database.implementations;
 
+import com.google.common.base.Preconditions;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 
+import net.centurylab.aurora.database.BatchResult;
+import net.centurylab.aurora.database.BoundQuery;
+import net.centurylab.aurora.database.ColumnarResultSet;
 import net.centurylab.aurora.database.Database;
 import net.centurylab.aurora.database.ParsedResultSet;
+import net.centurylab.aurora.database.Query;
+import net.centurylab.aurora.database.QueryType;
+import net.centurylab.aurora.database.ResultCache;
+import net.centurylab.aurora.database.ResultStream;
+import net.centurylab.aurora.database.Row;
 import net.centurylab.aurora.database.StatementBuilder;
+import net.centurylab.aurora.database.mapping.EntityMapper;
+import net.centurylab.aurora.database.metrics.QueryMetrics;
+import net.centurylab.aurora.utilities.CommonFunctions;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
 
 public class MySQLDatabase extends Database
 {
-    private static final String DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
-    private static final String JDBC_URL     = "jdbc:mysql://%s:%s/%s";
+    protected static final String DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
+    protected static final String JDBC_URL     = "jdbc:mysql://%s:%s/%s";
+
+    /**
+     * Makes Connector/J stream the result row by row instead of buffering it completely.
+     * Positive fetch sizes need "useCursorFetch=true" in the connection properties.
+     */
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /**
+     * Prepares the statements on the server. This pays off because prepared statements are cached per connection.
+     */
+    private static final String SERVER_PREPARED_STATEMENTS = "useServerPrepStmts";
+
+    /**
+     * Lets Connector/J send batched INSERTs as multi-row INSERT ... VALUES (...), (...) statements.
+     */
+    private static final String REWRITE_BATCHED_STATEMENTS = "rewriteBatchedStatements";
 
     private String host;
     private int    port;
@@ -38,10 +74,15 @@ public class MySQLDatabase extends Database
         this.database = database;
         this.username = username;
         this.password = password;
+
+        this.setDefaultFetchSize(STREAMING_FETCH_SIZE);
+        this.getConnectionPoolProperties().putIfAbsent(SERVER_PREPARED_STATEMENTS, "true");
+        this.getConnectionPoolProperties().putIfAbsent(REWRITE_BATCHED_STATEMENTS, "true");
     }
 
     /**
-     * Executes a {@link PreparedStatement}
+     * Executes a {@link PreparedStatement}. The builder is compiled right away, the statement
+     * is executed on the database scheduler when the {@link Observable} gets subscribed.
      *
      * @param statementBuilder The {@link StatementBuilder}
      * @return An {@link Observable} which pushes the result
@@ -49,17 +90,323 @@ public class MySQLDatabase extends Database
     @Override
     public Observable<ParsedResultSet> execute(StatementBuilder statementBuilder)
     {
-        PreparedStatement preparedStatement = statementBuilder.build(this);
+        return this.execute(statementBuilder.toBoundQuery());
+    }
+
+    /**
+     * Executes a compiled {@link Query} template with bound parameters.
+     * The connection is only checked out when the {@link Observable} gets subscribed.
+     *
+     * @param boundQuery The {@link BoundQuery}
+     * @return An {@link Observable} which pushes the result
+     */
+    @Override
+    public Observable<ParsedResultSet> execute(BoundQuery boundQuery)
+    {
+        Query query = boundQuery.getQuery();
+
+        return Observable.defer(() ->
+        {
+            ResultCache resultCache = MySQLDatabase.this.getResultCache();
+            boolean cacheable = resultCache.isCacheable(query);
+
+            if (cacheable)
+            {
+                ParsedResultSet cached = resultCache.get(boundQuery);
+
+                if (cached != null)
+                {
+                    return MySQLDatabase.this.observeResults(Observable.just(cached));
+                }
+            }
+
+            long generation = cacheable ? resultCache.getGeneration(query) : 0;
+
+            Observable<ParsedResultSet> execution = MySQLDatabase.this.schedule(query, () ->
+            {
+                QueryMetrics queryMetrics = MySQLDatabase.this.getMetrics().get(query);
+                ParsedResultSet parsedResultSet;
+                long start = System.nanoTime();
+
+                try (Connection connection = MySQLDatabase.this.getConnection(query))
+                {
+                    long checkedOut = System.nanoTime();
+                    PreparedStatement preparedStatement = MySQLDatabase.this.prepareStatement(connection, boundQuery);
+                    long prepared = System.nanoTime();
+
+                    try
+                    {
+                        parsedResultSet = new ParsedResultSet(preparedStatement, query.getQueryType(), query.isReturnGeneratedKeys());
+
+                        if (query.getQueryType() != QueryType.SELECT)
+                        {
+                            MySQLDatabase.this.tablesChanged(query.getTables());
+                        }
+                    }
+                    finally
+                    {
+                        MySQLDatabase.this.releaseStatement(preparedStatement);
+                    }
+
+                    long executed = parsedResultSet.getExecutionNanos();
+                    long materialized = System.nanoTime() - prepared - executed;
+                    long rows = query.getQueryType() == QueryType.SELECT ? parsedResultSet.getRowCount() : parsedResultSet.getUpdateCount();
+
+                    if (queryMetrics != null)
+                    {
+                        queryMetrics.record(checkedOut - start, prepared - checkedOut, executed, materialized);
+                        queryMetrics.recordResult(rows, parsedResultSet.estimateSize());
+                    }
+
+                    MySQLDatabase.this.getSlowQueryLog().record(boundQuery, checkedOut - start, prepared - checkedOut, executed, materialized, rows);
+                }
+                catch (Exception e)
+                {
+                    if (queryMetrics != null)
+                    {
+                        queryMetrics.recordError();
+                    }
+
+                    throw e;
+                }
+
+                if (cacheable)
+                {
+                    resultCache.put(boundQuery, parsedResultSet, generation);
+                }
+
+                return parsedResultSet;
+            });
+
+            if (query.getQueryType() == QueryType.SELECT && MySQLDatabase.this.isDeduplicateSelects())
+            {
+                return MySQLDatabase.this.getSingleFlight().execute(boundQuery, execution);
+            }
+
+            return execution;
+        });
+    }
+
+    /**
+     * Executes the {@link Query} template once for every parameter row as JDBC batch on a single connection.
+     * Connector/J rewrites batched INSERTs into multi-row INSERTs unless "rewriteBatchedStatements" is disabled.
+     *
+     * @param query      The {@link Query} template, must not be a SELECT
+     * @param parameters The parameter values of every row in placeholder order
+     * @param batchSize  The count of rows which are sent to the database at once
+     * @return An {@link Observable} which pushes the update counts of all rows and all generated keys
+     */
+    @Override
+    public Observable<BatchResult> executeBatch(Query query, List<Object[]> parameters, int batchSize)
+    {
+        Preconditions.checkArgument(query.getQueryType() != QueryType.SELECT, "SELECT statements can't be batched");
+        Preconditions.checkArgument(batchSize > 0, "batchSize can't be negative or equals zero");
+
+        return this.schedule(query, () ->
+        {
+            QueryMetrics queryMetrics = MySQLDatabase.this.getMetrics().get(query);
+            int[] updateCounts = new int[parameters.size()];
+            long[] generatedKeys = new long[0];
+            long requested = System.nanoTime();
+            boolean executed = false;
+
+            try (Connection connection = MySQLDatabase.this.getConnection(query))
+            {
+                long checkedOut = System.nanoTime();
+                PreparedStatement preparedStatement = MySQLDatabase.this.prepareStatement(connection, query);
+                long prepared = System.nanoTime();
+
+                try
+                {
+                    for (int start = 0; start < parameters.size(); start += batchSize)
+                    {
+                        int end = Math.min(start + batchSize, parameters.size());
+
+                        for (int i = start; i < end; i++)
+                        {
+                            query.bind(parameters.get(i)).bind(preparedStatement);
+                            preparedStatement.addBatch();
+                        }
+
+                        // a failing chunk may have written some of its rows before the error
+                        executed = true;
+                        int[] chunkUpdateCounts = preparedStatement.executeBatch();
+                        System.arraycopy(chunkUpdateCounts, 0, updateCounts, start, Math.min(chunkUpdateCounts.length, end - start));
+
+                        if (query.isReturnGeneratedKeys())
+                        {
+                            try (ResultSet resultSet = preparedStatement.getGeneratedKeys())
+                            {
+                                long[] chunkKeys = CommonFunctions.getLongColumn(resultSet, 1);
+                                generatedKeys = Arrays.copyOf(generatedKeys, generatedKeys.length + chunkKeys.length);
+                                System.arraycopy(chunkKeys, 0, generatedKeys, generatedKeys.length - chunkKeys.length, chunkKeys.length);
+                            }
+                        }
+                    }
+                }
+                finally
+                {
+                    MySQLDatabase.this.releaseStatement(preparedStatement);
+                }
+
+                if (queryMetrics != null)
+                {
+                    queryMetrics.record(checkedOut - requested, prepared - checkedOut, System.nanoTime() - prepared, 0);
+                    queryMetrics.recordResult(parameters.size(), 0);
+                }
+            }
+            catch (Exception e)
+            {
+                if (queryMetrics != null)
+                {
+                    queryMetrics.recordError();
+                }
+
+                throw e;
+            }
+            finally
+            {
+                if (executed)
+                {
+                    MySQLDatabase.this.tablesChanged(query.getTables());
+                }
+            }
+
+            return new BatchResult(updateCounts, generatedKeys);
+        });
+    }
+
+    /**
+     * Executes a SELECT and materializes the result column by column
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @return An {@link Observable} which pushes the result
+     */
+    @Override
+    public Observable<ColumnarResultSet> executeColumnar(StatementBuilder statementBuilder)
+    {
+        Preconditions.checkArgument(statementBuilder.getQueryType() == QueryType.SELECT, "Only SELECT statements have a columnar result");
+
+        return this.select(statementBuilder.toBoundQuery(), ColumnarResultSet::new, ColumnarResultSet::getRowCount);
+    }
 
-        Observable<ParsedResultSet> observable = Observable.create(e ->
+    /**
+     * Executes a SELECT and reads every row into an entity. The column indexes are resolved once per result,
+     * the rows are read by index straight from the {@link ResultSet}.
+     *
+     * @param mapper           The {@link EntityMapper} of the entity class
+     * @param statementBuilder The {@link StatementBuilder}
+     * @param <T>              Type of the entities
+     * @return An {@link Observable} which pushes the entities in row order
+     */
+    @Override
+    public <T> Observable<List<T>> select(EntityMapper<T> mapper, StatementBuilder statementBuilder)
+    {
+        Preconditions.checkNotNull(mapper, "mapper can't be null");
+        Preconditions.checkArgument(statementBuilder.getQueryType() == QueryType.SELECT, "Only SELECT statements can be mapped to entities");
+
+        return this.select(statementBuilder.toBoundQuery(), mapper::mapAll, List::size);
+    }
+
+    /**
+     * Executes a SELECT and materializes its {@link ResultSet}. The phases are recorded in the {@link QueryMetrics}
+     * and the slow query log like {@link #execute(BoundQuery)} records them.
+     *
+     * @param boundQuery The {@link BoundQuery} of the SELECT
+     * @param reader     Materializes the result
+     * @param rowCount   Returns the count of rows of the materialized result
+     * @param <R>        Type of the materialized result
+     * @return An {@link Observable} which pushes the result
+     */
+    private <R> Observable<R> select(BoundQuery boundQuery, ResultReader<R> reader, ToIntFunction<R> rowCount)
+    {
+        Query query = boundQuery.getQuery();
+
+        return this.schedule(query, () ->
         {
-            ParsedResultSet parsedResultSet = new ParsedResultSet(preparedStatement, statementBuilder.getQueryType(), statementBuilder.isReturnGeneratedKeys());
-            MySQLDatabase.this.closePreparedStatement(preparedStatement);
-            e.onNext(parsedResultSet);
-            e.onComplete();
+            QueryMetrics queryMetrics = MySQLDatabase.this.getMetrics().get(query);
+            long start = System.nanoTime();
+
+            try (Connection connection = MySQLDatabase.this.getConnection(query))
+            {
+                long checkedOut = System.nanoTime();
+                PreparedStatement preparedStatement = MySQLDatabase.this.prepareStatement(connection, boundQuery);
+                long prepared = System.nanoTime();
+
+                try (ResultSet resultSet = preparedStatement.executeQuery())
+                {
+                    long executed = System.nanoTime();
+                    R result = reader.read(resultSet);
+                    long materialized = System.nanoTime() - executed;
+                    int rows = rowCount.applyAsInt(result);
+
+                    if (queryMetrics != null)
+                    {
+                        queryMetrics.record(checkedOut - start, prepared - checkedOut, executed - prepared, materialized);
+                        queryMetrics.recordResult(rows, 0);
+                    }
+
+                    MySQLDatabase.this.getSlowQueryLog().record(boundQuery, checkedOut - start, prepared - checkedOut, executed - prepared, materialized, rows);
+                    return result;
+                }
+                finally
+                {
+                    MySQLDatabase.this.releaseStatement(preparedStatement);
+                }
+            }
+            catch (Exception e)
+            {
+                if (queryMetrics != null)
+                {
+                    queryMetrics.recordError();
+                }
+
+                throw e;
+            }
         });
+    }
+
+    /**
+     * Executes a SELECT and emits the rows one at a time. The statement is only prepared
+     * when the {@link Flowable} gets subscribed and the rows are only read when they are requested.
+     *
+     * @param statementBuilder The {@link StatementBuilder}
+     * @param fetchSize        The JDBC fetch size hint, {@link Integer#MIN_VALUE} streams row by row
+     * @return A {@link Flowable} which emits every row of the result
+     */
+    @Override
+    public Flowable<Row> stream(StatementBuilder statementBuilder, int fetchSize)
+    {
+        Preconditions.checkArgument(statementBuilder.getQueryType() == QueryType.SELECT, "Only SELECT statements can be streamed");
 
-        return observable;
+        return this.stream(statementBuilder.toBoundQuery(), fetchSize);
+    }
+
+    /**
+     * Executes a compiled SELECT and emits the rows one at a time
+     *
+     * @param boundQuery The {@link BoundQuery} of the SELECT
+     * @param fetchSize  The JDBC fetch size hint, {@link Integer#MIN_VALUE} streams row by row
+     * @return A {@link Flowable} which emits every row of the result
+     */
+    @Override
+    public Flowable<Row> stream(BoundQuery boundQuery, int fetchSize)
+    {
+        Preconditions.checkArgument(boundQuery.getQuery().getQueryType() == QueryType.SELECT, "Only SELECT statements can be streamed");
+
+        return this.schedule(boundQuery.getQuery().getPriority(), Flowable.generate(() -> MySQLDatabase.this.openStream(boundQuery, fetchSize), (ResultStream resultStream, Emitter<Row> e) ->
+        {
+            Row row = resultStream.next();
+
+            if (row == null)
+            {
+                e.onComplete();
+            }
+            else
+            {
+                e.onNext(row);
+            }
+        }, ResultStream::close));
     }
 
     public String getHost()
@@ -88,4 +435,13 @@ public class MySQLDatabase extends Database
     {
         return password;
     }
+
+    /**
+     * Materializes a {@link ResultSet}
+     */
+    @FunctionalInterface
+    private interface ResultReader<R>
+    {
+        R read(ResultSet resultSet) throws SQLException;
+    }
 }
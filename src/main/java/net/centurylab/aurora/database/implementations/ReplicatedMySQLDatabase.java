@@ -0,0 +1,469 @@
+package net.centurylab.aurora.database.implementations;
+
+import com.google.common.base.Preconditions;
+import com.zaxxer.hikari.HikariDataSource;
+
+import net.centurylab.aurora.database.Query;
+import net.centurylab.aurora.database.QueryScheduler;
+import net.centurylab.aurora.database.QueryType;
+import net.centurylab.aurora.database.metrics.PoolMetrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MySQLDatabase} which sends SELECTs to read replicas and everything else to the primary.
+ * Transactions always run on the primary.
+ * <p>
+ * Every SELECT goes to the replica with the lowest score, which is its count of outstanding requests
+ * weighted by the moving average of its request latency. If a replica can't hand out a connection,
+ * the SELECT falls back to the primary and the replica is skipped for a backoff which doubles with every
+ * consecutive failure. SELECTs go to the primary while all replicas are backing off.
+ * <p>
+ * With a read-your-writes window, SELECTs on tables which were changed within the window are sent to the primary.
+ * <p>
+ * The {@link QueryScheduler} is sized to the connections of the primary and of all replicas,
+ * and {@link #warmUp()} warms up the replica pools with the hot SELECTs.
+ */
+public class ReplicatedMySQLDatabase extends MySQLDatabase
+{
+    private final List<Replica>                   replicas     = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Long> lastWrites   = new ConcurrentHashMap<>();
+    private final LongAdder                       primaryReads = new LongAdder();
+
+    private volatile long readYourWritesNanos;
+
+    public ReplicatedMySQLDatabase(String host, int port, String database, String username, String password, int minPoolSize, int maxPoolSize)
+    {
+        super(host, port, database, username, password, minPoolSize, maxPoolSize);
+    }
+
+    /**
+     * Adds a read replica which uses the database name and the credentials of the primary
+     *
+     * @param host Host of the replica
+     * @param port Port of the replica
+     * @return Current {@link ReplicatedMySQLDatabase} instance
+     */
+    public ReplicatedMySQLDatabase addReplica(String host, int port)
+    {
+        return this.addReplica(String.format(JDBC_URL, host, port, this.getDatabase()));
+    }
+
+    /**
+     * Adds a read replica which uses the credentials of the primary
+     *
+     * @param jdbcUrl The JDBC url of the replica
+     * @return Current {@link ReplicatedMySQLDatabase} instance
+     */
+    public ReplicatedMySQLDatabase addReplica(String jdbcUrl)
+    {
+        Preconditions.checkNotNull(jdbcUrl, "jdbcUrl can't be null");
+
+        HikariDataSource connectionPool = new HikariDataSource();
+        connectionPool.setDriverClassName(this.getDriverClass());
+        connectionPool.setJdbcUrl(jdbcUrl);
+        connectionPool.setUsername(this.getUsername());
+        connectionPool.setPassword(this.getPassword());
+        connectionPool.setMinimumIdle(this.getMinPoolSize());
+        connectionPool.setMaximumPoolSize(this.getMaxPoolsize());
+        connectionPool.setDataSourceProperties(this.getConnectionPoolProperties());
+        connectionPool.setConnectionTestQuery("SELECT 1");
+        connectionPool.setConnectionTimeout(this.getConnectionPool().getConnectionTimeout());
+        connectionPool.setReadOnly(true);
+        connectionPool.setRegisterMbeans(true);
+        // a replica which is down when it is first used fails the checkout instead of the creation of its pool
+        connectionPool.setInitializationFailFast(false);
+
+        this.replicas.add(new Replica(jdbcUrl, connectionPool));
+        this.updateCapacity();
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of the connection pool of the primary, the {@link QueryScheduler} keeps the capacity of the replicas
+     *
+     * @param maxPoolsize New size
+     * @return Current {@link ReplicatedMySQLDatabase} instance
+     */
+    @Override
+    public ReplicatedMySQLDatabase setMaxPoolsize(int maxPoolsize)
+    {
+        super.setMaxPoolsize(maxPoolsize);
+        this.updateCapacity();
+
+        return this;
+    }
+
+    /**
+     * Sizes the {@link QueryScheduler} to the connections of the primary and of all replicas
+     */
+    private void updateCapacity()
+    {
+        int capacity = this.getMaxPoolsize();
+
+        for (Replica replica : this.replicas)
+        {
+            capacity += replica.connectionPool.getMaximumPoolSize();
+        }
+
+        this.getQueryScheduler().setCapacity(capacity);
+    }
+
+    /**
+     * Sends SELECTs on tables which were changed within the window to the primary. A window of 0 disables this.
+     *
+     * @param window The window
+     * @param unit   The unit of the window
+     * @return Current {@link ReplicatedMySQLDatabase} instance
+     */
+    public ReplicatedMySQLDatabase setReadYourWritesWindow(long window, TimeUnit unit)
+    {
+        Preconditions.checkArgument(window > -1, "window can't be negative");
+
+        this.readYourWritesNanos = unit.toNanos(window);
+        return this;
+    }
+
+    public long getReadYourWritesWindowNanos()
+    {
+        return readYourWritesNanos;
+    }
+
+    @Override
+    protected Connection getConnection(Query query) throws SQLException
+    {
+        if (query.getQueryType() != QueryType.SELECT || this.replicas.isEmpty() || this.isRecentlyWritten(query.getTables()))
+        {
+            if (query.getQueryType() == QueryType.SELECT)
+            {
+                this.primaryReads.increment();
+            }
+
+            return this.getConnection();
+        }
+
+        Replica replica = this.selectReplica();
+
+        if (replica == null)
+        {
+            this.primaryReads.increment();
+            return this.getConnection();
+        }
+
+        try
+        {
+            return replica.getConnection();
+        }
+        catch (SQLTimeoutException e)
+        {
+            throw e;
+        }
+        catch (SQLException e)
+        {
+            this.logger.warn("Replica %s is not available, reading from the primary: %s", replica.jdbcUrl, e.getMessage());
+            this.primaryReads.increment();
+            return this.getConnection();
+        }
+    }
+
+    /**
+     * Warms up the primary with every hot query and each replica with the hot SELECTs
+     */
+    @Override
+    protected void warmUpPools() throws SQLException
+    {
+        super.warmUpPools();
+
+        List<Query> selects = new ArrayList<>();
+
+        for (Query query : this.getHotQueries())
+        {
+            if (query.getQueryType() == QueryType.SELECT)
+            {
+                selects.add(query);
+            }
+        }
+
+        for (Replica replica : this.replicas)
+        {
+            this.warmUp(replica.connectionPool, selects);
+        }
+    }
+
+    @Override
+    protected void tablesChanged(Collection<String> tables)
+    {
+        super.tablesChanged(tables);
+
+        if (this.readYourWritesNanos > 0)
+        {
+            long now = System.nanoTime();
+
+            for (String table : tables)
+            {
+                this.lastWrites.put(table, now);
+            }
+        }
+    }
+
+    private boolean isRecentlyWritten(Collection<String> tables)
+    {
+        if (this.readYourWritesNanos == 0)
+        {
+            return false;
+        }
+
+        long now = System.nanoTime();
+
+        for (String table : tables)
+        {
+            Long lastWrite = this.lastWrites.get(table);
+
+            if (lastWrite != null && now - lastWrite < this.readYourWritesNanos)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The available replica with the lowest score, null if all replicas are backing off
+     */
+    private Replica selectReplica()
+    {
+        Replica best = null;
+        double bestScore = Double.MAX_VALUE;
+        long now = System.nanoTime();
+
+        for (Replica replica : this.replicas)
+        {
+            if (!replica.isAvailable(now))
+            {
+                continue;
+            }
+
+            double score = replica.getScore();
+
+            if (score < bestScore)
+            {
+                best = replica;
+                bestScore = score;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return All read replicas
+     */
+    public List<Replica> getReplicas()
+    {
+        return Collections.unmodifiableList(this.replicas);
+    }
+
+    /**
+     * @return Count of SELECTs which were sent to the primary
+     */
+    public long getPrimaryReadCount()
+    {
+        return this.primaryReads.sum();
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+
+        for (Replica replica : this.replicas)
+        {
+            replica.connectionPool.close();
+        }
+    }
+
+    /**
+     * A read replica with its own connection pool
+     */
+    public static final class Replica
+    {
+        private static final double LATENCY_DECAY      = 0.2;
+        private static final long   BASE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private static final long   MAX_BACKOFF_NANOS  = TimeUnit.SECONDS.toNanos(30);
+
+        private final String           jdbcUrl;
+        private final HikariDataSource connectionPool;
+        private final AtomicInteger    outstanding  = new AtomicInteger();
+        private final AtomicLong       latencyNanos = new AtomicLong();
+        private final LongAdder        requests     = new LongAdder();
+        private final AtomicInteger    failures     = new AtomicInteger();
+        private final PoolMetrics      poolMetrics;
+
+        private volatile long downUntil;
+
+        private Replica(String jdbcUrl, HikariDataSource connectionPool)
+        {
+            this.jdbcUrl = jdbcUrl;
+            this.connectionPool = connectionPool;
+            this.poolMetrics = new PoolMetrics(connectionPool);
+        }
+
+        /**
+         * Checks out a connection which reports its request latency to the replica when it gets closed
+         */
+        private Connection getConnection() throws SQLException
+        {
+            long start = System.nanoTime();
+            this.outstanding.incrementAndGet();
+            this.requests.increment();
+
+            Connection connection;
+
+            try
+            {
+                connection = checkout(this.connectionPool);
+            }
+            catch (SQLException e)
+            {
+                this.outstanding.decrementAndGet();
+
+                // the deadline of the query passed, the replica itself didn't fail
+                if (!(e instanceof SQLTimeoutException))
+                {
+                    this.markDown();
+                }
+
+                throw e;
+            }
+
+            this.failures.set(0);
+            AtomicBoolean closed = new AtomicBoolean();
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+            {
+                if (method.getName().equals("close") && closed.compareAndSet(false, true))
+                {
+                    this.outstanding.decrementAndGet();
+                    this.recordLatency(System.nanoTime() - start);
+                }
+
+                try
+                {
+                    return method.invoke(connection, args);
+                }
+                catch (InvocationTargetException e)
+                {
+                    throw e.getCause();
+                }
+            });
+        }
+
+        /**
+         * Skips the replica for a backoff which doubles with every consecutive failure
+         */
+        private void markDown()
+        {
+            int failures = Math.min(this.failures.incrementAndGet(), 16);
+            this.downUntil = System.nanoTime() + Math.min(MAX_BACKOFF_NANOS, BASE_BACKOFF_NANOS << (failures - 1));
+        }
+
+        private boolean isAvailable(long now)
+        {
+            return this.failures.get() == 0 || now - this.downUntil >= 0;
+        }
+
+        private void recordLatency(long nanos)
+        {
+            this.latencyNanos.accumulateAndGet(nanos, (average, sample) -> average == 0 ? sample : (long) (average + LATENCY_DECAY * (sample - average)));
+        }
+
+        private double getScore()
+        {
+            return (this.outstanding.get() + 1) * (double) Math.max(1, this.latencyNanos.get());
+        }
+
+        public String getJdbcUrl()
+        {
+            return jdbcUrl;
+        }
+
+        public HikariDataSource getConnectionPool()
+        {
+            return connectionPool;
+        }
+
+        /**
+         * @return The {@link PoolMetrics} of the connection pool of the replica
+         */
+        public PoolMetrics getPoolMetrics()
+        {
+            return poolMetrics;
+        }
+
+        /**
+         * @return Count of requests which currently hold a connection of the replica
+         */
+        public int getOutstandingRequests()
+        {
+            return this.outstanding.get();
+        }
+
+        /**
+         * @return The exponential moving average of the request latency in nanoseconds
+         */
+        public long getAverageLatencyNanos()
+        {
+            return this.latencyNanos.get();
+        }
+
+        /**
+         * @return True unless the replica is backing off after it couldn't hand out a connection
+         */
+        public boolean isAvailable()
+        {
+            return this.isAvailable(System.nanoTime());
+        }
+
+        /**
+         * @return Count of consecutive connection failures
+         */
+        public int getFailureCount()
+        {
+            return this.failures.get();
+        }
+
+        /**
+         * @return Count of requests which were sent to the replica
+         */
+        public long getRequestCount()
+        {
+            return this.requests.sum();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Replica{jdbcUrl=" + jdbcUrl +
+                    ", outstanding=" + getOutstandingRequests() +
+                    ", averageLatencyNanos=" + getAverageLatencyNanos() +
+                    ", available=" + isAvailable() +
+                    '}';
+        }
+    }
+}
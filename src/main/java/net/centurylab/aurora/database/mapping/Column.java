@@ -0,0 +1,21 @@
+package net.centurylab.aurora.database.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps a field to a column whose name differs from the field name
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Column
+{
+    /**
+     * @return Name of the column
+     */
+    String value();
+}
@@ -0,0 +1,25 @@
+package net.centurylab.aurora.database.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose instances are stored as rows of a table. The annotation processor generates
+ * an {@link EntityMapper} named {@code <Class>Mapper} in the same package at build time.
+ * <p>
+ * The class needs a constructor without parameters. Every non static, non transient field is mapped to a column,
+ * private fields need a getter and a setter.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Entity
+{
+    /**
+     * @return Name of the table
+     */
+    String value();
+}
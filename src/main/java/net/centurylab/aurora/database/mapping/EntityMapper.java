@@ -0,0 +1,287 @@
+package net.centurylab.aurora.database.mapping;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import net.centurylab.aurora.database.Condition;
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maps the rows of a table to entities and entities to statements. The subclasses are generated at build time
+ * for every class which is annotated with {@link Entity}, they read the columns by index straight from the
+ * {@link ResultSet} into the fields and don't use reflection.
+ *
+ * @param <T> Type of the entities
+ * @see EntityMappers#get(Class)
+ */
+public abstract class EntityMapper<T>
+{
+    private final Class<T>              type;
+    private final String                table;
+    private final String                idColumn;
+    private final ImmutableList<String> columns;
+
+    /**
+     * @param type     The entity class
+     * @param table    Name of the table
+     * @param idColumn Name of the primary key column, null if the entity has no {@link Id} field
+     * @param columns  Names of all mapped columns in field order
+     */
+    protected EntityMapper(Class<T> type, String table, String idColumn, List<String> columns)
+    {
+        this.type = Preconditions.checkNotNull(type, "type can't be null");
+        this.table = Preconditions.checkNotNull(table, "table can't be null");
+        this.idColumn = idColumn;
+        this.columns = ImmutableList.copyOf(columns);
+    }
+
+    /**
+     * Reads a row into a new entity
+     *
+     * @param resultSet     The {@link ResultSet}, positioned on the row
+     * @param columnIndexes The index of every mapped column in the result, 0 if the column wasn't selected
+     * @return The entity
+     * @throws SQLException If a database access error occurs
+     * @see #resolveColumns(ResultSetMetaData)
+     */
+    public abstract T map(ResultSet resultSet, int[] columnIndexes) throws SQLException;
+
+    /**
+     * @param entity The entity
+     * @return The value of every mapped column in column order
+     */
+    public abstract Map<String, Object> toValues(T entity);
+
+    /**
+     * Looks up the indexes of the mapped columns in the result once, so every row is read by index
+     *
+     * @param metaData The {@link ResultSetMetaData} of the result
+     * @return The index of every mapped column, 0 if the column wasn't selected
+     * @throws SQLException If a database access error occurs
+     */
+    public int[] resolveColumns(ResultSetMetaData metaData) throws SQLException
+    {
+        int[] columnIndexes = new int[this.columns.size()];
+
+        for (int i = 1; i <= metaData.getColumnCount(); i++)
+        {
+            int column = this.indexOf(metaData.getColumnLabel(i));
+
+            if (column > -1 && columnIndexes[column] == 0)
+            {
+                columnIndexes[column] = i;
+            }
+        }
+
+        return columnIndexes;
+    }
+
+    private int indexOf(String columnLabel)
+    {
+        for (int i = 0; i < this.columns.size(); i++)
+        {
+            if (this.columns.get(i).equalsIgnoreCase(columnLabel))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads all remaining rows of the result
+     *
+     * @param resultSet The {@link ResultSet}
+     * @return The entities in row order
+     * @throws SQLException If a database access error occurs
+     */
+    public List<T> mapAll(ResultSet resultSet) throws SQLException
+    {
+        int[] columnIndexes = this.resolveColumns(resultSet.getMetaData());
+        List<T> entities = new ArrayList<>();
+
+        while (resultSet.next())
+        {
+            entities.add(this.map(resultSet, columnIndexes));
+        }
+
+        return entities;
+    }
+
+    /**
+     * @return A SELECT of all mapped columns of the table
+     */
+    public MySQLStatementBuilder select()
+    {
+        MySQLStatementBuilder statementBuilder = MySQLStatementBuilder.Select().addTable(this.table);
+        this.columns.forEach(statementBuilder::addField);
+
+        return statementBuilder;
+    }
+
+    /**
+     * @param entity The entity
+     * @return An INSERT of all mapped columns
+     */
+    public MySQLStatementBuilder insert(T entity)
+    {
+        return MySQLStatementBuilder.Insert(this.toValues(entity)).addTable(this.table);
+    }
+
+    /**
+     * @param entity The entity
+     * @return An UPDATE of all mapped columns of the row with the primary key of the entity
+     * @throws IllegalStateException if the entity has no {@link Id} field
+     */
+    public MySQLStatementBuilder update(T entity)
+    {
+        Preconditions.checkState(this.idColumn != null, "%s has no @Id field", this.type.getName());
+
+        Map<String, Object> values = this.toValues(entity);
+        Object id = values.remove(this.idColumn);
+
+        return MySQLStatementBuilder.Update(values).addTable(this.table).addCondition(new Condition(this.idColumn, "=", id));
+    }
+
+    /**
+     * @param entity The entity
+     * @return A DELETE of the row with the primary key of the entity
+     * @throws IllegalStateException if the entity has no {@link Id} field
+     */
+    public MySQLStatementBuilder delete(T entity)
+    {
+        Preconditions.checkState(this.idColumn != null, "%s has no @Id field", this.type.getName());
+
+        return MySQLStatementBuilder.Delete().addTable(this.table).addCondition(new Condition(this.idColumn, "=", this.toValues(entity).get(this.idColumn)));
+    }
+
+    protected static Integer getNullableInt(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        int value = resultSet.getInt(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Long getNullableLong(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        long value = resultSet.getLong(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Short getNullableShort(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        short value = resultSet.getShort(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Byte getNullableByte(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        byte value = resultSet.getByte(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Float getNullableFloat(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        float value = resultSet.getFloat(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Double getNullableDouble(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        double value = resultSet.getDouble(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Boolean getNullableBoolean(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        boolean value = resultSet.getBoolean(columnIndex);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    protected static Instant getInstant(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        Timestamp value = resultSet.getTimestamp(columnIndex);
+
+        return value == null ? null : value.toInstant();
+    }
+
+    /**
+     * Reads a {@link UUID} which is stored as BINARY(16) or as string
+     */
+    protected static UUID getUUID(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        byte[] value = resultSet.getBytes(columnIndex);
+
+        if (value == null)
+        {
+            return null;
+        }
+
+        if (value.length == 16)
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(value);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+
+        return UUID.fromString(resultSet.getString(columnIndex));
+    }
+
+    protected static <E extends Enum<E>> E getEnum(ResultSet resultSet, int columnIndex, Class<E> type) throws SQLException
+    {
+        String value = resultSet.getString(columnIndex);
+
+        return value == null ? null : Enum.valueOf(type, value);
+    }
+
+    protected static String getEnumName(Enum<?> value)
+    {
+        return value == null ? null : value.name();
+    }
+
+    public Class<T> getType()
+    {
+        return type;
+    }
+
+    public String getTable()
+    {
+        return table;
+    }
+
+    public String getIdColumn()
+    {
+        return idColumn;
+    }
+
+    public List<String> getColumns()
+    {
+        return columns;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EntityMapper{type=" + type.getName() +
+                ", table=" + table +
+                ", columns=" + columns +
+                '}';
+    }
+}
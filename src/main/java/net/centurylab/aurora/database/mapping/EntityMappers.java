@@ -0,0 +1,63 @@
+package net.centurylab.aurora.database.mapping;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the generated {@link EntityMapper} of an entity class. The mapper class is only looked up
+ * on the first call per entity, the generated mappers can also be used directly.
+ */
+public final class EntityMappers
+{
+    private static final String MAPPER_SUFFIX = "Mapper";
+
+    private static final ConcurrentHashMap<Class<?>, EntityMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private EntityMappers()
+    {
+    }
+
+    /**
+     * @param type The entity class which is annotated with {@link Entity}
+     * @param <T>  Type of the entities
+     * @return The generated {@link EntityMapper}
+     * @throws IllegalArgumentException if no mapper was generated for the class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMapper<T> get(Class<T> type)
+    {
+        Preconditions.checkNotNull(type, "type can't be null");
+
+        EntityMapper<?> mapper = MAPPERS.get(type);
+
+        return (EntityMapper<T>) (mapper != null ? mapper : MAPPERS.computeIfAbsent(type, EntityMappers::load));
+    }
+
+    private static EntityMapper<?> load(Class<?> type)
+    {
+        try
+        {
+            return (EntityMapper<?>) Class.forName(getMapperName(type), true, type.getClassLoader()).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalArgumentException(String.format("No mapper was generated for %s. Is it annotated with @Entity?", type.getName()), e);
+        }
+    }
+
+    /**
+     * Returns the name of the generated mapper class: nested class names are joined with '_'
+     * and suffixed with "Mapper", e.g. {@code com.example.PlayerMapper}
+     *
+     * @param type The entity class
+     * @return The fully qualified name of the mapper class
+     */
+    public static String getMapperName(Class<?> type)
+    {
+        String packageName = type.getPackage() == null ? "" : type.getPackage().getName();
+        String simpleName = packageName.isEmpty() ? type.getName() : type.getName().substring(packageName.length() + 1);
+
+        return (packageName.isEmpty() ? "" : packageName + '.') + simpleName.replace('$', '_') + MAPPER_SUFFIX;
+    }
+}
@@ -0,0 +1,378 @@
+package net.centurylab.aurora.database.mapping.processor;
+
+import net.centurylab.aurora.database.mapping.Column;
+import net.centurylab.aurora.database.mapping.Entity;
+import net.centurylab.aurora.database.mapping.Id;
+import net.centurylab.aurora.database.mapping.Transient;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates an {@code EntityMapper} for every class which is annotated with {@link Entity}.
+ * The generated mapper reads every column with the typed getter of the {@link java.sql.ResultSet}
+ * and assigns it to the field or its setter, so no reflection is used at runtime.
+ */
+@SupportedAnnotationTypes("net.centurylab.aurora.database.mapping.Entity")
+public class EntityProcessor extends AbstractProcessor
+{
+    private static final String MAPPER_SUFFIX = "Mapper";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment)
+    {
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(Entity.class))
+        {
+            if (element.getKind() != ElementKind.CLASS)
+            {
+                this.error(element, "@Entity can only be used on classes");
+                continue;
+            }
+
+            try
+            {
+                this.generate((TypeElement) element);
+            }
+            catch (IOException e)
+            {
+                this.error(element, "Could not write the mapper: " + e.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException
+    {
+        if (!this.checkType(type))
+        {
+            return;
+        }
+
+        String packageName = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String mapperName = this.getMapperName(type);
+        String typeName = type.getQualifiedName().toString();
+        List<MappedField> fields = new ArrayList<>();
+        String idColumn = null;
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+        {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT) || field.getAnnotation(Transient.class) != null)
+            {
+                continue;
+            }
+
+            MappedField mappedField = this.mapField(type, field);
+
+            if (mappedField == null)
+            {
+                return;
+            }
+
+            if (field.getAnnotation(Id.class) != null)
+            {
+                if (idColumn != null)
+                {
+                    this.error(field, "An entity can only have one @Id field");
+                    return;
+                }
+
+                idColumn = mappedField.column;
+            }
+
+            fields.add(mappedField);
+        }
+
+        StringBuilder source = new StringBuilder(1024);
+
+        if (!packageName.isEmpty())
+        {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        source.append("import net.centurylab.aurora.database.mapping.EntityMapper;\n\n")
+              .append("import java.sql.ResultSet;\n")
+              .append("import java.sql.SQLException;\n")
+              .append("import java.util.Arrays;\n")
+              .append("import java.util.LinkedHashMap;\n")
+              .append("import java.util.Map;\n\n")
+              .append("/**\n")
+              .append(" * Maps {@link ").append(typeName).append("} to the table ").append(type.getAnnotation(Entity.class).value()).append(".\n")
+              .append(" * Generated by ").append(EntityProcessor.class.getSimpleName()).append(", don't edit.\n")
+              .append(" */\n")
+              .append("public final class ").append(mapperName).append(" extends EntityMapper<").append(typeName).append(">\n")
+              .append("{\n")
+              .append("    public static final ").append(mapperName).append(" INSTANCE = new ").append(mapperName).append("();\n\n")
+              .append("    public ").append(mapperName).append("()\n")
+              .append("    {\n")
+              .append("        super(").append(typeName).append(".class, ").append(literal(type.getAnnotation(Entity.class).value())).append(", ")
+              .append(idColumn == null ? "null" : literal(idColumn)).append(", Arrays.asList(");
+
+        for (int i = 0; i < fields.size(); i++)
+        {
+            source.append(i == 0 ? "" : ", ").append(literal(fields.get(i).column));
+        }
+
+        source.append("));\n")
+              .append("    }\n\n")
+              .append("    @Override\n")
+              .append("    public ").append(typeName).append(" map(ResultSet resultSet, int[] columnIndexes) throws SQLException\n")
+              .append("    {\n")
+              .append("        ").append(typeName).append(" entity = new ").append(typeName).append("();\n");
+
+        for (int i = 0; i < fields.size(); i++)
+        {
+            MappedField field = fields.get(i);
+            String read = String.format(field.read, "columnIndexes[" + i + "]");
+
+            source.append('\n')
+                  .append("        if (columnIndexes[").append(i).append("] > 0)\n")
+                  .append("        {\n")
+                  .append("            ").append(field.setter == null ? "entity." + field.name + " = " + read : "entity." + field.setter + "(" + read + ")").append(";\n")
+                  .append("        }\n");
+        }
+
+        source.append('\n')
+              .append("        return entity;\n")
+              .append("    }\n\n")
+              .append("    @Override\n")
+              .append("    public Map<String, Object> toValues(").append(typeName).append(" entity)\n")
+              .append("    {\n")
+              .append("        Map<String, Object> values = new LinkedHashMap<>();\n");
+
+        for (MappedField field : fields)
+        {
+            String value = field.getter == null ? "entity." + field.name : "entity." + field.getter + "()";
+
+            source.append("        values.put(").append(literal(field.column)).append(", ").append(field.isEnum ? "getEnumName(" + value + ")" : value).append(");\n");
+        }
+
+        source.append("        return values;\n")
+              .append("    }\n")
+              .append("}\n");
+
+        String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + '.' + mapperName;
+
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(qualifiedMapperName, type).openWriter())
+        {
+            writer.write(source.toString());
+        }
+    }
+
+    /**
+     * Checks that the generated mapper can create instances of the class
+     */
+    private boolean checkType(TypeElement type)
+    {
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            this.error(type, "An entity can't be abstract");
+            return false;
+        }
+
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+        {
+            this.error(type, "A nested entity has to be static");
+            return false;
+        }
+
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+
+        for (ExecutableElement constructor : constructors)
+        {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+            {
+                return true;
+            }
+        }
+
+        this.error(type, "An entity needs a constructor without parameters which is not private");
+        return false;
+    }
+
+    private MappedField mapField(TypeElement type, VariableElement field)
+    {
+        Column column = field.getAnnotation(Column.class);
+        MappedField mappedField = new MappedField();
+        mappedField.name = field.getSimpleName().toString();
+        mappedField.column = column == null ? mappedField.name : column.value();
+        mappedField.read = this.getReadExpression(field.asType());
+        mappedField.isEnum = field.asType().getKind() == TypeKind.DECLARED && this.processingEnv.getTypeUtils().asElement(field.asType()).getKind() == ElementKind.ENUM;
+
+        if (mappedField.read == null)
+        {
+            this.error(field, "Columns of type " + field.asType() + " are not supported");
+            return null;
+        }
+
+        if (!field.getModifiers().contains(Modifier.PRIVATE))
+        {
+            if (field.getModifiers().contains(Modifier.FINAL))
+            {
+                this.error(field, "Mapped fields can't be final");
+                return null;
+            }
+
+            return mappedField;
+        }
+
+        String capitalized = Character.toUpperCase(mappedField.name.charAt(0)) + mappedField.name.substring(1);
+
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements()))
+        {
+            String methodName = method.getSimpleName().toString();
+
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC))
+            {
+                continue;
+            }
+
+            if (methodName.equals("set" + capitalized) && method.getParameters().size() == 1)
+            {
+                mappedField.setter = methodName;
+            }
+            else if ((methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized)) && method.getParameters().isEmpty())
+            {
+                mappedField.getter = methodName;
+            }
+        }
+
+        if (mappedField.setter == null || mappedField.getter == null)
+        {
+            this.error(field, "Private fields need a getter and a setter");
+            return null;
+        }
+
+        return mappedField;
+    }
+
+    /**
+     * @return A format string which reads the column, %s is replaced by the column index, or null if the type is not supported
+     */
+    private String getReadExpression(TypeMirror type)
+    {
+        switch (type.getKind())
+        {
+            case INT:
+                return "resultSet.getInt(%s)";
+            case LONG:
+                return "resultSet.getLong(%s)";
+            case SHORT:
+                return "resultSet.getShort(%s)";
+            case BYTE:
+                return "resultSet.getByte(%s)";
+            case FLOAT:
+                return "resultSet.getFloat(%s)";
+            case DOUBLE:
+                return "resultSet.getDouble(%s)";
+            case BOOLEAN:
+                return "resultSet.getBoolean(%s)";
+            case ARRAY:
+                return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE ? "resultSet.getBytes(%s)" : null;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        String typeName = this.processingEnv.getTypeUtils().erasure(type).toString();
+
+        if (this.processingEnv.getTypeUtils().asElement(type).getKind() == ElementKind.ENUM)
+        {
+            return "getEnum(resultSet, %s, " + typeName + ".class)";
+        }
+
+        switch (typeName)
+        {
+            case "java.lang.String":
+                return "resultSet.getString(%s)";
+            case "java.lang.Integer":
+                return "getNullableInt(resultSet, %s)";
+            case "java.lang.Long":
+                return "getNullableLong(resultSet, %s)";
+            case "java.lang.Short":
+                return "getNullableShort(resultSet, %s)";
+            case "java.lang.Byte":
+                return "getNullableByte(resultSet, %s)";
+            case "java.lang.Float":
+                return "getNullableFloat(resultSet, %s)";
+            case "java.lang.Double":
+                return "getNullableDouble(resultSet, %s)";
+            case "java.lang.Boolean":
+                return "getNullableBoolean(resultSet, %s)";
+            case "java.math.BigDecimal":
+                return "resultSet.getBigDecimal(%s)";
+            case "java.sql.Timestamp":
+                return "resultSet.getTimestamp(%s)";
+            case "java.sql.Date":
+                return "resultSet.getDate(%s)";
+            case "java.sql.Time":
+                return "resultSet.getTime(%s)";
+            case "java.time.Instant":
+                return "getInstant(resultSet, %s)";
+            case "java.util.UUID":
+                return "getUUID(resultSet, %s)";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Joins the names of nested classes with '_', e.g. Outer_InnerMapper
+     */
+    private String getMapperName(TypeElement type)
+    {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+
+        for (Element enclosing = type.getEnclosingElement(); enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing.getEnclosingElement())
+        {
+            name.insert(0, '_').insert(0, enclosing.getSimpleName());
+        }
+
+        return name.append(MAPPER_SUFFIX).toString();
+    }
+
+    private static String literal(String value)
+    {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private void error(Element element, String message)
+    {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static final class MappedField
+    {
+        private String  name;
+        private String  column;
+        private String  read;
+        private String  setter;
+        private String  getter;
+        private boolean isEnum;
+    }
+}
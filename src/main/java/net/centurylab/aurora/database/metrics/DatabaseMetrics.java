@@ -0,0 +1,160 @@
+package net.centurylab.aurora.database.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import net.centurylab.aurora.database.Query;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the {@link QueryMetrics} of every query template of a database and the statistics of its connection pool.
+ * The metrics are keyed by the SQL of the template, which contains no parameter values.
+ */
+public class DatabaseMetrics implements DatabaseMetricsMXBean
+{
+    private final    PoolMetrics                             pool;
+    private final    ConcurrentHashMap<String, QueryMetrics> queries = new ConcurrentHashMap<>();
+    private volatile boolean                                 enabled = true;
+    private          ObjectName                              objectName;
+
+    public DatabaseMetrics(HikariDataSource connectionPool)
+    {
+        this.pool = new PoolMetrics(connectionPool);
+    }
+
+    /**
+     * Returns the metrics of the query template. Doesn't allocate once the template is known.
+     *
+     * @param query The {@link Query}
+     * @return The {@link QueryMetrics} or null if the metrics are disabled
+     */
+    public QueryMetrics get(Query query)
+    {
+        if (!this.enabled)
+        {
+            return null;
+        }
+
+        QueryMetrics queryMetrics = this.queries.get(query.getSql());
+
+        return queryMetrics != null ? queryMetrics : this.queries.computeIfAbsent(query.getSql(), QueryMetrics::new);
+    }
+
+    /**
+     * @param sql The SQL of the query template
+     * @return The {@link QueryMetrics} or null if the template wasn't executed yet
+     */
+    public QueryMetrics get(String sql)
+    {
+        return this.queries.get(sql);
+    }
+
+    public Collection<QueryMetrics> getQueryMetrics()
+    {
+        return Collections.unmodifiableCollection(this.queries.values());
+    }
+
+    @Override
+    public List<QueryStatistics> getQueryStatistics()
+    {
+        List<QueryStatistics> statistics = new ArrayList<>(this.queries.size());
+
+        for (QueryMetrics queryMetrics : this.queries.values())
+        {
+            statistics.add(queryMetrics.getStatistics());
+        }
+
+        return statistics;
+    }
+
+    @Override
+    public int getActiveConnections()
+    {
+        return this.pool.getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections()
+    {
+        return this.pool.getIdleConnections();
+    }
+
+    @Override
+    public int getTotalConnections()
+    {
+        return this.pool.getTotalConnections();
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection()
+    {
+        return this.pool.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * @return The {@link PoolMetrics} of the connection pool
+     */
+    public PoolMetrics getPoolMetrics()
+    {
+        return pool;
+    }
+
+    /**
+     * Drops the metrics of all query templates
+     */
+    @Override
+    public void reset()
+    {
+        this.queries.clear();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public DatabaseMetrics setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Registers the metrics as MBean "net.centurylab.aurora:type=Database,name=&lt;name&gt;"
+     *
+     * @param name Name of the database
+     * @throws JMException If the MBean can't be registered
+     */
+    public synchronized void registerMBean(String name) throws JMException
+    {
+        this.unregisterMBean();
+
+        ObjectName objectName = new ObjectName("net.centurylab.aurora:type=Database,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.objectName = objectName;
+    }
+
+    public synchronized void unregisterMBean() throws JMException
+    {
+        if (this.objectName != null)
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            this.objectName = null;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DatabaseMetrics{queries=" + queries.size() +
+                ", activeConnections=" + getActiveConnections() +
+                '}';
+    }
+}
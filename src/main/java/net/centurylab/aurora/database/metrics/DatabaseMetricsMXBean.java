@@ -0,0 +1,21 @@
+package net.centurylab.aurora.database.metrics;
+
+import java.util.List;
+
+/**
+ * The JMX view of the {@link DatabaseMetrics}
+ */
+public interface DatabaseMetricsMXBean
+{
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getThreadsAwaitingConnection();
+
+    List<QueryStatistics> getQueryStatistics();
+
+    void reset();
+}
@@ -0,0 +1,157 @@
+package net.centurylab.aurora.database.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of durations in nanoseconds. Every power of two is split into 8 buckets,
+ * so the percentiles are accurate to 12.5%. Recording a value doesn't allocate.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT    = 40;
+    private static final int BUCKETS         = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder       count  = new LongAdder();
+    private final LongAdder       sum    = new LongAdder();
+    private final AtomicLong      max    = new AtomicLong();
+
+    /**
+     * @param nanos The duration in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+
+        this.counts.incrementAndGet(index(value));
+        this.count.increment();
+        this.sum.add(value);
+
+        if (value > this.max.get())
+        {
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * @return The bucket of the value
+     */
+    static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    /**
+     * @return The smallest value of the bucket
+     */
+    static long lowerBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+
+        return ((long) SUB_BUCKETS | index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * @return The average duration in nanoseconds
+     */
+    public long getMean()
+    {
+        long count = this.count.sum();
+
+        return count == 0 ? 0 : this.sum.sum() / count;
+    }
+
+    /**
+     * @return The longest duration in nanoseconds
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the duration which is not exceeded by the given fraction of all recorded durations
+     *
+     * @param percentile The fraction, e.g. 0.99
+     * @return The duration in nanoseconds
+     */
+    public long getPercentile(double percentile)
+    {
+        Preconditions.checkArgument(percentile >= 0 && percentile <= 1, "percentile has to be between 0 and 1");
+
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            total += this.counts.get(i);
+        }
+
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += this.counts.get(i);
+
+            if (seen >= target)
+            {
+                long upperBound = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+
+                return Math.min(upperBound, this.getMax());
+            }
+        }
+
+        return this.getMax();
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            this.counts.set(i, 0);
+        }
+
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LatencyHistogram{count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p99=" + getPercentile(0.99) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+package net.centurylab.aurora.database.metrics;
+
+import com.google.common.base.Preconditions;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * The statistics of a connection pool, read from the MBean which the pool registers.
+ * All statistics are 0 while the pool isn't started.
+ */
+public class PoolMetrics
+{
+    private final HikariDataSource connectionPool;
+
+    private volatile HikariPoolMXBean pool;
+
+    public PoolMetrics(HikariDataSource connectionPool)
+    {
+        this.connectionPool = connectionPool;
+    }
+
+    public int getActiveConnections()
+    {
+        HikariPoolMXBean pool = this.getPool();
+
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    public int getIdleConnections()
+    {
+        HikariPoolMXBean pool = this.getPool();
+
+        return pool == null ? 0 : pool.getIdleConnections();
+    }
+
+    public int getTotalConnections()
+    {
+        HikariPoolMXBean pool = this.getPool();
+
+        return pool == null ? 0 : pool.getTotalConnections();
+    }
+
+    public int getThreadsAwaitingConnection()
+    {
+        HikariPoolMXBean pool = this.getPool();
+
+        return pool == null ? 0 : pool.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * The pool registers its MBean when the first connection is requested, the proxy of the MBean is created once
+     * and then reused
+     *
+     * @return The proxy of the MBean, null while the pool isn't started and after it was closed
+     * @throws IllegalStateException If the pool doesn't register its MBean
+     */
+    private HikariPoolMXBean getPool()
+    {
+        Preconditions.checkState(this.connectionPool.isRegisterMbeans(), "The connection pool has to register its MBeans");
+
+        if (this.connectionPool.isClosed())
+        {
+            return null;
+        }
+
+        HikariPoolMXBean pool = this.pool;
+
+        if (pool == null && this.connectionPool.getPoolName() != null)
+        {
+            try
+            {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName poolName = new ObjectName("com.zaxxer.hikari:type=Pool (" + this.connectionPool.getPoolName() + ")");
+
+                if (server.isRegistered(poolName))
+                {
+                    pool = JMX.newMXBeanProxy(server, poolName, HikariPoolMXBean.class);
+                    this.pool = pool;
+                }
+            }
+            catch (MalformedObjectNameException e)
+            {
+                throw new IllegalStateException("The pool name " + this.connectionPool.getPoolName() + " is no valid MBean name", e);
+            }
+        }
+
+        return pool;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PoolMetrics{activeConnections=" + getActiveConnections() +
+                ", idleConnections=" + getIdleConnections() +
+                ", threadsAwaitingConnection=" + getThreadsAwaitingConnection() +
+                '}';
+    }
+}
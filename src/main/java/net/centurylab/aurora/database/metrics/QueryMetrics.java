@@ -0,0 +1,115 @@
+package net.centurylab.aurora.database.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The timings and counters of a single query template
+ */
+public class QueryMetrics
+{
+    private final String             sql;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[QueryPhase.values().length];
+    private final LongAdder          errors     = new LongAdder();
+    private final LongAdder          rows       = new LongAdder();
+    private final LongAdder          bytes      = new LongAdder();
+
+    QueryMetrics(String sql)
+    {
+        this.sql = sql;
+
+        for (QueryPhase phase : QueryPhase.values())
+        {
+            this.histograms[phase.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @param phase The {@link QueryPhase}
+     * @param nanos The duration of the phase in nanoseconds
+     */
+    public void record(QueryPhase phase, long nanos)
+    {
+        this.histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the durations of all phases of an execution in nanoseconds
+     *
+     * @param checkout    Time spent waiting for the connection
+     * @param prepare     Time spent preparing the statement
+     * @param execute     Time spent executing the statement
+     * @param materialize Time spent reading the result
+     */
+    public void record(long checkout, long prepare, long execute, long materialize)
+    {
+        this.histograms[QueryPhase.CHECKOUT.ordinal()].record(checkout);
+        this.histograms[QueryPhase.PREPARE.ordinal()].record(prepare);
+        this.histograms[QueryPhase.EXECUTE.ordinal()].record(execute);
+        this.histograms[QueryPhase.MATERIALIZE.ordinal()].record(materialize);
+    }
+
+    /**
+     * @param rows  Count of rows which were read or changed
+     * @param bytes Estimated size of the result in bytes
+     */
+    public void recordResult(long rows, long bytes)
+    {
+        this.rows.add(rows);
+        this.bytes.add(bytes);
+    }
+
+    public void recordError()
+    {
+        this.errors.increment();
+    }
+
+    public String getSql()
+    {
+        return sql;
+    }
+
+    public LatencyHistogram getHistogram(QueryPhase phase)
+    {
+        return this.histograms[phase.ordinal()];
+    }
+
+    /**
+     * @return Count of executions, the count of connection checkouts
+     */
+    public long getExecutionCount()
+    {
+        return this.histograms[QueryPhase.CHECKOUT.ordinal()].getCount();
+    }
+
+    public long getErrorCount()
+    {
+        return this.errors.sum();
+    }
+
+    public long getRowCount()
+    {
+        return this.rows.sum();
+    }
+
+    public long getByteCount()
+    {
+        return this.bytes.sum();
+    }
+
+    /**
+     * @return A snapshot of the metrics which can be exposed through JMX
+     */
+    public QueryStatistics getStatistics()
+    {
+        return new QueryStatistics(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueryMetrics{sql=" + sql +
+                ", executions=" + getExecutionCount() +
+                ", execute=" + getHistogram(QueryPhase.EXECUTE) +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package net.centurylab.aurora.database.metrics;
+
+/**
+ * The phases of a query execution which are timed separately
+ */
+public enum QueryPhase
+{
+    /**
+     * Waiting for a connection from the pool
+     */
+    CHECKOUT,
+    /**
+     * Preparing the statement and binding the parameters
+     */
+    PREPARE,
+    /**
+     * Executing the statement on the server
+     */
+    EXECUTE,
+    /**
+     * Reading the result into memory
+     */
+    MATERIALIZE
+}
@@ -0,0 +1,129 @@
+package net.centurylab.aurora.database.metrics;
+
+/**
+ * An immutable snapshot of the {@link QueryMetrics} of a query template. All durations are in nanoseconds.
+ */
+public class QueryStatistics
+{
+    private final String sql;
+    private final long   executions;
+    private final long   errors;
+    private final long   rows;
+    private final long   bytes;
+    private final long[] means = new long[QueryPhase.values().length];
+    private final long[] p99s  = new long[QueryPhase.values().length];
+    private final long[] maxes = new long[QueryPhase.values().length];
+
+    QueryStatistics(QueryMetrics queryMetrics)
+    {
+        this.sql = queryMetrics.getSql();
+        this.executions = queryMetrics.getExecutionCount();
+        this.errors = queryMetrics.getErrorCount();
+        this.rows = queryMetrics.getRowCount();
+        this.bytes = queryMetrics.getByteCount();
+
+        for (QueryPhase phase : QueryPhase.values())
+        {
+            LatencyHistogram histogram = queryMetrics.getHistogram(phase);
+
+            this.means[phase.ordinal()] = histogram.getMean();
+            this.p99s[phase.ordinal()] = histogram.getPercentile(0.99);
+            this.maxes[phase.ordinal()] = histogram.getMax();
+        }
+    }
+
+    public String getSql()
+    {
+        return sql;
+    }
+
+    public long getExecutions()
+    {
+        return executions;
+    }
+
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getCheckoutMean()
+    {
+        return this.means[QueryPhase.CHECKOUT.ordinal()];
+    }
+
+    public long getCheckoutP99()
+    {
+        return this.p99s[QueryPhase.CHECKOUT.ordinal()];
+    }
+
+    public long getCheckoutMax()
+    {
+        return this.maxes[QueryPhase.CHECKOUT.ordinal()];
+    }
+
+    public long getPrepareMean()
+    {
+        return this.means[QueryPhase.PREPARE.ordinal()];
+    }
+
+    public long getPrepareP99()
+    {
+        return this.p99s[QueryPhase.PREPARE.ordinal()];
+    }
+
+    public long getPrepareMax()
+    {
+        return this.maxes[QueryPhase.PREPARE.ordinal()];
+    }
+
+    public long getExecuteMean()
+    {
+        return this.means[QueryPhase.EXECUTE.ordinal()];
+    }
+
+    public long getExecuteP99()
+    {
+        return this.p99s[QueryPhase.EXECUTE.ordinal()];
+    }
+
+    public long getExecuteMax()
+    {
+        return this.maxes[QueryPhase.EXECUTE.ordinal()];
+    }
+
+    public long getMaterializeMean()
+    {
+        return this.means[QueryPhase.MATERIALIZE.ordinal()];
+    }
+
+    public long getMaterializeP99()
+    {
+        return this.p99s[QueryPhase.MATERIALIZE.ordinal()];
+    }
+
+    public long getMaterializeMax()
+    {
+        return this.maxes[QueryPhase.MATERIALIZE.ordinal()];
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueryStatistics{sql=" + sql +
+                ", executions=" + executions +
+                ", executeMean=" + getExecuteMean() +
+                ", executeP99=" + getExecuteP99() +
+                '}';
+    }
+}
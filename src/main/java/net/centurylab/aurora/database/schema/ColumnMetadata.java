@@ -0,0 +1,129 @@
+package net.centurylab.aurora.database.schema;
+
+import java.sql.Types;
+
+/**
+ * The definition of a table column like it is stored in information_schema.COLUMNS
+ */
+public class ColumnMetadata
+{
+    private final String  name;
+    private final String  dataType;
+    private final String  columnType;
+    private final int     jdbcType;
+    private final boolean nullable;
+
+    /**
+     * @param name       Name of the column
+     * @param dataType   The MySQL data type, e.g. "varchar"
+     * @param columnType The full MySQL column type, e.g. "int(10) unsigned"
+     * @param nullable   True if the column accepts NULL
+     */
+    public ColumnMetadata(String name, String dataType, String columnType, boolean nullable)
+    {
+        this.name = name;
+        this.dataType = dataType;
+        this.columnType = columnType;
+        this.jdbcType = toJdbcType(dataType);
+        this.nullable = nullable;
+    }
+
+    /**
+     * Maps a MySQL data type to the {@link Types} constant Connector/J uses for it
+     *
+     * @param dataType The MySQL data type
+     * @return The {@link Types} constant, {@link Types#OTHER} for unknown types
+     */
+    public static int toJdbcType(String dataType)
+    {
+        switch (dataType.toLowerCase())
+        {
+            case "bit":
+                return Types.BIT;
+            case "tinyint":
+                return Types.TINYINT;
+            case "smallint":
+                return Types.SMALLINT;
+            case "mediumint":
+            case "int":
+            case "integer":
+                return Types.INTEGER;
+            case "bigint":
+                return Types.BIGINT;
+            case "float":
+                return Types.REAL;
+            case "double":
+                return Types.DOUBLE;
+            case "decimal":
+                return Types.DECIMAL;
+            case "char":
+            case "enum":
+            case "set":
+                return Types.CHAR;
+            case "varchar":
+                return Types.VARCHAR;
+            case "tinytext":
+            case "text":
+            case "mediumtext":
+            case "longtext":
+            case "json":
+                return Types.LONGVARCHAR;
+            case "binary":
+                return Types.BINARY;
+            case "varbinary":
+                return Types.VARBINARY;
+            case "tinyblob":
+            case "blob":
+            case "mediumblob":
+            case "longblob":
+                return Types.LONGVARBINARY;
+            case "date":
+            case "year":
+                return Types.DATE;
+            case "time":
+                return Types.TIME;
+            case "datetime":
+            case "timestamp":
+                return Types.TIMESTAMP;
+            default:
+                return Types.OTHER;
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getDataType()
+    {
+        return dataType;
+    }
+
+    public String getColumnType()
+    {
+        return columnType;
+    }
+
+    /**
+     * @return The {@link Types} constant of the column
+     */
+    public int getJdbcType()
+    {
+        return jdbcType;
+    }
+
+    public boolean isNullable()
+    {
+        return nullable;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnMetadata{name=" + name +
+                ", columnType=" + columnType +
+                ", nullable=" + nullable +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package net.centurylab.aurora.database.schema;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * An index of a table with its columns in index order
+ */
+public class IndexMetadata
+{
+    private static final String PRIMARY = "PRIMARY";
+
+    private final String                name;
+    private final boolean               unique;
+    private final ImmutableList<String> columns;
+
+    public IndexMetadata(String name, boolean unique, List<String> columns)
+    {
+        this.name = name;
+        this.unique = unique;
+        this.columns = ImmutableList.copyOf(columns);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public boolean isUnique()
+    {
+        return unique;
+    }
+
+    public boolean isPrimary()
+    {
+        return PRIMARY.equals(this.name);
+    }
+
+    public List<String> getColumns()
+    {
+        return columns;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "IndexMetadata{name=" + name +
+                ", unique=" + unique +
+                ", columns=" + columns +
+                '}';
+    }
+}
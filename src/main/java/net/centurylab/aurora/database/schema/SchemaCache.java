@@ -0,0 +1,209 @@
+package net.centurylab.aurora.database.schema;
+
+import com.google.common.base.Preconditions;
+
+import net.centurylab.aurora.database.Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the metadata of the tables of the current schema. Every table is loaded once from information_schema
+ * and kept until it gets refreshed, e.g. after a migration. Every refresh starts a new generation,
+ * query templates which were described in an older generation are described again.
+ * <p>
+ * The {@link Database} describes every query template once with the cached metadata: NULL values are bound
+ * with the type of their column, values without a registered binder are converted to the column type
+ * and lookups on columns which aren't covered by an index are logged as warning.
+ */
+public class SchemaCache
+{
+    private static final String COLUMNS_SQL = "SELECT COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, IS_NULLABLE FROM information_schema.COLUMNS " +
+                                              "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION";
+    private static final String INDEXES_SQL = "SELECT INDEX_NAME, NON_UNIQUE, COLUMN_NAME FROM information_schema.STATISTICS " +
+                                              "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY INDEX_NAME, SEQ_IN_INDEX";
+
+    private final    Database                                 database;
+    private final    ConcurrentHashMap<String, TableMetadata> tables     = new ConcurrentHashMap<>();
+    private final    LongAdder                                loads      = new LongAdder();
+    private final    AtomicLong                               generation = new AtomicLong();
+    private volatile boolean                                  enabled    = true;
+
+    public SchemaCache(Database database)
+    {
+        this.database = Preconditions.checkNotNull(database, "database can't be null");
+    }
+
+    /**
+     * Returns the metadata of the table, it is loaded with a new connection if it isn't cached
+     *
+     * @param tableName Name of the table
+     * @return The {@link TableMetadata}, without columns if the table doesn't exist
+     * @throws SQLException If a database access error occurs
+     */
+    public TableMetadata getTable(String tableName) throws SQLException
+    {
+        TableMetadata table = this.tables.get(tableName);
+
+        if (table != null)
+        {
+            return table;
+        }
+
+        try (Connection connection = this.database.getConnection())
+        {
+            return this.getTable(connection, tableName);
+        }
+    }
+
+    /**
+     * Returns the metadata of the table, it is loaded with the given connection if it isn't cached
+     *
+     * @param connection The {@link Connection} which is used to load the metadata, it isn't closed
+     * @param tableName  Name of the table
+     * @return The {@link TableMetadata}, without columns if the table doesn't exist
+     * @throws SQLException If a database access error occurs
+     */
+    public TableMetadata getTable(Connection connection, String tableName) throws SQLException
+    {
+        Preconditions.checkNotNull(tableName, "tableName can't be null");
+
+        TableMetadata table = this.tables.get(tableName);
+
+        if (table == null)
+        {
+            table = this.load(connection, tableName);
+            this.tables.put(tableName, table);
+        }
+
+        return table;
+    }
+
+    /**
+     * @param tableName Name of the table
+     * @return The cached {@link TableMetadata} or null if the table wasn't loaded yet
+     */
+    public TableMetadata getCachedTable(String tableName)
+    {
+        return this.tables.get(tableName);
+    }
+
+    private TableMetadata load(Connection connection, String tableName) throws SQLException
+    {
+        List<ColumnMetadata> columns = new ArrayList<>();
+        Map<String, List<String>> indexColumns = new LinkedHashMap<>();
+        Map<String, Boolean> uniqueIndexes = new LinkedHashMap<>();
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(COLUMNS_SQL))
+        {
+            preparedStatement.setString(1, tableName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery())
+            {
+                while (resultSet.next())
+                {
+                    columns.add(new ColumnMetadata(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3), "YES".equals(resultSet.getString(4))));
+                }
+            }
+        }
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INDEXES_SQL))
+        {
+            preparedStatement.setString(1, tableName);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery())
+            {
+                while (resultSet.next())
+                {
+                    String indexName = resultSet.getString(1);
+
+                    uniqueIndexes.put(indexName, resultSet.getInt(2) == 0);
+                    indexColumns.computeIfAbsent(indexName, name -> new ArrayList<>()).add(resultSet.getString(3));
+                }
+            }
+        }
+
+        List<IndexMetadata> indexes = new ArrayList<>(indexColumns.size());
+
+        for (Map.Entry<String, List<String>> entry : indexColumns.entrySet())
+        {
+            indexes.add(new IndexMetadata(entry.getKey(), uniqueIndexes.get(entry.getKey()), entry.getValue()));
+        }
+
+        this.loads.increment();
+        return new TableMetadata(tableName, columns, indexes);
+    }
+
+    /**
+     * Drops the cached metadata of the table, it is loaded again on the next access
+     *
+     * @param tableName Name of the table
+     * @return Current {@link SchemaCache} instance
+     */
+    public SchemaCache refresh(String tableName)
+    {
+        this.tables.remove(tableName);
+        this.generation.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * Drops the cached metadata of all tables
+     *
+     * @return Current {@link SchemaCache} instance
+     */
+    public SchemaCache refresh()
+    {
+        this.tables.clear();
+        this.generation.incrementAndGet();
+        return this;
+    }
+
+    /**
+     * @return The generation of the cached metadata, it changes with every refresh
+     */
+    public long getGeneration()
+    {
+        return this.generation.get();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @param enabled False to bind the parameters without looking at the schema
+     * @return Current {@link SchemaCache} instance
+     */
+    public SchemaCache setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * @return Count of tables which were loaded from information_schema
+     */
+    public long getLoadCount()
+    {
+        return this.loads.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SchemaCache{tables=" + tables.keySet() +
+                ", loads=" + getLoadCount() +
+                '}';
+    }
+}
@@ -0,0 +1,118 @@
+package net.centurylab.aurora.database.schema;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns, the primary key and the indexes of a table
+ */
+public class TableMetadata
+{
+    private final String                               name;
+    private final ImmutableMap<String, ColumnMetadata> columns;
+    private final ImmutableList<IndexMetadata>         indexes;
+
+    /**
+     * @param name    Name of the table
+     * @param columns The columns in table order
+     * @param indexes The indexes including the primary key
+     */
+    public TableMetadata(String name, List<ColumnMetadata> columns, List<IndexMetadata> indexes)
+    {
+        ImmutableMap.Builder<String, ColumnMetadata> builder = ImmutableMap.builder();
+
+        for (ColumnMetadata column : columns)
+        {
+            builder.put(column.getName().toLowerCase(), column);
+        }
+
+        this.name = name;
+        this.columns = builder.build();
+        this.indexes = ImmutableList.copyOf(indexes);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @param columnName Name of the column, case insensitive like in MySQL
+     * @return The column or null if the table has no such column
+     */
+    public ColumnMetadata getColumn(String columnName)
+    {
+        return this.columns.get(columnName.toLowerCase());
+    }
+
+    /**
+     * @return All columns in table order
+     */
+    public Collection<ColumnMetadata> getColumns()
+    {
+        return columns.values();
+    }
+
+    public List<IndexMetadata> getIndexes()
+    {
+        return indexes;
+    }
+
+    /**
+     * @return The columns of the primary key, empty if the table has none
+     */
+    public List<String> getPrimaryKey()
+    {
+        for (IndexMetadata index : this.indexes)
+        {
+            if (index.isPrimary())
+            {
+                return index.getColumns();
+            }
+        }
+
+        return ImmutableList.of();
+    }
+
+    /**
+     * Checks whether MySQL can use an index to look up the column. This is the case if the column is part of an index
+     * and all columns in front of it in the index are looked up as well.
+     *
+     * @param columnName   Name of the column
+     * @param lookupFields All columns which are used in the conditions and the ordering
+     * @return True if an index covers the column
+     */
+    public boolean isIndexed(String columnName, Collection<String> lookupFields)
+    {
+        for (IndexMetadata index : this.indexes)
+        {
+            for (String column : index.getColumns())
+            {
+                if (column.equalsIgnoreCase(columnName))
+                {
+                    return true;
+                }
+
+                if (lookupFields.stream().noneMatch(column::equalsIgnoreCase))
+                {
+                    break;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TableMetadata{name=" + name +
+                ", columns=" + columns.size() +
+                ", indexes=" + indexes +
+                '}';
+    }
+}
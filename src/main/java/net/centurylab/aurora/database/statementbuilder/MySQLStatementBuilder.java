@@ -3,18 +3,29 @@ package net.centurylab.aurora.database.statementbuilder;
 import com.google.common.base.Preconditions;
 
 import net.centurylab.aurora.database.*;
+import net.centurylab.aurora.database.schema.SchemaCache;
+import net.centurylab.aurora.database.schema.TableMetadata;
+import net.centurylab.aurora.logging.LogManager;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static net.centurylab.aurora.database.QueryType.DELETE;
 
 public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilder>
 {
+    private boolean increment;
+
     private MySQLStatementBuilder(QueryType queryType)
     {
         this(queryType, null);
@@ -45,11 +56,36 @@ public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilde
         return new MySQLStatementBuilder(QueryType.UPDATE, values);
     }
 
+    /**
+     * Creates an UPDATE which adds the given deltas to the current values: {@code SET `c` = `c` + ?}
+     *
+     * @param deltas The deltas per column
+     * @return A new {@link MySQLStatementBuilder}
+     */
+    public static MySQLStatementBuilder Increment(Map<String, Object> deltas)
+    {
+        Preconditions.checkNotNull(deltas, "deltas can't be null");
+
+        MySQLStatementBuilder statementBuilder = new MySQLStatementBuilder(QueryType.UPDATE, deltas);
+        statementBuilder.increment = true;
+        return statementBuilder;
+    }
+
     public static MySQLStatementBuilder Delete()
     {
         return new MySQLStatementBuilder(DELETE);
     }
 
+    /**
+     * Prepares a DESCRIBE of the table on a new connection
+     *
+     * @param tableName Name of the table
+     * @param database  The {@link Database}
+     * @return The {@link PreparedStatement} or null if it couldn't be prepared
+     * @deprecated The connection of the statement is never returned to the pool,
+     * use {@link #getTableMetadata(String, Database)} which reads the cached metadata of the table
+     */
+    @Deprecated
     public static PreparedStatement describeTable(String tableName, Database database)
     {
         try
@@ -59,12 +95,26 @@ public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilde
         }
         catch (SQLException e)
         {
-            e.printStackTrace();
+            LogManager.getLogger(MySQLStatementBuilder.class).error(e, "Could not describe the table %s", tableName);
         }
 
         return null;
     }
 
+    /**
+     * Returns the cached metadata of the table, it is loaded from information_schema on the first call
+     *
+     * @param tableName Name of the table
+     * @param database  The {@link Database}
+     * @return The {@link TableMetadata}, without columns if the table doesn't exist
+     * @throws SQLException If the metadata couldn't be loaded
+     * @see SchemaCache#getTable(String)
+     */
+    public static TableMetadata getTableMetadata(String tableName, Database database) throws SQLException
+    {
+        return database.getSchemaCache().getTable(tableName);
+    }
+
     /**
      * Adds a field to the query
      *
@@ -111,10 +161,47 @@ public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilde
         this.offset = 0;
         this.useOrdering = false;
         this.returnGeneratedKeys = false;
+        this.priority = QueryPriority.NORMAL;
+        this.timeoutMillis = 0;
+        this.increment = false;
+        this.seekValues = null;
+        this.rangeField = null;
+        this.rangeFrom = null;
+        this.rangeTo = null;
 
         return this;
     }
 
+    /**
+     * Creates an independent builder with the same state, the {@link Condition}s and {@link OrderField}s are shared
+     *
+     * @return A new {@link MySQLStatementBuilder} instance
+     */
+    @Override
+    public MySQLStatementBuilder copy()
+    {
+        MySQLStatementBuilder copy = new MySQLStatementBuilder(this.queryType, this.values == null ? null : new LinkedHashMap<>(this.values));
+        copy.useConditions = this.useConditions;
+        copy.conditions.addAll(this.conditions);
+        copy.fields.addAll(this.fields);
+        copy.tables.addAll(this.tables);
+        copy.orderFields.addAll(this.orderFields);
+        copy.useLimits = this.useLimits;
+        copy.limit = this.limit;
+        copy.offset = this.offset;
+        copy.useOrdering = this.useOrdering;
+        copy.returnGeneratedKeys = this.returnGeneratedKeys;
+        copy.priority = this.priority;
+        copy.timeoutMillis = this.timeoutMillis;
+        copy.increment = this.increment;
+        copy.seekValues = this.seekValues == null ? null : this.seekValues.clone();
+        copy.rangeField = this.rangeField;
+        copy.rangeFrom = this.rangeFrom;
+        copy.rangeTo = this.rangeTo;
+
+        return copy;
+    }
+
     /**
      * Set to true if you want to use conditions for the next query
      *
@@ -198,6 +285,39 @@ public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilde
         return this;
     }
 
+    /**
+     * Continues the result after the row with the given values of the {@link OrderField}s
+     *
+     * @param values The values of the last row in the order of the {@link OrderField}s, null to start at the first row
+     * @return Current {@link StatementBuilder} instance
+     * @throws IllegalArgumentException if the count of values doesn't match the count of {@link OrderField}s
+     */
+    @Override
+    public MySQLStatementBuilder seek(Object... values)
+    {
+        Preconditions.checkArgument(values == null || values.length == this.orderFields.size(), "seek needs one value per order field");
+
+        this.seekValues = values == null ? null : values.clone();
+        return this;
+    }
+
+    /**
+     * Restricts the result to the rows whose field is in the half-open range {@code [from, to)}
+     *
+     * @param field Name of the field, null to remove the range
+     * @param from  The lowest value which is included
+     * @param to    The lowest value which is excluded
+     * @return Current {@link StatementBuilder} instance
+     */
+    @Override
+    public MySQLStatementBuilder range(String field, Object from, Object to)
+    {
+        this.rangeField = field;
+        this.rangeFrom = from;
+        this.rangeTo = to;
+        return this;
+    }
+
     /**
      * Adds a new orderfield
      *
@@ -261,6 +381,39 @@ public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilde
         return this;
     }
 
+    /**
+     * Sets the priority class in which the query is queued before it gets a connection
+     *
+     * @param priority The {@link QueryPriority}
+     * @return Current {@link StatementBuilder} instance
+     */
+    @Override
+    public MySQLStatementBuilder setPriority(QueryPriority priority)
+    {
+        Preconditions.checkNotNull(priority, "priority can't be null");
+
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Sets the time after which the query fails with a {@link java.sql.SQLTimeoutException}, including the time
+     * it waits in the queue for a connection
+     *
+     * @param timeout The timeout, 0 to use the default timeout of the database
+     * @param unit    The unit of the timeout
+     * @return Current {@link StatementBuilder} instance
+     */
+    @Override
+    public MySQLStatementBuilder setQueryTimeout(long timeout, TimeUnit unit)
+    {
+        Preconditions.checkArgument(timeout > -1, "timeout can't be negative");
+        Preconditions.checkNotNull(unit, "unit can't be null");
+
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
     /**
      * Creates a {@link PreparedStatement} with the current query
      *
@@ -268,368 +421,320 @@ public class MySQLStatementBuilder extends StatementBuilder<MySQLStatementBuilde
      */
     @Override
     public PreparedStatement build(Database database)
+    {
+        BoundQuery boundQuery = this.toBoundQuery();
+
+        try
+        {
+            return boundQuery.prepare(database.getConnection());
+        }
+        catch (SQLException e)
+        {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Compiles the current query into an immutable {@link Query} template
+     *
+     * @return The compiled {@link Query}
+     */
+    @Override
+    public Query compile()
     {
         Preconditions.checkArgument(tables.size() != 0, "tables can't be empty");
 
+        List<String> parameterNames = new ArrayList<>();
+        this.currentSql = new StringBuilder(64);
+
         switch (this.queryType)
         {
             case SELECT:
-                this.currentSql = new StringBuilder("SELECT ");
+                this.currentSql.append("SELECT ");
 
-                if (fields.size() == 1)
+                if (fields.size() == 1 && fields.get(0).equals("*"))
                 {
-                    if (fields.get(0).equalsIgnoreCase("*"))
-                    {
-                        this.currentSql.append(String.format("%s", fields.get(0)));
-                    }
-                    else
-                    {
-                        this.currentSql.append(String.format("`%s`", fields.get(0)));
-                    }
+                    this.currentSql.append('*');
                 }
                 else
                 {
-                    for (int i = 0; i < fields.size(); i++)
-                    {
-                        if (i == fields.size() - 1)
-                        {
-                            this.currentSql.append(String.format("`%s`", fields.get(i)));
-                        }
-                        else
-                        {
-                            this.currentSql.append(String.format("`%s`, ", fields.get(i)));
-                        }
-                    }
+                    this.appendIdentifiers(this.fields);
                 }
 
                 this.currentSql.append(" FROM ");
+                this.appendIdentifiers(this.tables);
 
-                if (tables.size() == 1)
+                if (this.useConditions)
                 {
-                    this.currentSql.append("`").append(tables.get(0)).append("`");
+                    this.buildConditions(parameterNames, this.seekValues != null || this.rangeField != null);
                 }
-                else
+
+                if (this.rangeField != null)
                 {
-                    for (int i = 0; i < tables.size(); i++)
-                    {
-                        if (i == tables.size() - 1)
-                        {
-                            this.currentSql.append(String.format("`%s`", tables.get(i)));
-                        }
-                        else
-                        {
-                            this.currentSql.append(String.format("`%s`, ", tables.get(i)));
-                        }
-                    }
+                    this.currentSql.append(this.useConditions ? " AND " : " WHERE ");
+                    this.appendIdentifier(this.rangeField);
+                    this.currentSql.append(" >= ? AND ");
+                    this.appendIdentifier(this.rangeField);
+                    this.currentSql.append(" < ?");
+                    parameterNames.add(this.rangeField);
+                    parameterNames.add(this.rangeField);
                 }
 
-                if (this.useConditions)
+                if (this.seekValues != null)
                 {
-                    this.buildConditions();
+                    this.buildSeekCondition(parameterNames);
                 }
 
-                if (this.useOrdering)
+                if (this.useOrdering && this.orderFields.size() > 0)
                 {
-                    if (this.orderFields.size() > 0)
+                    this.currentSql.append(" ORDER BY ");
+
+                    for (int i = 0; i < this.orderFields.size(); i++)
                     {
-                        if (this.orderFields.size() == 1)
-                        {
-                            this.currentSql.append(String.format(" ORDER BY `%s` %s", this.orderFields.get(0).getFieldName(), this.orderFields.get(0).getOrderType().getValue()));
-                        }
-                        else
+                        OrderField orderField = this.orderFields.get(i);
+
+                        if (i > 0)
                         {
-                            this.currentSql.append(" ORDER BY ");
-
-                            for (int i = 0; i < this.orderFields.size(); i++)
-                            {
-                                OrderField currentOrderField = orderFields.get(i);
-                                if (i == orderFields.size() - 1)
-                                {
-                                    this.currentSql.append(String.format("`%s` %s", currentOrderField.getFieldName(), currentOrderField.getOrderType().getValue()));
-                                }
-                                else
-                                {
-                                    this.currentSql.append(String.format("`%s` %s, ", currentOrderField.getFieldName(), currentOrderField.getOrderType().getValue()));
-                                }
-                            }
+                            this.currentSql.append(", ");
                         }
+
+                        this.appendIdentifier(orderField.getFieldName());
+                        this.currentSql.append(' ').append(orderField.getOrderType().getValue());
                     }
                 }
 
                 if (this.useLimits)
                 {
-                    this.currentSql.append(String.format(" LIMIT %d", this.limit));
+                    this.currentSql.append(" LIMIT ").append(this.limit);
 
                     if (this.offset > 0)
                     {
-                        this.currentSql.append(String.format(", %d", this.offset));
+                        this.currentSql.append(" OFFSET ").append(this.offset);
                     }
                 }
                 break;
             case INSERT:
-                this.currentSql = new StringBuilder(String.format("INSERT INTO `%s` (", this.tables.get(0)));
-                for (int i = 0; i < values.keySet().size(); i++)
-                {
-                    if (i == values.keySet().size() - 1)
-                    {
-                        this.currentSql.append(String.format("`%s`", values.keySet().toArray()[i]));
-                    }
-                    else
-                    {
-                        this.currentSql.append(String.format("`%s`, ", values.keySet().toArray()[i]));
-                    }
-                }
+                this.currentSql.append("INSERT INTO ");
+                this.appendIdentifier(this.tables.get(0));
+                this.currentSql.append(" (");
+                this.appendIdentifiers(this.values.keySet());
                 this.currentSql.append(") VALUES (");
 
-                for (int i = 0; i < values.values().size(); i++)
+                for (int i = 0; i < this.values.size(); i++)
                 {
-                    if (i == values.values().size() - 1)
-                    {
-                        this.currentSql.append("?");
-                    }
-                    else
-                    {
-                        this.currentSql.append("?, ");
-                    }
+                    this.currentSql.append(i == 0 ? "?" : ", ?");
                 }
 
-                this.currentSql.append(")");
-
+                this.currentSql.append(')');
+                parameterNames.addAll(this.values.keySet());
                 break;
             case DELETE:
-                this.currentSql = new StringBuilder(String.format("DELETE FROM `%s`", tables.get(0)));
+                this.currentSql.append("DELETE FROM ");
+                this.appendIdentifier(this.tables.get(0));
 
                 if (this.useConditions)
                 {
-                    this.buildConditions();
+                    this.buildConditions(parameterNames, false);
                 }
                 if (this.useLimits)
                 {
-                    this.currentSql.append(String.format(" LIMIT %d", this.limit));
+                    this.currentSql.append(" LIMIT ").append(this.limit);
                 }
                 break;
             case UPDATE:
-                this.currentSql = new StringBuilder(String.format("UPDATE `%s` SET ", tables.get(0)));
-                for (int i = 0; i < values.keySet().size(); i++)
+                this.currentSql.append("UPDATE ");
+                this.appendIdentifier(this.tables.get(0));
+                this.currentSql.append(" SET ");
+
+                int index = 0;
+
+                for (String field : this.values.keySet())
                 {
-                    if (i == values.keySet().size() - 1)
+                    if (index++ > 0)
                     {
-                        this.currentSql.append(String.format("`%s` = ?", values.keySet().toArray()[i]));
+                        this.currentSql.append(", ");
                     }
-                    else
+
+                    this.appendIdentifier(field);
+                    this.currentSql.append(" = ");
+
+                    if (this.increment)
                     {
-                        this.currentSql.append(String.format("`%s` = ?, ", values.keySet().toArray()[i]));
+                        this.appendIdentifier(field);
+                        this.currentSql.append(" + ");
                     }
+
+                    this.currentSql.append('?');
+                    parameterNames.add(field);
                 }
+
                 if (this.useConditions)
                 {
-                    this.buildConditions();
+                    this.buildConditions(parameterNames, false);
                 }
                 if (this.useLimits)
                 {
-                    this.currentSql.append(String.format(" LIMIT %d", this.limit));
+                    this.currentSql.append(" LIMIT ").append(this.limit);
                 }
                 break;
         }
 
-        PreparedStatement statement = null;
-        try
+        Query query = new Query(this.currentSql.toString(), this.queryType, this.returnGeneratedKeys, this.tables, parameterNames, this.priority, this.getLookupFields());
+
+        return this.timeoutMillis > 0 ? query.withTimeout(this.timeoutMillis, TimeUnit.MILLISECONDS) : query;
+    }
+
+    /**
+     * @return The fields of the conditions, the range and the ordering, which should be covered by an index
+     */
+    private List<String> getLookupFields()
+    {
+        if (this.queryType == QueryType.INSERT)
         {
-            Connection connection = database.getConnection();
+            return Collections.emptyList();
+        }
+
+        Set<String> lookupFields = new LinkedHashSet<>();
 
-            if (this.returnGeneratedKeys)
+        if (this.useConditions)
+        {
+            this.conditions.forEach(condition -> lookupFields.add(condition.getField()));
+        }
+
+        if (this.queryType == QueryType.SELECT)
+        {
+            if (this.rangeField != null)
             {
-                statement = connection.prepareStatement(this.currentSql.toString(), Statement.RETURN_GENERATED_KEYS);
+                lookupFields.add(this.rangeField);
             }
-            else
+
+            if (this.useOrdering)
             {
-                statement = connection.prepareStatement(this.currentSql.toString());
+                this.orderFields.forEach(orderField -> lookupFields.add(orderField.getFieldName()));
             }
+        }
 
-            if (this.currentSql.toString().contains("?"))
-            {
-                if (useConditions && values != null)
-                {
-                    int index = 0;
+        return new ArrayList<>(lookupFields);
+    }
 
-                    // TODO: Use serializer
+    private void appendIdentifier(String identifier)
+    {
+        this.currentSql.append('`').append(identifier).append('`');
+    }
 
-                    for (; index < values.values().size(); index++)
-                    {
-                        Object o = values.values().toArray()[index];
+    private void appendIdentifiers(Iterable<String> identifiers)
+    {
+        boolean first = true;
 
-                        if (o instanceof String)
-                        {
-                            statement.setString(index + 1, o.toString());
-                        }
-                        else if (o instanceof UUID)
-                        {
-                            statement.setString(index + 1, o.toString());
-                        }
-                        else if (o instanceof Integer)
-                        {
-                            statement.setInt(index + 1, (Integer) o);
-                        }
-                        else if (o instanceof Float)
-                        {
-                            statement.setFloat(index + 1, (Float) o);
-                        }
-                        else if (o instanceof Long)
-                        {
-                            statement.setLong(index + 1, (Long) o);
-                        }
-                        else if (o instanceof Short)
-                        {
-                            statement.setShort(index + 1, (Short) o);
-                        }
-                        else
-                        {
-                            statement.setObject(index + 1, o);
-                        }
-                    }
+        for (String identifier : identifiers)
+        {
+            if (!first)
+            {
+                this.currentSql.append(", ");
+            }
 
-                    index += 1;
+            this.appendIdentifier(identifier);
+            first = false;
+        }
+    }
 
-                    for (int i = 0; i < conditions.size(); i++)
-                    {
-                        Condition condition = conditions.get(i);
+    /**
+     * Builds all conditions for the query
+     *
+     * @param parameterNames Receives the field name of every condition placeholder
+     * @param grouped        True to put the conditions in parentheses, so further conditions can be added with AND
+     */
+    private void buildConditions(List<String> parameterNames, boolean grouped)
+    {
+        Preconditions.checkArgument(this.useConditions, "You need to use conditions before you can build them");
+        Preconditions.checkArgument(this.conditions.size() != 0, "You need to add conditions");
+        this.conditions.forEach(Preconditions::checkNotNull);
 
-                        if (condition.getValue() instanceof String)
-                        {
-                            statement.setString(i + index, condition.getValue().toString());
-                        }
-                        else if (condition.getValue() instanceof UUID)
-                        {
-                            statement.setString(i + index, condition.getValue().toString());
-                        }
-                        else if (condition.getValue() instanceof Integer)
-                        {
-                            statement.setInt(i + index, (Integer) condition.getValue());
-                        }
-                        else if (condition.getValue() instanceof Float)
-                        {
-                            statement.setFloat(i + index, (Float) condition.getValue());
-                        }
-                        else if (condition.getValue() instanceof Long)
-                        {
-                            statement.setLong(i + index, (Long) condition.getValue());
-                        }
-                        else if (condition.getValue() instanceof Short)
-                        {
-                            statement.setShort(i + index, (Short) condition.getValue());
-                        }
-                        else
-                        {
-                            statement.setObject(i + index, condition.getValue());
-                        }
-                    }
-                }
-                else if (values != null && values.size() > 0)
-                {
-                    for (int i = 0; i < values.values().size(); i++)
-                    {
-                        Object o = values.values().toArray()[i];
+        this.currentSql.append(grouped ? " WHERE (" : " WHERE ");
 
-                        // use serializer
+        for (Condition condition : this.conditions)
+        {
+            if (!condition.isFirstCondition())
+            {
+                this.currentSql.append(' ').append(condition.getClause()).append(' ');
+            }
 
-                        if (o instanceof String)
-                        {
-                            statement.setString(i + 1, o.toString());
-                        }
-                        else if (o instanceof UUID)
-                        {
-                            statement.setString(i + 1, o.toString());
-                        }
-                        else if (o instanceof Integer)
-                        {
-                            statement.setInt(i + 1, (Integer) o);
-                        }
-                        else if (o instanceof Float)
-                        {
-                            statement.setFloat(i + 1, (Float) o);
-                        }
-                        else if (o instanceof Long)
-                        {
-                            statement.setLong(i + 1, (Long) o);
-                        }
-                        else if (o instanceof Short)
-                        {
-                            statement.setShort(i + 1, (Short) o);
-                        }
-                        else
-                        {
-                            statement.setObject(i + 1, o);
-                        }
-                    }
-                }
-                else if (useConditions && conditions.size() > 0)
-                {
-                    for (int i = 0; i < conditions.size(); i++)
-                    {
-                        Condition condition = conditions.get(i);
+            this.appendIdentifier(condition.getField());
+            this.currentSql.append(' ').append(condition.getOperator());
 
-                        if (condition.getValue() instanceof String)
-                        {
-                            statement.setString(i + 1, condition.getValue().toString());
-                        }
-                        else if (condition.getValue() instanceof UUID)
-                        {
-                            statement.setString(i + 1, condition.getValue().toString());
-                        }
-                        else if (condition.getValue() instanceof Integer)
-                        {
-                            statement.setInt(i + 1, (Integer) condition.getValue());
-                        }
-                        else if (condition.getValue() instanceof Float)
-                        {
-                            statement.setFloat(i + 1, (Float) condition.getValue());
-                        }
-                        else if (condition.getValue() instanceof Long)
-                        {
-                            statement.setLong(i + 1, (Long) condition.getValue());
-                        }
-                        else if (condition.getValue() instanceof Short)
-                        {
-                            statement.setShort(i + 1, (Short) condition.getValue());
-                        }
-                        else
-                        {
-                            statement.setObject(i + 1, condition.getValue());
-                        }
-                    }
+            if (condition.getValue() instanceof Collection)
+            {
+                Collection<?> values = (Collection<?>) condition.getValue();
+                Preconditions.checkArgument(!values.isEmpty(), "The values of an IN condition can't be empty");
+
+                for (int i = 0; i < values.size(); i++)
+                {
+                    this.currentSql.append(i == 0 ? " (?" : ", ?");
+                    parameterNames.add(condition.getField());
                 }
+
+                this.currentSql.append(')');
+            }
+            else
+            {
+                this.currentSql.append(" ?");
+                parameterNames.add(condition.getField());
             }
         }
-        catch (SQLException e)
+
+        if (grouped)
         {
-            e.printStackTrace();
+            this.currentSql.append(')');
         }
-
-        return statement;
-
     }
 
     /**
-     * Builds all conditions for the query
+     * Builds the row comparison which continues the result after the seek values: {@code (`a`, `b`) > (?, ?)}
+     *
+     * @param parameterNames Receives the field name of every seek placeholder
      */
-    private void buildConditions()
+    private void buildSeekCondition(List<String> parameterNames)
     {
-        Preconditions.checkArgument(this.useConditions, "You need to use conditions before you can build them");
-        Preconditions.checkArgument(this.conditions.size() != 0, "You need to add conditions");
-        this.conditions.forEach(Preconditions::checkNotNull);
+        Preconditions.checkArgument(this.useOrdering && this.orderFields.size() == this.seekValues.length, "seek needs one value per order field");
 
-        this.currentSql.append(" WHERE ");
+        OrderType orderType = this.orderFields.get(0).getOrderType();
 
-        for (Condition condition : this.conditions)
+        for (OrderField orderField : this.orderFields)
         {
-            if (condition.isFirstCondition())
-            {
-                this.currentSql.append(String.format("`%s` %s ?", condition.getField(), condition.getOperator()));
-            }
-            else
+            Preconditions.checkArgument(orderField.getOrderType() == orderType, "All order fields have to be ordered in the same direction to seek");
+            parameterNames.add(orderField.getFieldName());
+        }
+
+        this.currentSql.append(this.useConditions || this.rangeField != null ? " AND " : " WHERE ");
+        boolean rowComparison = this.orderFields.size() > 1;
+
+        if (rowComparison)
+        {
+            this.currentSql.append('(');
+        }
+
+        for (int i = 0; i < this.orderFields.size(); i++)
+        {
+            if (i > 0)
             {
-                this.currentSql.append(String.format("%s `%s` %s ?", condition.getClause(), condition.getField(), condition.getOperator()));
+                this.currentSql.append(", ");
             }
+
+            this.appendIdentifier(this.orderFields.get(i).getFieldName());
+        }
+
+        this.currentSql.append(rowComparison ? ") " : " ").append(orderType == OrderType.DESCENDING ? '<' : '>').append(rowComparison ? " (" : " ");
+
+        for (int i = 0; i < this.orderFields.size(); i++)
+        {
+            this.currentSql.append(i == 0 ? "?" : ", ?");
+        }
+
+        if (rowComparison)
+        {
+            this.currentSql.append(')');
         }
     }
 }
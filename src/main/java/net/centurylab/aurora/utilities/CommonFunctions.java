@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Set;
 
 public class CommonFunctions
@@ -30,6 +31,16 @@ public class CommonFunctions
         return result;
     }
 
+    /**
+     * Counts the rows by walking the whole {@link ResultSet} and rewinds it afterwards.
+     * This needs a scrollable cursor, so the driver has to buffer the complete result.
+     *
+     * @param resultSet A scrollable {@link ResultSet}
+     * @return The count of rows
+     * @throws SQLException If a database access error occurs
+     * @deprecated Read the result in a single pass instead
+     */
+    @Deprecated
     public static int getRowCount(ResultSet resultSet) throws SQLException
     {
         if (resultSet.isClosed())
@@ -48,4 +59,30 @@ public class CommonFunctions
 
         return rows;
     }
+
+    /**
+     * Reads a numeric column of a forward only {@link ResultSet} in a single pass
+     *
+     * @param resultSet   The {@link ResultSet}, it is read until the end
+     * @param columnIndex Index of the column, starting at 1
+     * @return All values of the column
+     * @throws SQLException If a database access error occurs
+     */
+    public static long[] getLongColumn(ResultSet resultSet, int columnIndex) throws SQLException
+    {
+        long[] values = new long[8];
+        int count = 0;
+
+        while (resultSet.next())
+        {
+            if (count == values.length)
+            {
+                values = Arrays.copyOf(values, count << 1);
+            }
+
+            values[count++] = resultSet.getLong(columnIndex);
+        }
+
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
 }
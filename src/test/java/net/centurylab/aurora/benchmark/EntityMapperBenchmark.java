@@ -0,0 +1,112 @@
+package net.centurylab.aurora.benchmark;
+
+import net.centurylab.aurora.database.InMemoryResultSet;
+import net.centurylab.aurora.database.mapping.Entity;
+import net.centurylab.aurora.database.mapping.EntityMapper;
+import net.centurylab.aurora.database.mapping.EntityMappers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the generated {@link EntityMapper} with a mapper which assigns the fields through reflection.
+ * Both read the same rows from memory, so the difference is the cost of the field access and the boxing.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityMapperBenchmark
+{
+    private static final String[] COLUMNS = {"id", "name", "email", "created", "balance", "active"};
+
+    @Param({"10000", "100000"})
+    private int rowCount;
+
+    private Object[][]           rows;
+    private EntityMapper<Player> mapper;
+
+    @Setup
+    public void setUp()
+    {
+        this.rows = new Object[this.rowCount][];
+        this.mapper = EntityMappers.get(Player.class);
+
+        for (int i = 0; i < this.rowCount; i++)
+        {
+            this.rows[i] = new Object[]{(long) i, "player" + i, "player" + i + "@example.com", 1_500_000_000_000L + i, i * 0.5D, i % 2 == 0};
+        }
+    }
+
+    @Benchmark
+    public List<Player> generated() throws Exception
+    {
+        return this.mapper.mapAll(InMemoryResultSet.create(COLUMNS, this.rows));
+    }
+
+    /**
+     * Looks up the fields by column label once per result and sets them with {@link Field#set(Object, Object)}
+     */
+    @Benchmark
+    public List<Player> reflection() throws Exception
+    {
+        ResultSet resultSet = InMemoryResultSet.create(COLUMNS, this.rows);
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Constructor<Player> constructor = Player.class.getDeclaredConstructor();
+        Field[] fields = new Field[metaData.getColumnCount()];
+
+        for (int i = 0; i < fields.length; i++)
+        {
+            fields[i] = Player.class.getDeclaredField(metaData.getColumnLabel(i + 1));
+            fields[i].setAccessible(true);
+        }
+
+        List<Player> entities = new ArrayList<>();
+
+        while (resultSet.next())
+        {
+            Player entity = constructor.newInstance();
+
+            for (int i = 0; i < fields.length; i++)
+            {
+                fields[i].set(entity, resultSet.getObject(i + 1));
+            }
+
+            entities.add(entity);
+        }
+
+        return entities;
+    }
+
+    @Entity("players")
+    public static class Player
+    {
+        long    id;
+        String  name;
+        String  email;
+        long    created;
+        double  balance;
+        boolean active;
+    }
+}
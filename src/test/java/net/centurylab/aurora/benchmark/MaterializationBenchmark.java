@@ -0,0 +1,97 @@
+package net.centurylab.aurora.benchmark;
+
+import net.centurylab.aurora.database.InMemoryResultSet;
+import net.centurylab.aurora.database.ParsedResultSet;
+import net.centurylab.aurora.database.QueryType;
+import net.centurylab.aurora.utilities.CommonFunctions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the materialization of a large SELECT before and after the single pass rewrite.
+ * The rows come from memory, so only the client-side cost is measured and not the buffering
+ * of the whole result which the scrollable cursor forced on the driver.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Pbenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MaterializationBenchmark
+{
+    private static final String[] COLUMNS = {"id", "name", "email", "created", "balance", "active"};
+
+    @Param({"10000", "100000"})
+    private int rowCount;
+
+    private Object[][] rows;
+
+    @Setup
+    public void setUp()
+    {
+        this.rows = new Object[this.rowCount][];
+
+        for (int i = 0; i < this.rowCount; i++)
+        {
+            this.rows[i] = new Object[]{(long) i, "player" + i, "player" + i + "@example.com", 1_500_000_000_000L + i, i * 0.5D, i % 2 == 0};
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, String>> singlePass() throws Exception
+    {
+        return new ParsedResultSet(InMemoryResultSet.statement(COLUMNS, this.rows), QueryType.SELECT, false).getRows();
+    }
+
+    /**
+     * The materialization before the rewrite: the rows are counted with a full pass, the cursor is moved back
+     * and the metadata is looked up again for every value
+     */
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public List<Map<String, String>> rowCountPreScan() throws SQLException
+    {
+        PreparedStatement preparedStatement = InMemoryResultSet.statement(COLUMNS, this.rows);
+        preparedStatement.execute();
+
+        ResultSet resultSet = preparedStatement.getResultSet();
+        List<Map<String, String>> result = new ArrayList<>(CommonFunctions.getRowCount(resultSet));
+
+        do
+        {
+            Map<String, String> values = new HashMap<>();
+
+            for (int i = 1; i < resultSet.getMetaData().getColumnCount() + 1; i++)
+            {
+                values.put(resultSet.getMetaData().getColumnName(i), resultSet.getString(i));
+            }
+
+            result.add(values);
+        }
+        while (resultSet.next());
+
+        return result;
+    }
+}
@@ -0,0 +1,199 @@
+package net.centurylab.aurora.database;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchLoaderTest
+{
+    private static final String[] NAMES = {null, "alice", "bob", "carol"};
+
+    private final List<Object[]>              batches = new CopyOnWriteArrayList<>();
+    private       Observable<ParsedResultSet> failure;
+    private       MySQLDatabase               database;
+    private       BatchLoader<Integer>        batchLoader;
+
+    @Before
+    public void setUp()
+    {
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            /**
+             * Answers the IN list with the users whose id is in the parameters, the rows are keyed by the column label
+             */
+            @Override
+            public Observable<ParsedResultSet> execute(BoundQuery boundQuery)
+            {
+                BatchLoaderTest.this.batches.add(boundQuery.getParameters());
+
+                if (BatchLoaderTest.this.failure != null)
+                {
+                    return BatchLoaderTest.this.failure;
+                }
+
+                List<Map<String, String>> rows = new ArrayList<>();
+
+                for (Object id : new LinkedHashSet<>(Arrays.asList(boundQuery.getParameters())))
+                {
+                    int index = ((Number) id).intValue();
+
+                    if (index > 0 && index < NAMES.length)
+                    {
+                        Map<String, String> row = new HashMap<>();
+                        row.put("id", String.valueOf(index));
+                        row.put("name", NAMES[index]);
+                        rows.add(row);
+                    }
+                }
+
+                return Observable.just(new ParsedResultSet(rows, -1, null));
+            }
+        };
+
+        this.batchLoader = new BatchLoader<Integer>(this.database, () -> MySQLStatementBuilder.Select().addField("users.id").addField("users.name").addTable("users"), "users.id")
+                .setWindow(1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    @Test
+    public void keysAreLoadedWithOneQuery()
+    {
+        TestObserver<Map<String, String>> first = this.batchLoader.load(1).test();
+        TestObserver<Map<String, String>> second = this.batchLoader.load(2).test();
+        TestObserver<Map<String, String>> again = this.batchLoader.load(2).test();
+
+        this.batchLoader.flush();
+
+        assertEquals(1, this.batches.size());
+        assertEquals("alice", name(first));
+        assertEquals("bob", name(second));
+        assertEquals("bob", name(again));
+        assertEquals(3, this.batchLoader.getLoadCount());
+        assertEquals(2, this.batchLoader.getAverageBatchSize(), 0);
+    }
+
+    @Test
+    public void missingKeysComplete()
+    {
+        TestObserver<Map<String, String>> missing = this.batchLoader.load(42).test();
+        TestObserver<Map<String, String>> found = this.batchLoader.load(3).test();
+
+        this.batchLoader.flush();
+
+        missing.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        missing.assertNoValues().assertComplete();
+        assertEquals("carol", name(found));
+    }
+
+    @Test
+    public void fullBatchIsSentRightAway()
+    {
+        this.batchLoader.setMaxBatchSize(2);
+
+        TestObserver<Map<String, String>> first = this.batchLoader.load(1).test();
+        TestObserver<Map<String, String>> second = this.batchLoader.load(2).test();
+
+        assertEquals(1, this.batches.size());
+        assertEquals("alice", name(first));
+        assertEquals("bob", name(second));
+    }
+
+    @Test
+    public void keyListIsPaddedToPowersOfTwo()
+    {
+        this.batchLoader.load(1).test();
+        this.batchLoader.load(2).test();
+        this.batchLoader.load(3).test();
+
+        this.batchLoader.flush();
+
+        Set<Object> keys = new LinkedHashSet<>(Arrays.asList(this.batches.get(0)));
+        assertEquals(4, this.batches.get(0).length);
+        assertEquals(3, keys.size());
+    }
+
+    @Test
+    public void errorsReachEveryLookup()
+    {
+        this.failure = Observable.error(new SQLException("The query failed"));
+
+        TestObserver<Map<String, String>> first = this.batchLoader.load(1).test();
+        TestObserver<Map<String, String>> second = this.batchLoader.load(2).test();
+        TestObserver<Map<String, String>> again = this.batchLoader.load(2).test();
+
+        this.batchLoader.flush();
+
+        for (TestObserver<Map<String, String>> observer : Arrays.asList(first, second, again))
+        {
+            observer.awaitTerminalEvent(5, TimeUnit.SECONDS);
+            observer.assertError(SQLException.class);
+        }
+    }
+
+    @Test
+    public void failingQuerySupplierReachesEveryLookup()
+    {
+        BatchLoader<Integer> batchLoader = new BatchLoader<Integer>(this.database, () ->
+        {
+            throw new IllegalStateException("No query");
+        }, "id").setWindow(1, TimeUnit.HOURS);
+
+        TestObserver<Map<String, String>> first = batchLoader.load(1).test();
+        TestObserver<Map<String, String>> second = batchLoader.load(2).test();
+
+        batchLoader.flush();
+
+        first.assertError(IllegalStateException.class);
+        second.assertError(IllegalStateException.class);
+        assertEquals(0, this.batches.size());
+    }
+
+    @Test
+    public void orConditionsAreRejected()
+    {
+        BatchLoader<Integer> batchLoader = new BatchLoader<Integer>(this.database, () -> MySQLStatementBuilder.Select().addField("id").addTable("users")
+                .addCondition(new Condition("banned", "=", 0))
+                .addCondition(new Condition("OR", "admin", "=", 1)), "id").setWindow(1, TimeUnit.HOURS);
+
+        TestObserver<Map<String, String>> observer = batchLoader.load(1).test();
+        batchLoader.flush();
+
+        observer.assertError(IllegalArgumentException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedKeysAreRejected()
+    {
+        new BatchLoader<Object>(this.database, MySQLStatementBuilder::Select, "id").load(new byte[16]);
+    }
+
+    private static String name(TestObserver<Map<String, String>> observer)
+    {
+        observer.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        observer.assertComplete().assertValueCount(1);
+
+        return observer.values().get(0).get("name");
+    }
+}
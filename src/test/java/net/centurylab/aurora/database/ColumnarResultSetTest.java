@@ -0,0 +1,153 @@
+package net.centurylab.aurora.database;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ColumnarResultSetTest
+{
+    private static final String[] COLUMNS = {"flag", "count", "id", "balance", "data", "name"};
+    private static final int[]    TYPES   = {Types.TINYINT, Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.VARBINARY, Types.VARCHAR};
+
+    /**
+     * More rows than one word of the null bitmap and the initial capacity of the arrays
+     */
+    private static final int ROW_COUNT = 150;
+
+    private ColumnarResultSet result;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Object[][] rows = new Object[ROW_COUNT][];
+
+        for (int i = 0; i < ROW_COUNT; i++)
+        {
+            rows[i] = new Object[COLUMNS.length];
+            rows[i][0] = i % 2;
+            rows[i][1] = i * 3;
+            rows[i][2] = Integer.MAX_VALUE + (long) i;
+            rows[i][3] = i * 0.25D;
+            rows[i][4] = new byte[]{(byte) i, 1};
+            rows[i][5] = "player" + i;
+
+            for (int column = 0; column < COLUMNS.length; column++)
+            {
+                if (isNull(i, column))
+                {
+                    rows[i][column] = null;
+                }
+            }
+        }
+
+        this.result = new ColumnarResultSet(InMemoryResultSet.create(COLUMNS, TYPES, rows));
+    }
+
+    /**
+     * Every column has nulls in other rows, including the rows at the word boundaries of the bitmap
+     */
+    private static boolean isNull(int row, int column)
+    {
+        return (row + column) % 7 == 0 || row == 63 + column || row == 64 + column;
+    }
+
+    @Test
+    public void columnTypes()
+    {
+        assertEquals(ROW_COUNT, this.result.getRowCount());
+        assertEquals(COLUMNS.length, this.result.getColumnCount());
+        assertEquals(ColumnarResultSet.ColumnType.INT, this.result.getColumnType(1));
+        assertEquals(ColumnarResultSet.ColumnType.INT, this.result.getColumnType(2));
+        assertEquals(ColumnarResultSet.ColumnType.LONG, this.result.getColumnType(3));
+        assertEquals(ColumnarResultSet.ColumnType.DOUBLE, this.result.getColumnType(4));
+        assertEquals(ColumnarResultSet.ColumnType.BYTES, this.result.getColumnType(5));
+        assertEquals(ColumnarResultSet.ColumnType.STRING, this.result.getColumnType(6));
+        assertEquals("balance", this.result.getColumnName(4));
+        assertEquals(4, this.result.findColumn("balance"));
+    }
+
+    @Test
+    public void nullBitmap()
+    {
+        for (int row = 0; row < ROW_COUNT; row++)
+        {
+            for (int column = 0; column < COLUMNS.length; column++)
+            {
+                assertEquals("row " + row + ", column " + COLUMNS[column], isNull(row, column), this.result.isNull(row, column + 1));
+            }
+        }
+    }
+
+    @Test
+    public void typedValues()
+    {
+        for (int row = 0; row < ROW_COUNT; row++)
+        {
+            assertEquals(isNull(row, 0) ? 0 : row % 2, this.result.getInt(row, "flag"));
+            assertEquals(isNull(row, 1) ? 0 : row * 3, this.result.getInt(row, "count"));
+            assertEquals(isNull(row, 1) ? 0 : row * 3, this.result.getLong(row, "count"));
+            assertEquals(isNull(row, 2) ? 0 : Integer.MAX_VALUE + (long) row, this.result.getLong(row, "id"));
+            assertEquals(isNull(row, 2) ? 0 : Integer.MAX_VALUE + (double) row, this.result.getDouble(row, "id"), 0);
+            assertEquals(isNull(row, 3) ? 0 : row * 0.25D, this.result.getDouble(row, "balance"), 0);
+            assertArrayEquals(isNull(row, 4) ? null : new byte[]{(byte) row, 1}, this.result.getBytes(row, "data"));
+            assertArrayEquals(isNull(row, 5) ? null : ("player" + row).getBytes(StandardCharsets.UTF_8), this.result.getBytes(row, "name"));
+        }
+    }
+
+    @Test
+    public void stringValues()
+    {
+        for (int row = 0; row < ROW_COUNT; row++)
+        {
+            assertEquals(isNull(row, 1) ? null : Integer.toString(row * 3), this.result.getString(row, "count"));
+            assertEquals(isNull(row, 2) ? null : Long.toString(Integer.MAX_VALUE + (long) row), this.result.getString(row, "id"));
+            assertEquals(isNull(row, 3) ? null : Double.toString(row * 0.25D), this.result.getString(row, "balance"));
+            assertEquals(isNull(row, 4) ? null : new String(new byte[]{(byte) row, 1}, StandardCharsets.UTF_8), this.result.getString(row, "data"));
+            assertEquals(isNull(row, 5) ? null : "player" + row, this.result.getString(row, "name"));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void intOverflow()
+    {
+        this.result.getInt(1, "id");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wrongColumnType()
+    {
+        this.result.getLong(1, "balance");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void bytesOfNumericColumn()
+    {
+        this.result.getBytes(1, "count");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownColumn()
+    {
+        this.result.findColumn("email");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rowOutOfRange()
+    {
+        this.result.getInt(ROW_COUNT, 1);
+    }
+
+    @Test
+    public void emptyResult() throws Exception
+    {
+        ColumnarResultSet empty = new ColumnarResultSet(InMemoryResultSet.create(COLUMNS, TYPES, new Object[0][]));
+
+        assertEquals(0, empty.getRowCount());
+        assertEquals(COLUMNS.length, empty.getColumnCount());
+    }
+}
@@ -0,0 +1,124 @@
+package net.centurylab.aurora.database;
+
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CounterAggregatorTest
+{
+    private RecordingConnection connections;
+    private Database            database;
+    private CounterAggregator   counterAggregator;
+
+    @Before
+    public void setUp()
+    {
+        this.connections = new RecordingConnection();
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            @Override
+            public Connection getConnection()
+            {
+                return CounterAggregatorTest.this.connections.open();
+            }
+        };
+        this.database.getSchemaCache().setEnabled(false);
+        this.counterAggregator = new CounterAggregator(this.database, 1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.connections.setFailing(false);
+        this.database.close();
+    }
+
+    @Test
+    public void flushWritesAndDrainsTheCells()
+    {
+        this.counterAggregator.increment("posts", "id", 1L, "views", 2)
+                              .increment("posts", "id", 1L, "views", 3)
+                              .increment("posts", "id", 2L, "views", 1);
+
+        assertEquals(2, this.counterAggregator.getCellCount());
+        assertEquals(2, (int) this.counterAggregator.flush().blockingFirst());
+
+        assertEquals(0, this.counterAggregator.getCellCount());
+        assertEquals(0, this.counterAggregator.getPendingDelta("posts", "id", 1L, "views"));
+        assertEquals(1, this.connections.getCommitted().size());
+        assertEquals(2, this.connections.getCommitted().get(0).getRows().size());
+        assertArrayEquals(new Object[]{5L, 1L}, this.connections.getCommitted().get(0).getRows().get(0));
+    }
+
+    @Test
+    public void failedFlushesRestoreTheDeltas()
+    {
+        this.counterAggregator.increment("posts", "id", 1L, "views", 5);
+        this.connections.setFailing(true);
+
+        try
+        {
+            this.counterAggregator.flush().blockingFirst();
+            throw new AssertionError("The flush has to fail");
+        }
+        catch (RuntimeException expected)
+        {
+            assertEquals(1, this.counterAggregator.getFailedFlushCount());
+        }
+
+        this.counterAggregator.increment("posts", "id", 1L, "views", 2);
+
+        assertEquals(7, this.counterAggregator.getPendingDelta("posts", "id", 1L, "views"));
+        assertEquals(0, this.connections.getCommitted().size());
+    }
+
+    @Test
+    public void concurrentIncrementsAreNeverLost() throws Exception
+    {
+        int threads = 4;
+        int increments = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++)
+        {
+            executor.execute(() ->
+            {
+                for (int j = 0; j < increments; j++)
+                {
+                    this.counterAggregator.increment("posts", "id", 1L, "views", 1);
+                }
+
+                done.countDown();
+            });
+        }
+
+        while (done.getCount() > 0)
+        {
+            this.counterAggregator.flush().blockingFirst();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        this.counterAggregator.flush().blockingFirst();
+
+        long written = this.connections.getCommitted()
+                                       .stream()
+                                       .flatMap(batch -> batch.getRows().stream())
+                                       .mapToLong(row -> (Long) row[0])
+                                       .sum();
+
+        assertEquals((long) threads * increments, written);
+    }
+}
@@ -0,0 +1,161 @@
+package net.centurylab.aurora.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+/**
+ * A scrollable {@link ResultSet} over rows which are kept in memory, so results can be materialized without a database.
+ * Only the methods which are used by the result classes are implemented.
+ */
+public final class InMemoryResultSet implements InvocationHandler
+{
+    private final String[]   columns;
+    private final int[]      types;
+    private final Object[][] rows;
+    private       int        position = -1;
+    private       boolean    wasNull;
+    private       boolean    closed;
+
+    private InMemoryResultSet(String[] columns, int[] types, Object[][] rows)
+    {
+        this.columns = columns;
+        this.types = types;
+        this.rows = rows;
+    }
+
+    /**
+     * @param columns The column labels
+     * @param rows    The values of every row in column order
+     * @return A new {@link ResultSet} which is positioned before the first row
+     */
+    public static ResultSet create(String[] columns, Object[][] rows)
+    {
+        return create(columns, null, rows);
+    }
+
+    /**
+     * @param columns The column labels
+     * @param types   The {@link Types} of the columns which the metadata reports, null for VARCHAR columns
+     * @param rows    The values of every row in column order
+     * @return A new {@link ResultSet} which is positioned before the first row
+     */
+    public static ResultSet create(String[] columns, int[] types, Object[][] rows)
+    {
+        return (ResultSet) Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, new InMemoryResultSet(columns, types, rows));
+    }
+
+    /**
+     * @param columns The column labels
+     * @param rows    The values of every row in column order
+     * @return A {@link PreparedStatement} which returns a new result over the rows on every execution
+     */
+    public static PreparedStatement statement(String[] columns, Object[][] rows)
+    {
+        return (PreparedStatement) Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "execute":
+                    return true;
+                case "executeQuery":
+                case "getResultSet":
+                    return create(columns, rows);
+                case "getUpdateCount":
+                    return -1;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "next":
+                return ++this.position < this.rows.length;
+            case "first":
+                this.position = 0;
+                return this.rows.length > 0;
+            case "isClosed":
+                return this.closed;
+            case "close":
+                this.closed = true;
+                return null;
+            case "wasNull":
+                return this.wasNull;
+            case "getMetaData":
+                return this.metaData();
+            case "getObject":
+                return this.value(args[0]);
+            case "getString":
+                Object value = this.value(args[0]);
+                return value == null ? null : value.toString();
+            case "getLong":
+                Object number = this.value(args[0]);
+                return number == null ? 0L : ((Number) number).longValue();
+            case "getInt":
+                Object integer = this.value(args[0]);
+                return integer == null ? 0 : ((Number) integer).intValue();
+            case "getDouble":
+                Object decimal = this.value(args[0]);
+                return decimal == null ? 0D : ((Number) decimal).doubleValue();
+            case "getBoolean":
+                Object bool = this.value(args[0]);
+                return bool != null && (Boolean) bool;
+            case "getBytes":
+                return this.value(args[0]);
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private Object value(Object column)
+    {
+        int index = column instanceof Integer ? (Integer) column - 1 : this.indexOf((String) column);
+        Object value = this.rows[this.position][index];
+
+        this.wasNull = value == null;
+        return value;
+    }
+
+    private int indexOf(String label)
+    {
+        for (int i = 0; i < this.columns.length; i++)
+        {
+            if (this.columns[i].equalsIgnoreCase(label))
+            {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown column " + label);
+    }
+
+    private ResultSetMetaData metaData()
+    {
+        return (ResultSetMetaData) Proxy.newProxyInstance(InMemoryResultSet.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getColumnCount":
+                    return this.columns.length;
+                case "getColumnName":
+                case "getColumnLabel":
+                    return this.columns[(Integer) args[0] - 1];
+                case "getColumnType":
+                    return this.types == null ? Types.VARCHAR : this.types[(Integer) args[0] - 1];
+                case "isSigned":
+                    return true;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
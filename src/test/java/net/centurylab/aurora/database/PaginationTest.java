@@ -0,0 +1,125 @@
+package net.centurylab.aurora.database;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class PaginationTest
+{
+    private final List<Object[]> bindings = new CopyOnWriteArrayList<>();
+    private Database database;
+    private int      rowCount;
+    private String   column;
+
+    @Before
+    public void setUp()
+    {
+        this.column = "id";
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            @Override
+            public Observable<ParsedResultSet> execute(BoundQuery boundQuery)
+            {
+                return Observable.fromCallable(() -> PaginationTest.this.page(boundQuery)).subscribeOn(Schedulers.single());
+            }
+        };
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    private ParsedResultSet page(BoundQuery boundQuery)
+    {
+        Object[] parameters = boundQuery.getParameters();
+        this.bindings.add(parameters);
+
+        int after = parameters.length == 0 ? 0 : Integer.parseInt(parameters[0].toString());
+        int limit = Integer.parseInt(boundQuery.getQuery().getSql().replaceAll(".*LIMIT (\\d+).*", "$1"));
+        List<Map<String, String>> rows = new ArrayList<>();
+
+        for (int id = after + 1; id <= Math.min(after + limit, this.rowCount); id++)
+        {
+            Map<String, String> row = new HashMap<>();
+            row.put(this.column, String.valueOf(id));
+            rows.add(row);
+        }
+
+        return new ParsedResultSet(rows, -1, null);
+    }
+
+    private static MySQLStatementBuilder select(String orderField)
+    {
+        return MySQLStatementBuilder.Select().addField("id").addTable("users").addOrderField(new OrderField(orderField, OrderType.ASCENDING));
+    }
+
+    @Test
+    public void pagesContinueAfterTheLastRow() throws Exception
+    {
+        this.rowCount = 7;
+
+        List<Integer> pageSizes = new ArrayList<>();
+
+        for (ParsedResultSet page : this.database.paginate(select("id"), 3).blockingIterable())
+        {
+            pageSizes.add(page.getRowCount());
+        }
+
+        assertEquals(Arrays.asList(3, 3, 1), pageSizes);
+        assertEquals(3, this.bindings.size());
+        assertEquals("6", this.bindings.get(2)[0]);
+    }
+
+    @Test
+    public void fullLastPagesEndWithAnEmptyRead()
+    {
+        this.rowCount = 6;
+
+        assertEquals(2, (long) this.database.paginate(select("id"), 3).count().blockingGet());
+        assertEquals(3, this.bindings.size());
+    }
+
+    @Test
+    public void qualifiedOrderFieldsAreResolved()
+    {
+        this.rowCount = 4;
+
+        assertEquals(2, (long) this.database.paginate(select("users.id"), 2).count().blockingGet());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingOrderFieldsFailLoudly()
+    {
+        this.rowCount = 4;
+        this.column = "name";
+
+        this.database.paginate(select("id"), 2).blockingLast();
+    }
+
+    @Test
+    public void theCallersBuilderIsNotChanged()
+    {
+        this.rowCount = 1;
+        MySQLStatementBuilder select = select("id").limit(10, 5);
+        String sql = select.toBoundQuery().getQuery().getSql();
+
+        this.database.paginate(select, 2).blockingLast();
+
+        assertEquals(sql, select.toBoundQuery().getQuery().getSql());
+    }
+}
@@ -0,0 +1,75 @@
+package net.centurylab.aurora.database;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParameterBindersTest
+{
+    private final List<String> calls = new ArrayList<>();
+
+    private PreparedStatement statement()
+    {
+        return (PreparedStatement) Proxy.newProxyInstance(ParameterBindersTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) ->
+        {
+            this.calls.add(method.getName());
+            return null;
+        });
+    }
+
+    private static Query query(int... columnTypes)
+    {
+        Query query = new Query("SELECT * FROM users WHERE id = ?", QueryType.SELECT, false, Collections.singletonList("users"), Collections.singletonList("id"));
+
+        if (columnTypes.length > 0)
+        {
+            query.setColumnTypes(columnTypes, 0);
+        }
+
+        return query;
+    }
+
+    @Test
+    public void registeredTypesUseTheirSetter() throws Exception
+    {
+        Query query = query();
+        PreparedStatement statement = this.statement();
+
+        query.bind(1L).bind(statement);
+        query.bind("a").bind(statement);
+        query.bind(2).bind(statement);
+
+        assertEquals(Arrays.asList("setLong", "setString", "setInt"), this.calls);
+    }
+
+    @Test
+    public void placeholdersWhichWereFirstBoundToNullAreResolvedLater() throws Exception
+    {
+        Query query = query(Types.TIMESTAMP);
+        PreparedStatement statement = this.statement();
+
+        query.bind((Object) null).bind(statement);
+        query.bind(new Date()).bind(statement);
+        query.bind(3L).bind(statement);
+        query.bind(new Date()).bind(statement);
+
+        assertEquals(Arrays.asList("setNull", "setTimestamp", "setLong", "setTimestamp"), this.calls);
+    }
+
+    @Test
+    public void unregisteredTypesWithoutSchemaUseSetObject() throws Exception
+    {
+        query().bind(new Date()).bind(this.statement());
+
+        assertEquals(Collections.singletonList("setObject"), this.calls);
+    }
+}
@@ -0,0 +1,121 @@
+package net.centurylab.aurora.database;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryExecutionTest
+{
+    private HikariDataSource connectionPool;
+
+    @Before
+    public void setUp()
+    {
+        this.connectionPool = new HikariDataSource();
+        this.connectionPool.setDataSource(dataSource());
+        this.connectionPool.setMaximumPoolSize(1);
+        this.connectionPool.setConnectionTimeout(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.connectionPool.close();
+    }
+
+    @Test
+    public void checkoutEndsAtTheDeadline() throws Exception
+    {
+        try (Connection ignored = this.connectionPool.getConnection())
+        {
+            QueryExecution execution = new QueryExecution(TimeUnit.MILLISECONDS.toNanos(200));
+            long start = System.nanoTime();
+
+            try
+            {
+                execution.call(() -> Database.checkout(this.connectionPool));
+                fail("The checkout should time out");
+            }
+            catch (SQLTimeoutException e)
+            {
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+                assertFalse(Thread.currentThread().isInterrupted());
+            }
+        }
+    }
+
+    @Test
+    public void checkoutWithinTheDeadline() throws Exception
+    {
+        QueryExecution execution = new QueryExecution(TimeUnit.MILLISECONDS.toNanos(200));
+
+        try (Connection connection = execution.call(() -> Database.checkout(this.connectionPool)))
+        {
+            assertNotNull(connection);
+        }
+
+        // the timer of the deadline must not interrupt the thread after the checkout
+        Thread.sleep(300);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test(expected = SQLTimeoutException.class)
+    public void checkoutAfterTheDeadline() throws Exception
+    {
+        QueryExecution execution = new QueryExecution(1);
+        Thread.sleep(1);
+
+        execution.call(() -> Database.checkout(this.connectionPool));
+    }
+
+    /**
+     * A {@link DataSource} whose connections answer every call with the default value of its return type
+     */
+    private static DataSource dataSource()
+    {
+        return (DataSource) Proxy.newProxyInstance(QueryExecutionTest.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("getConnection"))
+            {
+                return Proxy.newProxyInstance(QueryExecutionTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (connection, call, values) ->
+                {
+                    if (call.getName().equals("isValid"))
+                    {
+                        return true;
+                    }
+
+                    return defaultValue(call.getReturnType());
+                });
+            }
+
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if (type == boolean.class)
+        {
+            return false;
+        }
+
+        if (type == long.class)
+        {
+            return 0L;
+        }
+
+        return type == int.class ? 0 : null;
+    }
+}
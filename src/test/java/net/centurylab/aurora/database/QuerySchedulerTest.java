@@ -0,0 +1,187 @@
+package net.centurylab.aurora.database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QuerySchedulerTest
+{
+    private QueryScheduler queryScheduler;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp()
+    {
+        this.queryScheduler = new QueryScheduler(4);
+        this.release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        this.release.countDown();
+        this.queryScheduler.shutdown();
+        this.queryScheduler.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private Runnable blocking()
+    {
+        return () ->
+        {
+            try
+            {
+                this.release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private void awaitRunning(QueryPriority priority, int running) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (this.queryScheduler.getRunning(priority) != running && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+
+        assertEquals(running, this.queryScheduler.getRunning(priority));
+    }
+
+    @Test
+    public void lowerClassesCantUseReservedSlots() throws InterruptedException
+    {
+        assertEquals(1, this.queryScheduler.getReserved(QueryPriority.INTERACTIVE));
+
+        for (int i = 0; i < 4; i++)
+        {
+            this.queryScheduler.submit(QueryPriority.BULK, this.blocking());
+        }
+
+        this.awaitRunning(QueryPriority.BULK, 3);
+        assertEquals(1, this.queryScheduler.getQueueDepth(QueryPriority.BULK));
+
+        CountDownLatch interactive = new CountDownLatch(1);
+        this.queryScheduler.submit(QueryPriority.INTERACTIVE, interactive::countDown);
+
+        assertTrue("interactive work has to run on the reserved slot", interactive.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void higherClassesAreDispatchedFirst() throws InterruptedException
+    {
+        this.queryScheduler.setReserved(QueryPriority.INTERACTIVE, 0);
+
+        for (int i = 0; i < 4; i++)
+        {
+            this.queryScheduler.submit(QueryPriority.NORMAL, this.blocking());
+        }
+
+        this.awaitRunning(QueryPriority.NORMAL, 4);
+
+        AtomicReference<QueryPriority> first = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2);
+        this.queryScheduler.submit(QueryPriority.BULK, () ->
+        {
+            first.compareAndSet(null, QueryPriority.BULK);
+            done.countDown();
+        });
+        this.queryScheduler.submit(QueryPriority.INTERACTIVE, () ->
+        {
+            first.compareAndSet(null, QueryPriority.INTERACTIVE);
+            done.countDown();
+        });
+
+        this.release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(QueryPriority.INTERACTIVE, first.get());
+    }
+
+    @Test
+    public void fullQueuesRejectNewWork() throws InterruptedException
+    {
+        this.queryScheduler.setMaxQueueDepth(QueryPriority.BULK, 1);
+
+        for (int i = 0; i < 3; i++)
+        {
+            this.queryScheduler.submit(QueryPriority.BULK, this.blocking());
+        }
+
+        this.awaitRunning(QueryPriority.BULK, 3);
+        this.queryScheduler.submit(QueryPriority.BULK, this.blocking());
+
+        try
+        {
+            this.queryScheduler.submit(QueryPriority.BULK, this.blocking());
+            throw new AssertionError("The queue is full");
+        }
+        catch (RejectedExecutionException expected)
+        {
+            assertEquals(1, this.queryScheduler.getRejectedCount(QueryPriority.BULK));
+        }
+    }
+
+    @Test
+    public void cancelledTasksNeverRun() throws InterruptedException
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            this.queryScheduler.submit(QueryPriority.BULK, this.blocking());
+        }
+
+        this.awaitRunning(QueryPriority.BULK, 3);
+
+        CountDownLatch ran = new CountDownLatch(1);
+        QueryScheduler.Task task = this.queryScheduler.submit(QueryPriority.BULK, ran::countDown);
+
+        assertTrue(task.cancel());
+        assertFalse(task.cancel());
+
+        this.release.countDown();
+        assertFalse(ran.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void leasesHoldTheirSlotUntilReleased() throws InterruptedException
+    {
+        AtomicReference<QueryScheduler.Lease> lease = new AtomicReference<>();
+        CountDownLatch leased = new CountDownLatch(1);
+
+        this.queryScheduler.lease(QueryPriority.BULK, result ->
+        {
+            lease.set(result);
+            leased.countDown();
+        });
+
+        assertTrue(leased.await(5, TimeUnit.SECONDS));
+        assertEquals(1, this.queryScheduler.getRunning(QueryPriority.BULK));
+
+        lease.get().release();
+        lease.get().release();
+
+        assertEquals(0, this.queryScheduler.getRunning(QueryPriority.BULK));
+    }
+
+    @Test
+    public void availableSlotsExcludeHigherReservations()
+    {
+        this.queryScheduler.setReserved(QueryPriority.NORMAL, 1);
+
+        assertEquals(4, this.queryScheduler.getAvailableSlots(QueryPriority.INTERACTIVE));
+        assertEquals(3, this.queryScheduler.getAvailableSlots(QueryPriority.NORMAL));
+        assertEquals(2, this.queryScheduler.getAvailableSlots(QueryPriority.BULK));
+    }
+}
@@ -0,0 +1,150 @@
+package net.centurylab.aurora.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Creates {@link Connection}s which record the batches that were committed instead of sending them to a database.
+ * Only the methods which are used by transactions and batches are implemented.
+ */
+public final class RecordingConnection
+{
+    private final List<Batch> committed = new CopyOnWriteArrayList<>();
+
+    private volatile boolean failing;
+
+    /**
+     * @return A new {@link Connection} which records its batches when it commits
+     */
+    public Connection open()
+    {
+        List<Batch> uncommitted = new ArrayList<>();
+        boolean[] autoCommit = {true};
+
+        return (Connection) Proxy.newProxyInstance(RecordingConnection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "unwrap":
+                    return proxy;
+                case "prepareStatement":
+                    Batch batch = new Batch((String) args[0]);
+                    uncommitted.add(batch);
+                    return Proxy.newProxyInstance(RecordingConnection.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, batch);
+                case "commit":
+                    this.commit(uncommitted);
+                    return null;
+                case "rollback":
+                    uncommitted.clear();
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit[0];
+                case "setAutoCommit":
+                    // like JDBC, switching auto-commit on commits the open transaction
+                    if ((Boolean) args[0] && !autoCommit[0])
+                    {
+                        this.commit(uncommitted);
+                    }
+
+                    autoCommit[0] = (Boolean) args[0];
+                    return null;
+                case "isClosed":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private void commit(List<Batch> uncommitted) throws SQLException
+    {
+        if (this.failing)
+        {
+            throw new SQLException("The commit failed");
+        }
+
+        this.committed.addAll(uncommitted);
+        uncommitted.clear();
+    }
+
+    /**
+     * @param failing True to let every commit fail
+     */
+    public void setFailing(boolean failing)
+    {
+        this.failing = failing;
+    }
+
+    /**
+     * @return The batches of all commits which succeeded
+     */
+    public List<Batch> getCommitted()
+    {
+        return committed;
+    }
+
+    public static final class Batch implements InvocationHandler
+    {
+        private final String                   sql;
+        private final List<Object[]>           rows       = new ArrayList<>();
+        private final TreeMap<Integer, Object> parameters = new TreeMap<>();
+
+        private Batch(String sql)
+        {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            String name = method.getName();
+
+            if (name.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer)
+            {
+                this.parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return null;
+            }
+
+            switch (name)
+            {
+                case "addBatch":
+                    this.rows.add(this.parameters.values().toArray());
+                    this.parameters.clear();
+                    return null;
+                case "executeBatch":
+                    int[] updateCounts = new int[this.rows.size()];
+                    Arrays.fill(updateCounts, 1);
+                    return updateCounts;
+                case "isClosed":
+                    return false;
+                case "setQueryTimeout":
+                case "clearParameters":
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        }
+
+        public String getSql()
+        {
+            return sql;
+        }
+
+        public List<Object[]> getRows()
+        {
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.centurylab.aurora.database;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCacheTest
+{
+    private static final Query USERS      = query("SELECT * FROM users WHERE id = ?", "users");
+    private static final Query USER_ROLES = query("SELECT * FROM users JOIN roles ON users.role = roles.id WHERE users.id = ?", "users", "roles");
+    private static final Query ROLES      = query("SELECT * FROM roles WHERE id = ?", "roles");
+
+    private ResultCache resultCache;
+
+    private static Query query(String sql, String... tables)
+    {
+        return new Query(sql, QueryType.SELECT, false, Arrays.asList(tables), Collections.singletonList("id"));
+    }
+
+    private static ParsedResultSet result(String value)
+    {
+        Map<String, String> row = new HashMap<>();
+        row.put("id", value);
+
+        List<Map<String, String>> rows = Collections.singletonList(row);
+        return new ParsedResultSet(rows, -1, null);
+    }
+
+    private void put(BoundQuery boundQuery, ParsedResultSet parsedResultSet)
+    {
+        this.resultCache.put(boundQuery, parsedResultSet, this.resultCache.getGeneration(boundQuery.getQuery()));
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.resultCache = new ResultCache(1024 * 1024, 1, TimeUnit.MINUTES).enableTable("users").enableTable("roles");
+    }
+
+    @Test
+    public void onlyQueriesOnEnabledTablesAreCacheable()
+    {
+        this.resultCache.disableTable("roles");
+
+        assertTrue(this.resultCache.isCacheable(USERS));
+        assertFalse(this.resultCache.isCacheable(USER_ROLES));
+        assertFalse(this.resultCache.isCacheable(new Query("DELETE FROM users", QueryType.DELETE, false, Collections.singletonList("users"), Collections.emptyList())));
+    }
+
+    @Test
+    public void resultsAreKeyedByTheBoundParameters()
+    {
+        ParsedResultSet first = result("1");
+        this.put(USERS.bind(1), first);
+
+        assertSame(first, this.resultCache.get(USERS.bind(1)));
+        assertNull(this.resultCache.get(USERS.bind(2)));
+    }
+
+    @Test
+    public void invalidationDropsEveryResultWhichReadTheTable()
+    {
+        this.put(USERS.bind(1), result("1"));
+        this.put(USER_ROLES.bind(1), result("1"));
+        this.put(ROLES.bind(1), result("1"));
+
+        this.resultCache.invalidate("users");
+
+        assertNull(this.resultCache.get(USERS.bind(1)));
+        assertNull(this.resultCache.get(USER_ROLES.bind(1)));
+        assertNotNull(this.resultCache.get(ROLES.bind(1)));
+        assertEquals(1, this.resultCache.size());
+    }
+
+    @Test
+    public void resultsOfQueriesWhichRacedAnInvalidationAreNotCached()
+    {
+        BoundQuery boundQuery = USER_ROLES.bind(1);
+        long generation = this.resultCache.getGeneration(boundQuery.getQuery());
+
+        this.resultCache.invalidate("roles");
+        this.resultCache.put(boundQuery, result("1"), generation);
+
+        assertNull(this.resultCache.get(boundQuery));
+        assertEquals(0, this.resultCache.getMemoryUsage());
+    }
+
+    @Test
+    public void memoryUsageFollowsTheCachedResults()
+    {
+        ParsedResultSet parsedResultSet = result("1");
+        this.put(USERS.bind(1), parsedResultSet);
+
+        assertEquals(parsedResultSet.estimateSize(), this.resultCache.getMemoryUsage());
+
+        this.resultCache.invalidateAll();
+
+        assertEquals(0, this.resultCache.size());
+        assertEquals(0, this.resultCache.getMemoryUsage());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void materializedRowsAreReadOnly() throws Exception
+    {
+        PreparedStatement statement = InMemoryResultSet.statement(new String[]{"id"}, new Object[][]{{"1"}});
+        ParsedResultSet parsedResultSet = new ParsedResultSet(statement, QueryType.SELECT, false);
+
+        parsedResultSet.getRows().get(0).put("id", "2");
+    }
+}
@@ -0,0 +1,133 @@
+package net.centurylab.aurora.database;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScanTest
+{
+    private final List<BigInteger[]> chunks = new CopyOnWriteArrayList<>();
+    private Database database;
+    private long     min;
+    private long     max;
+    private String   key;
+
+    @Before
+    public void setUp()
+    {
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            @Override
+            public Observable<ParsedResultSet> execute(BoundQuery boundQuery)
+            {
+                long bound = boundQuery.getQuery().getSql().contains("DESC") ? ScanTest.this.max : ScanTest.this.min;
+                Map<String, String> row = Collections.singletonMap("id", ScanTest.this.key != null ? ScanTest.this.key : String.valueOf(bound));
+
+                return Observable.just(new ParsedResultSet(Collections.singletonList(row), -1, null));
+            }
+
+            @Override
+            public Flowable<Row> stream(BoundQuery boundQuery, int fetchSize)
+            {
+                Object[] parameters = boundQuery.getParameters();
+                ScanTest.this.chunks.add(new BigInteger[]{toBigInteger(parameters[0]), toBigInteger(parameters[1])});
+
+                return Flowable.empty();
+            }
+        };
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    private static BigInteger toBigInteger(Object value)
+    {
+        return value instanceof BigDecimal ? ((BigDecimal) value).toBigInteger() : BigInteger.valueOf((Long) value);
+    }
+
+    private void assertChunksCover(long min, long max, int chunkCount)
+    {
+        this.min = min;
+        this.max = max;
+        this.chunks.clear();
+
+        this.database.scan(MySQLStatementBuilder.Select().addField("id").addTable("users"), "id", 2, chunkCount, false).blockingSubscribe();
+
+        this.chunks.sort(Comparator.comparing(chunk -> chunk[0]));
+
+        assertEquals(BigInteger.valueOf(min), this.chunks.get(0)[0]);
+        assertEquals(BigInteger.valueOf(max).add(BigInteger.ONE), this.chunks.get(this.chunks.size() - 1)[1]);
+
+        for (int i = 1; i < this.chunks.size(); i++)
+        {
+            assertEquals(this.chunks.get(i - 1)[1], this.chunks.get(i)[0]);
+        }
+    }
+
+    @Test
+    public void chunksCoverTheKeyRange()
+    {
+        this.assertChunksCover(1, 100, 8);
+        assertEquals(8, this.chunks.size());
+
+        this.assertChunksCover(5, 7, 8);
+        assertEquals(3, this.chunks.size());
+    }
+
+    @Test
+    public void chunksDontOverflowAtTheEndsOfTheLongRange()
+    {
+        this.assertChunksCover(Long.MAX_VALUE - 10, Long.MAX_VALUE, 4);
+        assertEquals(4, this.chunks.size());
+
+        this.assertChunksCover(Long.MIN_VALUE, Long.MAX_VALUE, 4);
+        assertEquals(4, this.chunks.size());
+
+        this.assertChunksCover(Long.MIN_VALUE, Long.MIN_VALUE, 4);
+        assertEquals(1, this.chunks.size());
+    }
+
+    @Test
+    public void qualifiedKeyColumnsAreFoundByTheirColumnName()
+    {
+        this.min = 1;
+        this.max = 100;
+
+        this.database.scan(MySQLStatementBuilder.Select().addField("users.id").addTable("users"), "users.id", 2, 4, false).blockingSubscribe();
+
+        assertEquals(4, this.chunks.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonIntegralKeysAreRejected()
+    {
+        this.key = "alice";
+
+        this.database.scan(MySQLStatementBuilder.Select().addField("name").addTable("users"), "id", 2, 4, false).blockingSubscribe();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keysOutsideTheLongRangeAreRejected()
+    {
+        this.key = "18446744073709551615";
+
+        this.database.scan(MySQLStatementBuilder.Select().addField("id").addTable("users"), "id", 2, 4, false).blockingSubscribe();
+    }
+}
@@ -0,0 +1,138 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.collect.ImmutableList;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import net.centurylab.aurora.database.schema.SchemaCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaCacheTest
+{
+    private static final String[] COLUMNS = {"COLUMN_NAME", "DATA_TYPE", "COLUMN_TYPE", "IS_NULLABLE"};
+    private static final String[] INDEXES = {"INDEX_NAME", "NON_UNIQUE", "COLUMN_NAME"};
+
+    private Database    database;
+    private SchemaCache schemaCache;
+    private Connection  connection;
+    private boolean     failing;
+
+    @Before
+    public void setUp()
+    {
+        this.database = new MySQLDatabase("localhost", "test", "test", "test");
+        this.schemaCache = this.database.getSchemaCache();
+        this.connection = this.connection();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    private static Query select()
+    {
+        return new Query("SELECT name FROM players WHERE id = ?", QueryType.SELECT, false, ImmutableList.of("players"), ImmutableList.of("id"));
+    }
+
+    @Test
+    public void templatesAreDescribedOnce() throws Exception
+    {
+        Query query = select();
+
+        this.database.releaseStatement(this.database.prepareStatement(this.connection, query));
+        this.database.releaseStatement(this.database.prepareStatement(this.connection, query));
+
+        assertTrue(query.isDescribed(this.schemaCache.getGeneration()));
+        assertEquals(1, this.schemaCache.getLoadCount());
+    }
+
+    @Test
+    public void failedLoadsAreRetried() throws Exception
+    {
+        Query query = select();
+        this.failing = true;
+
+        this.database.releaseStatement(this.database.prepareStatement(this.connection, query));
+
+        assertFalse(query.isDescribed(this.schemaCache.getGeneration()));
+
+        this.failing = false;
+        this.database.releaseStatement(this.database.prepareStatement(this.connection, query));
+
+        assertTrue(query.isDescribed(this.schemaCache.getGeneration()));
+        assertEquals(1, this.schemaCache.getLoadCount());
+    }
+
+    @Test
+    public void refreshDescribesTheTemplatesAgain() throws Exception
+    {
+        Query query = select();
+
+        this.database.releaseStatement(this.database.prepareStatement(this.connection, query));
+        this.schemaCache.refresh("players");
+
+        assertFalse(query.isDescribed(this.schemaCache.getGeneration()));
+
+        this.database.releaseStatement(this.database.prepareStatement(this.connection, query));
+
+        assertTrue(query.isDescribed(this.schemaCache.getGeneration()));
+        assertEquals(2, this.schemaCache.getLoadCount());
+    }
+
+    /**
+     * A connection which answers the information_schema queries with an id column and a primary key,
+     * the column query fails while {@link #failing} is set
+     */
+    private Connection connection()
+    {
+        return (Connection) Proxy.newProxyInstance(SchemaCacheTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "unwrap":
+                    return proxy;
+                case "prepareStatement":
+                    return this.statement((String) args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private PreparedStatement statement(String sql)
+    {
+        return (PreparedStatement) Proxy.newProxyInstance(SchemaCacheTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "executeQuery":
+                    if (sql.contains("information_schema.COLUMNS"))
+                    {
+                        if (this.failing)
+                        {
+                            throw new SQLException("The schema is not available");
+                        }
+
+                        return InMemoryResultSet.create(COLUMNS, new Object[][]{{"id", "bigint", "bigint(20)", "NO"}, {"name", "varchar", "varchar(32)", "YES"}});
+                    }
+
+                    return InMemoryResultSet.create(INDEXES, new Object[][]{{"PRIMARY", 0, "id"}});
+                case "isClosed":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,199 @@
+package net.centurylab.aurora.database;
+
+import io.reactivex.Observable;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedDatabaseTest
+{
+    private final List<Shard> shards = new ArrayList<>();
+    private ShardedDatabase shardedDatabase;
+
+    private ShardedDatabase create(ParsedResultSet... results)
+    {
+        for (ParsedResultSet result : results)
+        {
+            this.shards.add(new Shard(result));
+        }
+
+        this.shardedDatabase = new ShardedDatabase("user_id", this.shards);
+        return this.shardedDatabase;
+    }
+
+    private static ParsedResultSet rows(String column, String... values)
+    {
+        List<Map<String, String>> rows = new ArrayList<>();
+
+        for (String value : values)
+        {
+            Map<String, String> row = new HashMap<>();
+            row.put(column, value);
+            rows.add(row);
+        }
+
+        return new ParsedResultSet(rows, -1, null);
+    }
+
+    private static List<String> column(ParsedResultSet parsedResultSet, String column) throws Exception
+    {
+        return parsedResultSet.getRows().stream().map(row -> row.get(column)).collect(Collectors.toList());
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (this.shardedDatabase != null)
+        {
+            this.shardedDatabase.close();
+        }
+    }
+
+    @Test
+    public void numbersAreMergedByValue() throws Exception
+    {
+        this.create(rows("score", "2", "10", "-3.5"), rows("score", "1", "9"));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("score").addTable("scores").addOrderField(new OrderField("score", OrderType.ASCENDING));
+
+        assertEquals(Arrays.asList("-3.5", "1", "2", "9", "10"), column(this.shardedDatabase.execute(select).blockingFirst(), "score"));
+    }
+
+    @Test
+    public void stringsAreMergedCaseInsensitively() throws Exception
+    {
+        this.create(rows("name", "apple", "Cherry"), rows("name", "Banana", "date "));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("name").addTable("fruits").addOrderField(new OrderField("name", OrderType.DESCENDING));
+
+        assertEquals(Arrays.asList("date ", "Cherry", "Banana", "apple"), column(this.shardedDatabase.execute(select).blockingFirst(), "name"));
+
+        this.shardedDatabase.setStringComparator(Comparator.naturalOrder());
+
+        assertEquals(Arrays.asList("date ", "apple", "Cherry", "Banana"), column(this.shardedDatabase.execute(select).blockingFirst(), "name"));
+    }
+
+    @Test
+    public void nullsAreMergedFirst() throws Exception
+    {
+        this.create(rows("name", "b", null), rows("name", "a"));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("name").addTable("users").addOrderField(new OrderField("name", OrderType.ASCENDING));
+
+        assertEquals(Arrays.asList(null, "a", "b"), column(this.shardedDatabase.execute(select).blockingFirst(), "name"));
+    }
+
+    @Test
+    public void qualifiedOrderFieldsAreMergedByTheirColumn() throws Exception
+    {
+        this.create(rows("name", "carol", "alice"), rows("name", "bob"));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("users.name").addTable("users").addOrderField(new OrderField("users.name", OrderType.ASCENDING));
+
+        assertEquals(Arrays.asList("alice", "bob", "carol"), column(this.shardedDatabase.execute(select).blockingFirst(), "name"));
+    }
+
+    @Test
+    public void columnsWithNonNumericValuesAreMergedAsStrings() throws Exception
+    {
+        // by value 9 < 10, as strings "10" < "9" < "a", mixing both would not be transitive
+        this.create(rows("code", "10", "a"), rows("code", "9"));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("code").addTable("codes").addOrderField(new OrderField("code", OrderType.ASCENDING));
+
+        assertEquals(Arrays.asList("10", "9", "a"), column(this.shardedDatabase.execute(select).blockingFirst(), "code"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void orderFieldsHaveToBeSelected()
+    {
+        this.create(rows("name", "alice"), rows("name", "bob"));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("name").addTable("users").addOrderField(new OrderField("score", OrderType.ASCENDING));
+
+        this.shardedDatabase.execute(select).blockingFirst();
+    }
+
+    @Test
+    public void offsetIsAppliedToTheMergedRowsWithoutChangingTheStatement() throws Exception
+    {
+        this.create(rows("id", "1", "3", "5"), rows("id", "2", "4", "6"));
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select()
+                                                            .addField("id")
+                                                            .addTable("users")
+                                                            .addOrderField(new OrderField("id", OrderType.ASCENDING))
+                                                            .limit(2, 3);
+
+        assertEquals(Arrays.asList("4", "5"), column(this.shardedDatabase.execute(select).blockingFirst(), "id"));
+
+        for (Shard shard : this.shards)
+        {
+            assertTrue(shard.statements.get(0), shard.statements.get(0).endsWith("LIMIT 5"));
+        }
+
+        assertTrue(select.toBoundQuery().getQuery().getSql().endsWith("LIMIT 2 OFFSET 3"));
+    }
+
+    @Test
+    public void updateCountsAreSummed() throws Exception
+    {
+        this.create(new ParsedResultSet(null, 2, null), new ParsedResultSet(null, 3, null));
+
+        MySQLStatementBuilder delete = MySQLStatementBuilder.Delete().addTable("sessions").useConditions(true).addCondition(new Condition("expired", "=", true));
+
+        assertEquals(5, this.shardedDatabase.execute(delete).blockingFirst().getUpdateCount());
+    }
+
+    @Test
+    public void statementsWithTheShardKeyGoToOneShard()
+    {
+        this.create(rows("id", "1"), rows("id", "2")).setShardFunction(key -> ((Long) key).intValue() % 2);
+
+        MySQLStatementBuilder select = MySQLStatementBuilder.Select().addField("id").addTable("users").useConditions(true).addCondition(new Condition("user_id", "=", 3L));
+        this.shardedDatabase.execute(select).blockingFirst();
+
+        assertEquals(0, this.shards.get(0).statements.size());
+        assertEquals(1, this.shards.get(1).statements.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fannedOutAggregatesAreRejected()
+    {
+        this.create(rows("id", "1"), rows("id", "2"));
+
+        this.shardedDatabase.execute(MySQLStatementBuilder.Select().addField("COUNT(*)").addTable("users"));
+    }
+
+    private static final class Shard extends MySQLDatabase
+    {
+        private final ParsedResultSet result;
+        private final List<String>    statements = new CopyOnWriteArrayList<>();
+
+        private Shard(ParsedResultSet result)
+        {
+            super("localhost", "test", "test", "test");
+            this.result = result;
+        }
+
+        @Override
+        public Observable<ParsedResultSet> execute(BoundQuery boundQuery)
+        {
+            this.statements.add(boundQuery.getQuery().getSql());
+            return Observable.just(this.result);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.collect.ImmutableList;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.assertEquals;
+
+public class StatementCacheTest
+{
+    private static final Query FIRST  = query("SELECT * FROM players WHERE id = ?");
+    private static final Query SECOND = query("SELECT * FROM players WHERE name = ?");
+    private static final Query THIRD  = query("SELECT * FROM players WHERE email = ?");
+
+    private StatementCache statementCache;
+
+    @Before
+    public void setUp()
+    {
+        this.statementCache = new StatementCache(new HikariDataSource(), 2);
+    }
+
+    @Test
+    public void hitsAndMisses() throws Exception
+    {
+        Connection connection = connection();
+
+        this.prepare(connection, FIRST);
+        this.prepare(connection, FIRST);
+        this.prepare(connection, SECOND);
+        this.prepare(connection, FIRST);
+
+        assertEquals(2, this.statementCache.getHitCount());
+        assertEquals(2, this.statementCache.getMissCount());
+        assertEquals(4, this.statementCache.getPrepareCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws Exception
+    {
+        Connection connection = connection();
+
+        this.prepare(connection, FIRST);
+        this.prepare(connection, SECOND);
+        this.prepare(connection, FIRST);
+        // evicts SECOND, FIRST was used more recently
+        this.prepare(connection, THIRD);
+        this.prepare(connection, FIRST);
+        this.prepare(connection, SECOND);
+
+        assertEquals(2, this.statementCache.getHitCount());
+        assertEquals(4, this.statementCache.getMissCount());
+        assertEquals(2, this.statementCache.getEvictionCount());
+    }
+
+    @Test
+    public void connectionsHaveTheirOwnCache() throws Exception
+    {
+        this.prepare(connection(), FIRST);
+        this.prepare(connection(), FIRST);
+
+        assertEquals(0, this.statementCache.getHitCount());
+        assertEquals(2, this.statementCache.getMissCount());
+    }
+
+    @Test
+    public void disabledCacheOnlyMisses() throws Exception
+    {
+        Connection connection = connection();
+        this.statementCache.setMaxSize(0);
+
+        this.prepare(connection, FIRST);
+        this.prepare(connection, FIRST);
+
+        assertEquals(0, this.statementCache.getHitCount());
+        assertEquals(2, this.statementCache.getMissCount());
+    }
+
+    private void prepare(Connection connection, Query query) throws Exception
+    {
+        this.statementCache.release(this.statementCache.prepare(connection, query));
+    }
+
+    private static Query query(String sql)
+    {
+        return new Query(sql, QueryType.SELECT, false, ImmutableList.of("players"), ImmutableList.of("id"));
+    }
+
+    /**
+     * A physical connection whose statements do nothing
+     */
+    private static Connection connection()
+    {
+        return (Connection) Proxy.newProxyInstance(StatementCacheTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "unwrap":
+                    return proxy;
+                case "prepareStatement":
+                    return Proxy.newProxyInstance(StatementCacheTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (statement, call, values) ->
+                            call.getName().equals("isClosed") ? false : null);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.collect.ImmutableList;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionTest
+{
+    private static final Query UPDATE = new Query("UPDATE players SET score = ? WHERE id = ?", QueryType.UPDATE, false,
+            ImmutableList.of("players"), ImmutableList.of("score", "id"));
+
+    private final List<String>        changedTables = new CopyOnWriteArrayList<>();
+    private       RecordingConnection connections;
+    private       Database            database;
+
+    @Before
+    public void setUp()
+    {
+        this.connections = new RecordingConnection();
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            @Override
+            public Connection getConnection()
+            {
+                return TransactionTest.this.connections.open();
+            }
+
+            @Override
+            protected void tablesChanged(Collection<String> tables)
+            {
+                TransactionTest.this.changedTables.addAll(tables);
+                super.tablesChanged(tables);
+            }
+        };
+        this.database.getSchemaCache().setEnabled(false);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    @Test
+    public void commitInvalidatesTheChangedTables() throws Exception
+    {
+        try (Transaction transaction = this.database.beginTransaction())
+        {
+            transaction.executeBatch(UPDATE, Collections.singletonList(new Object[]{10, 1L}));
+            transaction.commit();
+
+            assertTrue(transaction.isFinished());
+        }
+
+        assertEquals(1, this.connections.getCommitted().size());
+        assertEquals(Collections.singletonList("players"), this.changedTables);
+    }
+
+    @Test
+    public void failedCommitIsRolledBackOnClose() throws Exception
+    {
+        Transaction transaction = this.database.beginTransaction();
+        transaction.executeBatch(UPDATE, Collections.singletonList(new Object[]{10, 1L}));
+        this.connections.setFailing(true);
+
+        try
+        {
+            transaction.commit();
+            fail("The commit has to fail");
+        }
+        catch (SQLException expected)
+        {
+            assertFalse(transaction.isFinished());
+        }
+
+        // switching auto-commit back on would commit the statements if they weren't rolled back first
+        this.connections.setFailing(false);
+        transaction.close();
+
+        assertEquals(0, this.connections.getCommitted().size());
+        assertTrue(this.changedTables.isEmpty());
+    }
+
+    @Test
+    public void unfinishedTransactionIsRolledBackOnClose() throws Exception
+    {
+        try (Transaction transaction = this.database.beginTransaction())
+        {
+            transaction.executeBatch(UPDATE, Collections.singletonList(new Object[]{10, 1L}));
+        }
+
+        assertEquals(0, this.connections.getCommitted().size());
+        assertTrue(this.changedTables.isEmpty());
+    }
+}
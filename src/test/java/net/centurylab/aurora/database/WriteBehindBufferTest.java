@@ -0,0 +1,189 @@
+package net.centurylab.aurora.database;
+
+import com.google.common.collect.ImmutableMap;
+import net.centurylab.aurora.database.implementations.MySQLDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WriteBehindBufferTest
+{
+    private RecordingConnection connections;
+    private Database            database;
+    private WriteBehindBuffer   writeBehindBuffer;
+
+    private volatile Runnable beforeCommit;
+
+    @Before
+    public void setUp()
+    {
+        this.connections = new RecordingConnection();
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            @Override
+            public Connection getConnection()
+            {
+                return WriteBehindBufferTest.this.open();
+            }
+        };
+        this.database.getSchemaCache().setEnabled(false);
+        this.writeBehindBuffer = new WriteBehindBuffer(this.database, 1, TimeUnit.HOURS, 100);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.connections.setFailing(false);
+        this.database.close();
+    }
+
+    /**
+     * Opens a recording connection which runs {@link #beforeCommit} when it commits
+     */
+    private Connection open()
+    {
+        Connection connection = this.connections.open();
+
+        return (Connection) Proxy.newProxyInstance(WriteBehindBufferTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("commit") && this.beforeCommit != null)
+            {
+                this.beforeCommit.run();
+            }
+
+            try
+            {
+                return method.invoke(connection, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @Test
+    public void updatesOfARowAreCoalesced()
+    {
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("name", "alice", "score", 1))
+                              .update("players", "id", 1L, ImmutableMap.of("score", 2))
+                              .update("players", "id", 2L, ImmutableMap.of("score", 5));
+
+        assertEquals(2, this.writeBehindBuffer.getPendingRows());
+        assertEquals(2, (int) this.writeBehindBuffer.flush().blockingFirst());
+
+        List<RecordingConnection.Batch> committed = this.connections.getCommitted();
+
+        // rows which change other fields need their own statement
+        assertEquals(2, committed.size());
+        assertEquals(0, this.writeBehindBuffer.getPendingRows());
+        assertArrayEquals(new Object[]{"alice", 2, 1L}, committed.get(0).getRows().get(0));
+        assertArrayEquals(new Object[]{5, 2L}, committed.get(1).getRows().get(0));
+        assertEquals(1.5, this.writeBehindBuffer.getCoalescingRatio(), 0);
+    }
+
+    @Test
+    public void rowsWithTheSameFieldsShareAStatement()
+    {
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("score", 1))
+                              .update("players", "id", 2L, ImmutableMap.of("score", 2));
+
+        this.writeBehindBuffer.flush().blockingFirst();
+
+        assertEquals(1, this.connections.getCommitted().size());
+        assertEquals(2, this.connections.getCommitted().get(0).getRows().size());
+    }
+
+    @Test
+    public void failedFlushesRestoreTheRows()
+    {
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("name", "alice", "score", 1));
+        this.connections.setFailing(true);
+
+        try
+        {
+            this.writeBehindBuffer.flush().blockingFirst();
+            throw new AssertionError("The flush has to fail");
+        }
+        catch (RuntimeException expected)
+        {
+            assertEquals(1, this.writeBehindBuffer.getPendingRows());
+        }
+
+        this.connections.setFailing(false);
+        this.writeBehindBuffer.flush().blockingFirst();
+
+        assertEquals(1, this.connections.getCommitted().size());
+        assertArrayEquals(new Object[]{"alice", 1, 1L}, this.connections.getCommitted().get(0).getRows().get(0));
+    }
+
+    @Test
+    public void newerValuesWinOverRestoredOnes()
+    {
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("name", "alice", "score", 1));
+        this.connections.setFailing(true);
+        // the row is updated again while the failing flush is running
+        this.beforeCommit = () -> this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("score", 7));
+
+        try
+        {
+            this.writeBehindBuffer.flush().blockingFirst();
+            throw new AssertionError("The flush has to fail");
+        }
+        catch (RuntimeException expected)
+        {
+            this.beforeCommit = null;
+        }
+
+        this.connections.setFailing(false);
+        this.writeBehindBuffer.flush().blockingFirst();
+
+        assertEquals(1, this.connections.getCommitted().size());
+        assertArrayEquals(new Object[]{"alice", 7, 1L}, this.connections.getCommitted().get(0).getRows().get(0));
+    }
+
+    @Test
+    public void closeFlushesTheBuffer()
+    {
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("score", 3));
+        this.writeBehindBuffer.close();
+
+        assertEquals(0, this.writeBehindBuffer.getPendingRows());
+        assertEquals(1, this.connections.getCommitted().size());
+        assertArrayEquals(new Object[]{3, 1L}, this.connections.getCommitted().get(0).getRows().get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedBufferRejectsUpdates()
+    {
+        this.writeBehindBuffer.close();
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("score", 3));
+    }
+
+    @Test
+    public void fullBufferIsFlushed() throws Exception
+    {
+        this.writeBehindBuffer.setMaxPendingRows(2);
+        this.writeBehindBuffer.update("players", "id", 1L, ImmutableMap.of("score", 1))
+                              .update("players", "id", 2L, ImmutableMap.of("score", 2));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (this.connections.getCommitted().isEmpty() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, this.connections.getCommitted().size());
+        assertEquals(2, this.connections.getCommitted().get(0).getRows().size());
+    }
+}
@@ -0,0 +1,154 @@
+package net.centurylab.aurora.database.implementations;
+
+import net.centurylab.aurora.database.ColumnarResultSet;
+import net.centurylab.aurora.database.InMemoryResultSet;
+import net.centurylab.aurora.database.mapping.Entity;
+import net.centurylab.aurora.database.mapping.EntityMappers;
+import net.centurylab.aurora.database.metrics.QueryMetrics;
+import net.centurylab.aurora.database.metrics.QueryPhase;
+import net.centurylab.aurora.database.statementbuilder.MySQLStatementBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MySQLDatabaseTest
+{
+    private static final String[]   COLUMNS = {"id", "name"};
+    private static final Object[][] ROWS    = {{1L, "alice"}, {2L, "bob"}, {3L, "carol"}};
+
+    private MySQLDatabase database;
+    private boolean       failing;
+
+    @Before
+    public void setUp()
+    {
+        this.database = new MySQLDatabase("localhost", "test", "test", "test")
+        {
+            @Override
+            public Connection getConnection()
+            {
+                return MySQLDatabaseTest.this.connection();
+            }
+        };
+        this.database.getSchemaCache().setEnabled(false);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    private static MySQLStatementBuilder select()
+    {
+        return MySQLStatementBuilder.Select().addField("id").addField("name").addTable("players");
+    }
+
+    @Test
+    public void columnarSelectsAreRecorded()
+    {
+        ColumnarResultSet result = this.database.executeColumnar(select()).blockingFirst();
+        QueryMetrics queryMetrics = this.database.getMetrics().get(select().compile());
+
+        assertEquals(3, result.getRowCount());
+        assertEquals(1, queryMetrics.getExecutionCount());
+        assertEquals(3, queryMetrics.getRowCount());
+
+        for (QueryPhase phase : QueryPhase.values())
+        {
+            assertEquals(phase.name(), 1, queryMetrics.getHistogram(phase).getCount());
+        }
+    }
+
+    @Test
+    public void mappedSelectsAreRecorded()
+    {
+        List<Player> players = this.database.select(EntityMappers.get(Player.class), select()).blockingFirst();
+        QueryMetrics queryMetrics = this.database.getMetrics().get(select().compile());
+
+        assertEquals("bob", players.get(1).name);
+        assertEquals(1, queryMetrics.getExecutionCount());
+        assertEquals(3, queryMetrics.getRowCount());
+    }
+
+    @Test
+    public void failedSelectsAreRecorded()
+    {
+        this.failing = true;
+
+        try
+        {
+            this.database.executeColumnar(select()).blockingFirst();
+            fail("The select has to fail");
+        }
+        catch (RuntimeException expected)
+        {
+            QueryMetrics queryMetrics = this.database.getMetrics().get(select().compile());
+
+            assertEquals(1, queryMetrics.getErrorCount());
+            assertEquals(0, queryMetrics.getExecutionCount());
+        }
+    }
+
+    /**
+     * A connection whose statements return {@link #ROWS}, or fail to execute if {@link #failing} is set
+     */
+    private Connection connection()
+    {
+        return (Connection) Proxy.newProxyInstance(MySQLDatabaseTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "unwrap":
+                    return proxy;
+                case "prepareStatement":
+                    return this.statement();
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private PreparedStatement statement()
+    {
+        return (PreparedStatement) Proxy.newProxyInstance(MySQLDatabaseTest.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "executeQuery":
+                    if (this.failing)
+                    {
+                        throw new SQLException("The query failed");
+                    }
+
+                    return InMemoryResultSet.create(COLUMNS, ROWS);
+                case "isClosed":
+                    return false;
+                case "setQueryTimeout":
+                case "setFetchSize":
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Entity("players")
+    public static class Player
+    {
+        long   id;
+        String name;
+    }
+}
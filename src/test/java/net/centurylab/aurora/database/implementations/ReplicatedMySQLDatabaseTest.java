@@ -0,0 +1,236 @@
+package net.centurylab.aurora.database.implementations;
+
+import com.google.common.collect.ImmutableList;
+import net.centurylab.aurora.database.Query;
+import net.centurylab.aurora.database.QueryType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicatedMySQLDatabaseTest
+{
+    private static final Query SELECT_PLAYERS = new Query("SELECT name FROM players WHERE id = ?", QueryType.SELECT, false,
+            ImmutableList.of("players"), ImmutableList.of("id"));
+    private static final Query SELECT_GUILDS  = new Query("SELECT name FROM guilds WHERE id = ?", QueryType.SELECT, false,
+            ImmutableList.of("guilds"), ImmutableList.of("id"));
+    private static final Query UPDATE_PLAYERS = new Query("UPDATE players SET score = ? WHERE id = ?", QueryType.UPDATE, false,
+            ImmutableList.of("players"), ImmutableList.of("score", "id"));
+
+    private ReplicatedMySQLDatabase database;
+
+    @Before
+    public void setUp()
+    {
+        this.database = new ReplicatedMySQLDatabase("localhost", 3306, "test", "test", "test", 1, 4);
+        this.database.getConnectionPool().setDataSource(dataSource("primary"));
+        this.database.getSchemaCache().setEnabled(false);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.database.close();
+    }
+
+    /**
+     * Adds a replica whose connections report the name as their schema, or which can't open connections if the name is null
+     */
+    private ReplicatedMySQLDatabase.Replica addReplica(String name)
+    {
+        this.database.addReplica("jdbc:mysql://" + name + ":3306/test");
+
+        ReplicatedMySQLDatabase.Replica replica = this.database.getReplicas().get(this.database.getReplicas().size() - 1);
+        replica.getConnectionPool().setDataSource(dataSource(name));
+        replica.getConnectionPool().setConnectionTimeout(250);
+
+        return replica;
+    }
+
+    private String route(Query query) throws SQLException
+    {
+        try (Connection connection = this.database.getConnection(query))
+        {
+            return connection.getSchema();
+        }
+    }
+
+    @Test
+    public void selectsGoToTheReplicas() throws Exception
+    {
+        ReplicatedMySQLDatabase.Replica replica = this.addReplica("replica");
+
+        assertEquals("replica", this.route(SELECT_PLAYERS));
+        assertEquals("primary", this.route(UPDATE_PLAYERS));
+        assertEquals(1, replica.getRequestCount());
+        assertEquals(0, replica.getOutstandingRequests());
+        assertEquals(0, this.database.getPrimaryReadCount());
+    }
+
+    @Test
+    public void selectsGoToThePrimaryWithoutReplicas() throws Exception
+    {
+        assertEquals("primary", this.route(SELECT_PLAYERS));
+        assertEquals(1, this.database.getPrimaryReadCount());
+    }
+
+    @Test
+    public void leastLoadedReplicaIsSelected() throws Exception
+    {
+        ReplicatedMySQLDatabase.Replica first = this.addReplica("first");
+        ReplicatedMySQLDatabase.Replica second = this.addReplica("second");
+
+        try (Connection busy = this.database.getConnection(SELECT_PLAYERS))
+        {
+            assertEquals("first", busy.getSchema());
+            assertEquals(1, first.getOutstandingRequests());
+            assertEquals("second", this.route(SELECT_PLAYERS));
+        }
+
+        assertEquals(0, first.getOutstandingRequests());
+        assertEquals(0, second.getOutstandingRequests());
+    }
+
+    @Test
+    public void failingReplicaBacksOff() throws Exception
+    {
+        ReplicatedMySQLDatabase.Replica failing = this.addReplica(null);
+        this.addReplica("healthy");
+
+        // the failed SELECT falls back to the primary, the next one skips the failing replica
+        assertEquals("primary", this.route(SELECT_PLAYERS));
+        assertEquals("healthy", this.route(SELECT_PLAYERS));
+
+        assertEquals(1, failing.getFailureCount());
+        assertEquals(1, failing.getRequestCount());
+        assertFalse(failing.isAvailable());
+        assertEquals(1, this.database.getPrimaryReadCount());
+    }
+
+    @Test
+    public void selectsGoToThePrimaryWhileAllReplicasBackOff() throws Exception
+    {
+        ReplicatedMySQLDatabase.Replica failing = this.addReplica(null);
+
+        assertEquals("primary", this.route(SELECT_PLAYERS));
+        assertEquals("primary", this.route(SELECT_PLAYERS));
+
+        assertEquals(1, failing.getRequestCount());
+        assertEquals(2, this.database.getPrimaryReadCount());
+    }
+
+    @Test
+    public void recentlyWrittenTablesAreReadFromThePrimary() throws Exception
+    {
+        this.addReplica("replica");
+        this.database.setReadYourWritesWindow(1, TimeUnit.HOURS);
+        this.database.tablesChanged(Collections.singletonList("players"));
+
+        assertEquals("primary", this.route(SELECT_PLAYERS));
+        assertEquals("replica", this.route(SELECT_GUILDS));
+        assertEquals(1, this.database.getPrimaryReadCount());
+    }
+
+    @Test
+    public void writesOutsideTheWindowAreReadFromTheReplicas() throws Exception
+    {
+        this.addReplica("replica");
+        this.database.setReadYourWritesWindow(1, TimeUnit.MILLISECONDS);
+        this.database.tablesChanged(Collections.singletonList("players"));
+        Thread.sleep(5);
+
+        assertEquals("replica", this.route(SELECT_PLAYERS));
+    }
+
+    @Test
+    public void schedulerCapacityIncludesTheReplicas()
+    {
+        assertEquals(4, this.database.getQueryScheduler().getCapacity());
+
+        this.addReplica("first");
+        this.addReplica("second");
+        assertEquals(12, this.database.getQueryScheduler().getCapacity());
+
+        this.database.setMaxPoolsize(6);
+        assertEquals(14, this.database.getQueryScheduler().getCapacity());
+    }
+
+    @Test
+    public void warmUpPreparesTheSelectsOnTheReplicas()
+    {
+        ReplicatedMySQLDatabase.Replica replica = this.addReplica("replica");
+        this.database.addHotQuery(SELECT_PLAYERS).addHotQuery(UPDATE_PLAYERS);
+
+        assertTrue(this.database.warmUp().blockingAwait(5, TimeUnit.SECONDS));
+
+        assertTrue(this.database.getWarmUpNanos() >= 0);
+        assertTrue(replica.getPoolMetrics().getTotalConnections() > 0);
+    }
+
+    /**
+     * A {@link DataSource} whose connections report the name as their schema and answer every other call
+     * with the default value of its return type. Without a name it fails to open connections.
+     */
+    private static DataSource dataSource(String name)
+    {
+        return (DataSource) Proxy.newProxyInstance(ReplicatedMySQLDatabaseTest.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("getConnection"))
+            {
+                if (name == null)
+                {
+                    throw new SQLException("Connection refused");
+                }
+
+                return connection(name);
+            }
+
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Connection connection(String name)
+    {
+        return (Connection) Proxy.newProxyInstance(ReplicatedMySQLDatabaseTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getSchema":
+                    return name;
+                case "isValid":
+                    return true;
+                case "createStatement":
+                case "prepareStatement":
+                    return Proxy.newProxyInstance(ReplicatedMySQLDatabaseTest.class.getClassLoader(), new Class<?>[]{method.getReturnType()},
+                            (statement, call, values) -> defaultValue(call.getReturnType()));
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if (type == boolean.class)
+        {
+            return false;
+        }
+
+        if (type == long.class)
+        {
+            return 0L;
+        }
+
+        return type == int.class ? 0 : null;
+    }
+}
@@ -0,0 +1,103 @@
+package net.centurylab.aurora.database.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+    private static void assertBucketContains(long value)
+    {
+        int index = LatencyHistogram.index(value);
+
+        assertTrue(value + " is below its bucket", LatencyHistogram.lowerBound(index) <= value);
+        assertTrue(value + " is above its bucket", value < LatencyHistogram.lowerBound(index + 1));
+    }
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket()
+    {
+        for (int value = 0; value < 16; value++)
+        {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.lowerBound(value));
+        }
+    }
+
+    @Test
+    public void everyValueIsInsideItsBucket()
+    {
+        for (long value = 0; value < 100_000; value++)
+        {
+            assertBucketContains(value);
+        }
+
+        for (int exponent = 4; exponent < 41; exponent++)
+        {
+            long power = 1L << exponent;
+
+            assertBucketContains(power - 1);
+            assertBucketContains(power);
+            assertBucketContains(power + power / 3);
+        }
+    }
+
+    @Test
+    public void bucketsAreAccurateToAnEighth()
+    {
+        for (int index = 8; index < LatencyHistogram.index(Long.MAX_VALUE); index++)
+        {
+            long lowerBound = LatencyHistogram.lowerBound(index);
+            long width = LatencyHistogram.lowerBound(index + 1) - lowerBound;
+
+            assertTrue("bucket " + index + " is too wide", width * 8 <= lowerBound);
+            assertEquals(index, LatencyHistogram.index(lowerBound));
+        }
+    }
+
+    @Test
+    public void hugeValuesEndUpInTheLastBucket()
+    {
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+
+        assertEquals(last, LatencyHistogram.index(1L << 41));
+        assertEquals(last, LatencyHistogram.index(1L << 62));
+        assertEquals(0, LatencyHistogram.index(0));
+    }
+
+    @Test
+    public void percentilesAreBoundedByTheMax()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i * 1_000L);
+        }
+
+        long p50 = histogram.getPercentile(0.5);
+        long p99 = histogram.getPercentile(0.99);
+
+        assertTrue("p50 " + p50, p50 >= 50_000 && p50 <= 50_000 * 9 / 8);
+        assertTrue("p99 " + p99, p99 >= 99_000 && p99 <= 100_000);
+        assertEquals(100_000, histogram.getPercentile(1));
+        assertEquals(50_500, histogram.getMean());
+        assertEquals(100, histogram.getCount());
+    }
+
+    @Test
+    public void negativeValuesAreCountedAsZero()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getPercentile(0.5));
+        assertEquals(1, histogram.getCount());
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.99));
+    }
+}
@@ -0,0 +1,106 @@
+package net.centurylab.aurora.database.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+import static org.junit.Assert.assertEquals;
+
+public class PoolMetricsTest
+{
+    private HikariDataSource connectionPool;
+    private PoolMetrics      poolMetrics;
+
+    @Before
+    public void setUp()
+    {
+        this.connectionPool = new HikariDataSource();
+        this.connectionPool.setDataSource(dataSource());
+        this.connectionPool.setMinimumIdle(0);
+        this.connectionPool.setMaximumPoolSize(2);
+        this.connectionPool.setRegisterMbeans(true);
+        this.poolMetrics = new PoolMetrics(this.connectionPool);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.connectionPool.close();
+    }
+
+    @Test
+    public void statisticsAreZeroBeforeThePoolStarts()
+    {
+        assertEquals(0, this.poolMetrics.getTotalConnections());
+        assertEquals(0, this.poolMetrics.getActiveConnections());
+    }
+
+    @Test
+    public void statisticsFollowThePool() throws Exception
+    {
+        try (Connection ignored = this.connectionPool.getConnection())
+        {
+            assertEquals(1, this.poolMetrics.getActiveConnections());
+            assertEquals(0, this.poolMetrics.getThreadsAwaitingConnection());
+        }
+
+        assertEquals(0, this.poolMetrics.getActiveConnections());
+        assertEquals(1, this.poolMetrics.getIdleConnections());
+
+        this.connectionPool.close();
+
+        assertEquals(0, this.poolMetrics.getTotalConnections());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void poolsWithoutMBeansAreRejected()
+    {
+        this.connectionPool.setRegisterMbeans(false);
+
+        this.poolMetrics.getActiveConnections();
+    }
+
+    /**
+     * A {@link DataSource} whose connections answer every call with the default value of its return type
+     */
+    private static DataSource dataSource()
+    {
+        return (DataSource) Proxy.newProxyInstance(PoolMetricsTest.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) ->
+        {
+            if (method.getName().equals("getConnection"))
+            {
+                return Proxy.newProxyInstance(PoolMetricsTest.class.getClassLoader(), new Class<?>[]{Connection.class}, (connection, call, values) ->
+                {
+                    if (call.getName().equals("isValid"))
+                    {
+                        return true;
+                    }
+
+                    return defaultValue(call.getReturnType());
+                });
+            }
+
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if (type == boolean.class)
+        {
+            return false;
+        }
+
+        if (type == long.class)
+        {
+            return 0L;
+        }
+
+        return type == int.class ? 0 : null;
+    }
+}